@@ -1,7 +1,7 @@
 package io.fastkv.fastkvdemo.data
 
 import com.tencent.mmkv.MMKV
-import io.fastkv.FastKV
+import io.fastkv.FastPreferences
 import io.fastkv.fastkvdemo.base.AppContext
 import io.fastkv.fastkvdemo.fastkv.kvdelegate.KVStore
 import io.fastkv.fastkvdemo.fastkv.kvdelegate.ObjectConvertor
@@ -19,7 +19,7 @@ import io.fastkv.fastkvdemo.fastkv.kvdelegate.ObjectConvertor
 @Suppress("SpellCheckingInspection")
 class MMKV2FastKV(val name: String) : KVStore {
     private val mmkv by lazy { MMKV.mmkvWithID(name) }
-    private val fastkv = FastKV.Builder(AppContext.context, name).build()
+    private val fastkv = FastPreferences.builder(AppContext.context, name).build()
 
     override fun putBoolean(key: String, value: Boolean?) {
         if (value == null) {
@@ -3,7 +3,7 @@ package io.fastkv.fastkvdemo.data;
 import android.content.SharedPreferences;
 import android.util.Log;
 
-import io.fastkv.FastKV;
+import io.fastkv.FastPreferences;
 import io.fastkv.fastkvdemo.base.AppContext;
 
 /**
@@ -12,7 +12,7 @@ import io.fastkv.fastkvdemo.base.AppContext;
 public class SpCase {
     public static final String NAME = "common_store";
     // public static final SharedPreferences preferences = GlobalConfig.appContext.getSharedPreferences(NAME, Context.MODE_PRIVATE);
-    public static final SharedPreferences preferences = FastKV.adapt(AppContext.INSTANCE.getContext(), NAME);
+    public static final SharedPreferences preferences = FastPreferences.adapt(AppContext.INSTANCE.getContext(), NAME);
 
     static {
         preferences.registerOnSharedPreferenceChangeListener((sharedPreferences, key) ->
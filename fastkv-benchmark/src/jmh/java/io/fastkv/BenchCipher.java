@@ -0,0 +1,79 @@
+package io.fastkv;
+
+import androidx.annotation.NonNull;
+
+import java.nio.charset.StandardCharsets;
+
+import javax.crypto.Cipher;
+import javax.crypto.spec.IvParameterSpec;
+import javax.crypto.spec.SecretKeySpec;
+
+import io.fastkv.interfaces.FastCipher;
+
+/**
+ * 基准测试使用的加密器：字节数组使用 AES/CTR（长度不变），数值使用异或掩码。
+ * 仅用于衡量"开启加密"带来的开销，不可用于生产环境。
+ */
+class BenchCipher implements FastCipher {
+    private static final int INT_MASK = 0x5A3C96E1;
+    private static final long LONG_MASK = 0x3C96E15A5A3C96E1L;
+
+    private final SecretKeySpec key;
+    private final IvParameterSpec iv;
+    private final Cipher encryptor;
+    private final Cipher decryptor;
+
+    BenchCipher() {
+        byte[] bytes = "fastkv-benchmark".getBytes(StandardCharsets.UTF_8);
+        key = new SecretKeySpec(bytes, "AES");
+        iv = new IvParameterSpec(bytes);
+        try {
+            encryptor = Cipher.getInstance("AES/CTR/NoPadding");
+            encryptor.init(Cipher.ENCRYPT_MODE, key, iv);
+            decryptor = Cipher.getInstance("AES/CTR/NoPadding");
+            decryptor.init(Cipher.DECRYPT_MODE, key, iv);
+        } catch (Exception e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    @Override
+    public synchronized byte[] encrypt(@NonNull byte[] src) {
+        return doFinal(encryptor, Cipher.ENCRYPT_MODE, src);
+    }
+
+    @Override
+    public synchronized byte[] decrypt(@NonNull byte[] dst) {
+        return doFinal(decryptor, Cipher.DECRYPT_MODE, dst);
+    }
+
+    private byte[] doFinal(Cipher cipher, int mode, byte[] bytes) {
+        try {
+            // CTR 模式下每次都从相同的计数器开始，保证相同的 key 得到相同的密文
+            cipher.init(mode, key, iv);
+            return cipher.doFinal(bytes);
+        } catch (Exception e) {
+            return null;
+        }
+    }
+
+    @Override
+    public int encrypt(int src) {
+        return src ^ INT_MASK;
+    }
+
+    @Override
+    public int decrypt(int dst) {
+        return dst ^ INT_MASK;
+    }
+
+    @Override
+    public long encrypt(long src) {
+        return src ^ LONG_MASK;
+    }
+
+    @Override
+    public long decrypt(long dst) {
+        return dst ^ LONG_MASK;
+    }
+}
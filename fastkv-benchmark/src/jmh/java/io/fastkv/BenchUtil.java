@@ -0,0 +1,104 @@
+package io.fastkv;
+
+import androidx.annotation.NonNull;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+
+import io.fastkv.Container.BaseContainer;
+import io.fastkv.Container.VarContainer;
+import io.fastkv.interfaces.FastLogger;
+
+/**
+ * 基准测试的公共方法。
+ * <p>
+ * 基准测试类与 FastKV 位于同一包名下，以便直接调用 GCHelper、FileHelper 等内部方法。
+ */
+class BenchUtil {
+    static {
+        // 忽略 info 日志（例如每次 GC 的 "gc finish"），避免日志输出影响测试结果
+        FastKVConfig.setLogger(new FastLogger() {
+            @Override
+            public void i(@NonNull String name, @NonNull String message) {
+            }
+
+            @Override
+            public void w(@NonNull String name, @NonNull Exception e) {
+                System.err.println(name + " " + e);
+            }
+
+            @Override
+            public void e(@NonNull String name, @NonNull Exception e) {
+                System.err.println(name + " " + e);
+            }
+        });
+    }
+
+    static String makeDir(String prefix) throws IOException {
+        File dir = Files.createTempDirectory("fastkv_bench_" + prefix).toFile();
+        return dir.getAbsolutePath() + "/";
+    }
+
+    static void deleteDir(String path) {
+        Utils.deleteFile(new File(path));
+    }
+
+    static String[] makeKeys(String prefix, int count) {
+        String[] keys = new String[count];
+        for (int i = 0; i < count; i++) {
+            keys[i] = prefix + i;
+        }
+        return keys;
+    }
+
+    static String makeString(int size) {
+        char[] a = new char[size];
+        for (int i = 0; i < size; i++) {
+            a[i] = (char) ('a' + i % 26);
+        }
+        return new String(a);
+    }
+
+    static FastKV open(String path, String name, boolean cipher) {
+        return open(path, name, cipher, false);
+    }
+
+    static FastKV open(String path, String name, boolean cipher, boolean compactIndex) {
+        return open(path, name, cipher, compactIndex ? FastKV.OPTION_COMPACT_INDEX : 0);
+    }
+
+    static FastKV open(String path, String name, boolean cipher, int options) {
+        return new FastKV(path, name, null, cipher ? new BenchCipher() : null, FastKV.NON_BLOCKING, options);
+    }
+
+    /**
+     * 将 keys 对应的记录标记为删除，构造出指定的碎片，但不触发 GC。
+     * <p>
+     * 常规的 remove() 在无效数据达到阈值时会自动 GC，无法构造高碎片率的场景，
+     * 因此这里直接在内存中标记删除，并重新计算校验和。
+     * 仅修改了 FastBuffer，A/B 文件中的删除标记会在随后的 GC 中被覆盖。
+     */
+    static void markRemoved(FastKV kv, String[] keys) {
+        for (String key : keys) {
+            BaseContainer c = kv.data.remove(key);
+            if (c == null) {
+                continue;
+            }
+            byte type = c.getType();
+            int start;
+            int end;
+            if (type <= DataType.DOUBLE) {
+                start = c.offset - (2 + FastBuffer.getStringSize(key));
+                end = c.offset + FastKV.TYPE_SIZE[type];
+            } else {
+                VarContainer vc = (VarContainer) c;
+                start = vc.start;
+                end = vc.offset + vc.valueSize;
+            }
+            GCHelper.countInvalid(kv, start, end);
+            kv.fastBuffer.hb[start] = (byte) (kv.fastBuffer.hb[start] | DataType.DELETE_MASK);
+        }
+        kv.checksum = kv.fastBuffer.getChecksum(FastKV.DATA_START, kv.dataEnd - FastKV.DATA_START);
+    }
+}
@@ -0,0 +1,94 @@
+package io.fastkv;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * GCHelper.gc（全量GC）和 GCHelper.compact（增量整理的一步）在不同数据量和碎片率下的耗时。
+ * <p>
+ * 碎片通过 {@link BenchUtil#markRemoved} 构造：按比例均匀地将记录标记为删除，
+ * 使无效段分散在整个数据区中（最坏情况）。
+ * 每次调用前重新构造数据，构造时间不计入结果。
+ */
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 10)
+@Measurement(iterations = 30)
+@Fork(1)
+@State(Scope.Benchmark)
+public class GCBenchmark {
+    @Param({"1000", "10000", "100000"})
+    public int keyCount;
+
+    // 被删除记录所占的百分比
+    @Param({"10", "50", "90"})
+    public int fragmentation;
+
+    private String dir;
+    private FastKV kv;
+    private String[] keys;
+    private String[] removedKeys;
+    private String value;
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        dir = BenchUtil.makeDir("gc");
+        kv = BenchUtil.open(dir, "gc", false);
+        keys = BenchUtil.makeKeys("k_", keyCount);
+        value = BenchUtil.makeString(32);
+        int removeCount = keyCount * fragmentation / 100;
+        removedKeys = new String[removeCount];
+        for (int i = 0; i < removeCount; i++) {
+            removedKeys[i] = keys[(int) ((long) i * keyCount / removeCount)];
+        }
+    }
+
+    @Setup(Level.Invocation)
+    public void prepare() {
+        kv.clear();
+        for (int i = 0; i < keyCount; i++) {
+            if ((i & 1) == 0) {
+                kv.putInt(keys[i], i);
+            } else {
+                kv.putString(keys[i], value);
+            }
+        }
+        BenchUtil.markRemoved(kv, removedKeys);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        kv.close();
+        BenchUtil.deleteDir(dir);
+    }
+
+    @Benchmark
+    public int gc() {
+        synchronized (kv) {
+            GCHelper.gc(kv, 0);
+            return kv.dataEnd;
+        }
+    }
+
+    @Benchmark
+    public int compactStep() {
+        synchronized (kv) {
+            GCHelper.compact(kv, GCHelper.COMPACT_STEP_BYTES);
+            return kv.dataEnd;
+        }
+    }
+}
@@ -0,0 +1,112 @@
+package io.fastkv;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Group;
+import org.openjdk.jmh.annotations.GroupThreads;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * getInt / getString 的读取开销。
+ * <ul>
+ * <li>single: 单线程读取</li>
+ * <li>readers: 多个线程同时读取</li>
+ * <li>mixed: 3 个线程读取，同时 1 个线程持续写入</li>
+ * </ul>
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class GetBenchmark {
+    private static final int KEY_COUNT = 1000;
+
+    @Param({"false", "true"})
+    public boolean cipher;
+
+    // 紧凑索引读取基本类型需要加锁，可与默认的无锁读取对比
+    @Param({"false", "true"})
+    public boolean compactIndex;
+
+    private String dir;
+    private FastKV kv;
+    private String[] intKeys;
+    private String[] strKeys;
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        dir = BenchUtil.makeDir("get");
+        kv = BenchUtil.open(dir, "get", cipher, compactIndex);
+        intKeys = BenchUtil.makeKeys("i_", KEY_COUNT);
+        strKeys = BenchUtil.makeKeys("s_", KEY_COUNT);
+        String value = BenchUtil.makeString(32);
+        for (int i = 0; i < KEY_COUNT; i++) {
+            kv.putInt(intKeys[i], i);
+            kv.putString(strKeys[i], value);
+        }
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        kv.close();
+        BenchUtil.deleteDir(dir);
+    }
+
+    private static int nextIndex() {
+        return ThreadLocalRandom.current().nextInt(KEY_COUNT);
+    }
+
+    @Benchmark
+    public int getIntSingle() {
+        return kv.getInt(intKeys[nextIndex()]);
+    }
+
+    @Benchmark
+    public String getStringSingle() {
+        return kv.getString(strKeys[nextIndex()]);
+    }
+
+    @Benchmark
+    @Threads(4)
+    public int getIntReaders() {
+        return kv.getInt(intKeys[nextIndex()]);
+    }
+
+    @Benchmark
+    @Threads(4)
+    public String getStringReaders() {
+        return kv.getString(strKeys[nextIndex()]);
+    }
+
+    @Benchmark
+    @Group("mixed")
+    @GroupThreads(3)
+    public int mixedGetInt() {
+        return kv.getInt(intKeys[nextIndex()]);
+    }
+
+    @Benchmark
+    @Group("mixed")
+    @GroupThreads(1)
+    public void mixedPutInt() {
+        int i = nextIndex();
+        kv.putInt(intKeys[i], ThreadLocalRandom.current().nextInt());
+    }
+}
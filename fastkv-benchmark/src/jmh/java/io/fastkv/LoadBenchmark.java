@@ -0,0 +1,117 @@
+package io.fastkv;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * FileHelper.loadFromABFile 的耗时（映射文件、校验、解析所有 key）。
+ * <p>
+ * 数据文件在 Trial 开始时生成，每次调用前重置实例的内存状态，
+ * 然后在同一个实例上重新执行加载。
+ * options 对应 FastKV.Builder 的配置：compactIndex 时基本类型只登记到紧凑索引中，不创建容器对象；
+ * lazyDecode 时加载时不解码字符串等变长类型的值；persistIndex 时从 .kvi 文件恢复索引（同时开启前两项）。
+ */
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5)
+@Measurement(iterations = 20)
+@Fork(1)
+@State(Scope.Benchmark)
+public class LoadBenchmark {
+    @Param({"1000", "10000", "100000", "1000000"})
+    public int keyCount;
+
+    @Param({"false", "true"})
+    public boolean cipher;
+
+    @Param({"none", "compactIndex", "lazyDecode", "persistIndex"})
+    public String options;
+
+    private String dir;
+    private FastKV kv;
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        dir = BenchUtil.makeDir("load");
+        int flags = getOptions();
+        FastKV writer = BenchUtil.open(dir, "load", cipher, flags);
+        String[] keys = BenchUtil.makeKeys("k_", keyCount);
+        String value = BenchUtil.makeString(32);
+        for (int i = 0; i < keyCount; i++) {
+            switch (i % 3) {
+                case 0:
+                    writer.putInt(keys[i], i);
+                    break;
+                case 1:
+                    writer.putLong(keys[i], i);
+                    break;
+                default:
+                    writer.putString(keys[i], value);
+                    break;
+            }
+        }
+        // 以相同的配置关闭时会保存索引（persistIndex）
+        writer.close();
+        kv = BenchUtil.open(dir, "load", cipher, flags);
+    }
+
+    @Setup(Level.Invocation)
+    public void reset() {
+        synchronized (kv) {
+            Utils.closeQuietly(kv.aChannel);
+            Utils.closeQuietly(kv.bChannel);
+            kv.aBuffer = null;
+            kv.bBuffer = null;
+            kv.fastBuffer = null;
+            kv.dataEnd = 0;
+            kv.checksum = 0L;
+            kv.clearContainers();
+            GCHelper.clearInvalid(kv);
+        }
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        kv.close();
+        BenchUtil.deleteDir(dir);
+    }
+
+    private int getOptions() {
+        switch (options) {
+            case "compactIndex":
+                return FastKV.OPTION_COMPACT_INDEX;
+            case "lazyDecode":
+                return FastKV.OPTION_LAZY_DECODE;
+            case "persistIndex":
+                return FastKV.OPTION_COMPACT_INDEX | FastKV.OPTION_LAZY_DECODE | FastKV.OPTION_PERSIST_INDEX;
+            default:
+                return 0;
+        }
+    }
+
+    @Benchmark
+    public int loadFromABFile() {
+        synchronized (kv) {
+            FileHelper.loadFromABFile(kv);
+            int keys = kv.data.size() + (kv.primitiveIndex != null ? kv.primitiveIndex.size() : 0);
+            if (keys != keyCount) {
+                throw new IllegalStateException("load failed, keys:" + keys);
+            }
+            return kv.dataEnd;
+        }
+    }
+}
@@ -0,0 +1,155 @@
+package io.fastkv;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * putInt / putString / putObject 的写入开销。
+ * <ul>
+ * <li>update: 更新已存在的 key（值长度不变，原地覆盖）</li>
+ * <li>insert: 写入新的 key（追加到数据末尾，key 用完后 clear 重来）</li>
+ * </ul>
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class PutBenchmark {
+    private static final int UPDATE_KEY_COUNT = 1000;
+    private static final int INSERT_KEY_COUNT = 100000;
+
+    @Param({"false", "true"})
+    public boolean cipher;
+
+    @Param({"32"})
+    public int valueSize;
+
+    // 单文件模式（只写一个数据文件，原地修改经重做日志写入）
+    @Param({"false", "true"})
+    public boolean singleFile;
+
+    private String dir;
+    private FastKV updateKV;
+    private FastKV insertKV;
+
+    private String[] intKeys;
+    private String[] strKeys;
+    private String[] objKeys;
+    private String[] insertKeys;
+    private String[] strValues;
+    private Set<String>[] setValues;
+    private int updateIndex;
+    private int insertIndex;
+    private int round = 1;
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        dir = BenchUtil.makeDir("put");
+        updateKV = BenchUtil.open(dir, "update", cipher,
+                singleFile ? FastKV.OPTION_SINGLE_FILE : 0);
+        insertKV = BenchUtil.open(dir, "insert", cipher,
+                singleFile ? FastKV.OPTION_SINGLE_FILE : 0);
+        intKeys = BenchUtil.makeKeys("i_", UPDATE_KEY_COUNT);
+        strKeys = BenchUtil.makeKeys("s_", UPDATE_KEY_COUNT);
+        objKeys = BenchUtil.makeKeys("o_", UPDATE_KEY_COUNT);
+        insertKeys = BenchUtil.makeKeys("k_", INSERT_KEY_COUNT);
+
+        // 两组等长的值交替写入，保证每次 put 都会真正修改数据
+        String str = BenchUtil.makeString(valueSize);
+        strValues = new String[]{str, str.toUpperCase()};
+        //noinspection unchecked
+        setValues = new Set[2];
+        for (int i = 0; i < 2; i++) {
+            Set<String> set = new HashSet<>();
+            set.add(strValues[i]);
+            setValues[i] = set;
+        }
+
+        for (int i = 0; i < UPDATE_KEY_COUNT; i++) {
+            updateKV.putInt(intKeys[i], 0);
+            updateKV.putString(strKeys[i], strValues[0]);
+            updateKV.putObject(objKeys[i], setValues[0], StringSetEncoder.INSTANCE);
+        }
+    }
+
+    @Setup(Level.Iteration)
+    public void resetInsert() {
+        insertKV.clear();
+        insertIndex = 0;
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        updateKV.close();
+        insertKV.close();
+        BenchUtil.deleteDir(dir);
+    }
+
+    // 每轮遍历所有 key 后 round 加一，同一轮内写入的值与上一轮不同
+    private int nextUpdateIndex() {
+        if (updateIndex == UPDATE_KEY_COUNT) {
+            updateIndex = 0;
+            round++;
+        }
+        return updateIndex++;
+    }
+
+    private String nextInsertKey() {
+        if (insertIndex == INSERT_KEY_COUNT) {
+            insertKV.clear();
+            insertIndex = 0;
+        }
+        return insertKeys[insertIndex++];
+    }
+
+    @Benchmark
+    public void putIntUpdate() {
+        int i = nextUpdateIndex();
+        updateKV.putInt(intKeys[i], round);
+    }
+
+    @Benchmark
+    public void putIntInsert() {
+        insertKV.putInt(nextInsertKey(), insertIndex);
+    }
+
+    @Benchmark
+    public void putStringUpdate() {
+        int i = nextUpdateIndex();
+        updateKV.putString(strKeys[i], strValues[round & 1]);
+    }
+
+    @Benchmark
+    public void putStringInsert() {
+        insertKV.putString(nextInsertKey(), strValues[0]);
+    }
+
+    @Benchmark
+    public void putObjectUpdate() {
+        int i = nextUpdateIndex();
+        updateKV.putObject(objKeys[i], setValues[round & 1], StringSetEncoder.INSTANCE);
+    }
+
+    @Benchmark
+    public void putObjectInsert() {
+        insertKV.putObject(nextInsertKey(), setValues[0], StringSetEncoder.INSTANCE);
+    }
+}
@@ -0,0 +1,155 @@
+package io.fastkv;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Semaphore;
+
+/**
+ * 多进程模式（见 {@link FastKV.Builder#multiProcess()}）的修改序号文件（.kvq）。
+ * <p>
+ * 文件只包含一个 long（小端），可写实例每次将修改写入A/B文件之后递增；
+ * 其他进程中的只读实例映射同一文件，访问时比较序号，与加载时不同则重新加载数据。
+ * 文件通过 mmap 共享，所以读取序号只是一次内存访问，不需要系统调用。
+ * <p>
+ * 序号放在单独的文件中，而不是A/B文件的数据头中，以保持数据文件的格式不变（旧版本仍可读取）。
+ * <p>
+ * 多个进程的可写实例通过锁定此文件中序号之后的 1 字节（{@link FileChannel#lock(long, long, boolean)}）互斥，
+ * 序号同时作为数据的版本号：获得锁之后序号与本实例最后看到的不同，说明其他进程修改过数据。
+ * 文件锁由整个进程持有，同一进程中的多个通道重复加锁会抛出异常，所以先获取进程内的信号量。
+ */
+final class ChangeSequence {
+    static final String SEQUENCE_SUFFIX = ".kvq";
+    private static final int SIZE = 8;
+    private static final int LOCK_POSITION = SIZE;
+
+    // 进程内每个序号文件对应一个信号量（不使用 ReentrantLock，因为加锁和解锁可能在不同的线程）
+    private static final Map<String, Semaphore> sProcessLocks = new ConcurrentHashMap<>();
+
+    private final FileChannel channel;
+    private final MappedByteBuffer buffer;
+    private final Semaphore processLock;
+    private FileLock fileLock;
+
+    private ChangeSequence(FileChannel channel, MappedByteBuffer buffer, Semaphore processLock) {
+        this.channel = channel;
+        this.buffer = buffer;
+        this.processLock = processLock;
+    }
+
+    /**
+     * 打开序号文件，可写时文件不存在则创建；只读时文件不存在（可写实例尚未打开）返回 null
+     */
+    @SuppressWarnings("resource")
+    static ChangeSequence open(File file, boolean writable) throws IOException {
+        if (writable) {
+            if (!Utils.makeFileIfNotExist(file)) {
+                throw new IOException("open sequence file failed");
+            }
+        } else if (file.length() < SIZE) {
+            return null;
+        }
+        RandomAccessFile accessFile = new RandomAccessFile(file, writable ? "rw" : "r");
+        try {
+            FileChannel channel = accessFile.getChannel();
+            MappedByteBuffer buffer = channel.map(writable ? FileChannel.MapMode.READ_WRITE
+                    : FileChannel.MapMode.READ_ONLY, 0, SIZE);
+            buffer.order(ByteOrder.LITTLE_ENDIAN);
+            Semaphore processLock = null;
+            if (writable) {
+                String key = file.getAbsolutePath();
+                processLock = sProcessLocks.get(key);
+                if (processLock == null) {
+                    Semaphore newLock = new Semaphore(1);
+                    processLock = sProcessLocks.putIfAbsent(key, newLock);
+                    if (processLock == null) {
+                        processLock = newLock;
+                    }
+                }
+            }
+            return new ChangeSequence(channel, buffer, processLock);
+        } catch (IOException e) {
+            Utils.closeQuietly(accessFile);
+            throw e;
+        }
+    }
+
+    long get() {
+        return buffer.getLong(0);
+    }
+
+    /**
+     * 递增序号（持有 FastKV 的对象锁；多个可写实例时还需持有写入锁）
+     */
+    void increment() {
+        buffer.putLong(0, buffer.getLong(0) + 1);
+    }
+
+    /**
+     * 获取写入锁（仅可写时），阻塞直到其他进程（和本进程中的其他实例）释放。
+     * 只在加载时使用，修改数据时使用 {@link #tryLock()}，避免持有 FastKV 的对象锁时阻塞
+     */
+    synchronized void lock() throws IOException {
+        if (fileLock != null) {
+            return;
+        }
+        processLock.acquireUninterruptibly();
+        try {
+            fileLock = channel.lock(LOCK_POSITION, 1, false);
+        } catch (IOException | RuntimeException e) {
+            processLock.release();
+            throw e;
+        }
+    }
+
+    /**
+     * 尝试获取写入锁（仅可写时），其他进程（或本进程中的其他实例）持有时立即返回 false；已持有时返回 true
+     */
+    synchronized boolean tryLock() throws IOException {
+        if (fileLock != null) {
+            return true;
+        }
+        if (!processLock.tryAcquire()) {
+            return false;
+        }
+        try {
+            fileLock = channel.tryLock(LOCK_POSITION, 1, false);
+        } catch (IOException | RuntimeException e) {
+            processLock.release();
+            throw e;
+        }
+        if (fileLock == null) {
+            processLock.release();
+            return false;
+        }
+        return true;
+    }
+
+    synchronized boolean isLocked() {
+        return fileLock != null;
+    }
+
+    synchronized void unlock() {
+        if (fileLock == null) {
+            return;
+        }
+        try {
+            fileLock.release();
+        } catch (IOException ignore) {
+        } finally {
+            fileLock = null;
+            processLock.release();
+        }
+    }
+
+    void close() {
+        unlock();
+        Utils.closeQuietly(channel);
+    }
+}
@@ -0,0 +1,197 @@
+package io.fastkv;
+
+import java.io.IOException;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+
+/**
+ * 按固定大小分块映射的文件（用于A/B文件）。
+ * <p>
+ * 第 i 块映射文件的 [i * 块大小, (i + 1) * 块大小) 区域，只有最后一块可能不满。
+ * 扩容时只需重新映射最后一块（若不满）并映射新增的块，已有的块保持不变，
+ * 避免数据量大时每次扩容都从头重新映射整个文件。
+ * <p>
+ * 读写接口与 {@link MappedByteBuffer} 相同（小端），跨块的读写会被拆开。
+ * 此类不是线程安全的，除 {@link #force()} 之外的访问都需要持有 FastKV 的对象锁。
+ */
+final class ChunkedMapping {
+    // 块大小（非 final，便于测试）
+    static int sChunkShift = 22;
+
+    private final FileChannel channel;
+    private final int shift;
+    private final int chunkSize;
+    private final int mask;
+    private MappedByteBuffer[] chunks;
+    private int capacity;
+    private int position;
+
+    private ChunkedMapping(FileChannel channel) {
+        this.channel = channel;
+        this.shift = sChunkShift;
+        this.chunkSize = 1 << shift;
+        this.mask = chunkSize - 1;
+        this.chunks = new MappedByteBuffer[0];
+    }
+
+    /**
+     * 映射文件的 [0, capacity) 区域，文件长度不足时会被扩展
+     */
+    static ChunkedMapping map(FileChannel channel, long capacity) throws IOException {
+        if (capacity <= 0 || capacity > Integer.MAX_VALUE) {
+            throw new IOException("invalid capacity: " + capacity);
+        }
+        ChunkedMapping mapping = new ChunkedMapping(channel);
+        mapping.grow((int) capacity);
+        return mapping;
+    }
+
+    int capacity() {
+        return capacity;
+    }
+
+    /**
+     * 将映射区域扩大到 newCapacity，已有的完整块不会重新映射
+     */
+    void grow(int newCapacity) throws IOException {
+        if (newCapacity <= capacity) {
+            return;
+        }
+        int count = ((newCapacity - 1) >>> shift) + 1;
+        MappedByteBuffer[] newChunks = new MappedByteBuffer[count];
+        int full = capacity >>> shift;
+        System.arraycopy(chunks, 0, newChunks, 0, full);
+        for (int i = full; i < count; i++) {
+            long start = (long) i << shift;
+            long size = Math.min(chunkSize, newCapacity - start);
+            MappedByteBuffer chunk = channel.map(FileChannel.MapMode.READ_WRITE, start, size);
+            chunk.order(ByteOrder.LITTLE_ENDIAN);
+            newChunks[i] = chunk;
+        }
+        chunks = newChunks;
+        capacity = newCapacity;
+    }
+
+    private MappedByteBuffer chunk(int index) {
+        return chunks[index >>> shift];
+    }
+
+    byte get(int index) {
+        return chunk(index).get(index & mask);
+    }
+
+    void put(int index, byte value) {
+        chunk(index).put(index & mask, value);
+    }
+
+    int getInt(int index) {
+        int offset = index & mask;
+        if (offset + 4 <= chunkSize) {
+            return chunk(index).getInt(offset);
+        }
+        return (get(index) & 0xFF)
+                | ((get(index + 1) & 0xFF) << 8)
+                | ((get(index + 2) & 0xFF) << 16)
+                | ((get(index + 3) & 0xFF) << 24);
+    }
+
+    long getLong(int index) {
+        int offset = index & mask;
+        if (offset + 8 <= chunkSize) {
+            return chunk(index).getLong(offset);
+        }
+        return (getInt(index) & 0xFFFFFFFFL) | (((long) getInt(index + 4)) << 32);
+    }
+
+    void putInt(int index, int value) {
+        int offset = index & mask;
+        if (offset + 4 <= chunkSize) {
+            chunk(index).putInt(offset, value);
+        } else {
+            for (int i = 0; i < 4; i++) {
+                put(index + i, (byte) (value >> (i << 3)));
+            }
+        }
+    }
+
+    void putLong(int index, long value) {
+        int offset = index & mask;
+        if (offset + 8 <= chunkSize) {
+            chunk(index).putLong(offset, value);
+        } else {
+            putInt(index, (int) value);
+            putInt(index + 4, (int) (value >> 32));
+        }
+    }
+
+    ChunkedMapping position(int newPosition) {
+        position = newPosition;
+        return this;
+    }
+
+    ChunkedMapping rewind() {
+        position = 0;
+        return this;
+    }
+
+    int getInt() {
+        int value = getInt(position);
+        position += 4;
+        return value;
+    }
+
+    long getLong() {
+        long value = getLong(position);
+        position += 8;
+        return value;
+    }
+
+    ChunkedMapping put(byte[] src) {
+        return put(src, 0, src.length);
+    }
+
+    /**
+     * 将 src[offset, offset + length) 写入当前位置
+     */
+    ChunkedMapping put(byte[] src, int offset, int length) {
+        while (length > 0) {
+            int p = position & mask;
+            int n = Math.min(length, chunkSize - p);
+            MappedByteBuffer chunk = chunk(position);
+            chunk.position(p);
+            chunk.put(src, offset, n);
+            position += n;
+            offset += n;
+            length -= n;
+        }
+        return this;
+    }
+
+    /**
+     * 从当前位置读取 length 字节到 dst[offset, offset + length)
+     */
+    ChunkedMapping get(byte[] dst, int offset, int length) {
+        while (length > 0) {
+            int p = position & mask;
+            int n = Math.min(length, chunkSize - p);
+            MappedByteBuffer chunk = chunk(position);
+            chunk.position(p);
+            chunk.get(dst, offset, n);
+            position += n;
+            offset += n;
+            length -= n;
+        }
+        return this;
+    }
+
+    /**
+     * 将所有块中的修改同步到磁盘（系统只会写回其中的脏页）
+     */
+    void force() {
+        MappedByteBuffer[] a = chunks;
+        for (MappedByteBuffer chunk : a) {
+            chunk.force();
+        }
+    }
+}
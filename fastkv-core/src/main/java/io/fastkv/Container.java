@@ -29,6 +29,13 @@ import io.fastkv.interfaces.FastEncoder;
  * <li>字符串转换：支持解析为数值或布尔值</li>
  * <li>数组和对象类型使用默认值</li>
  * </ul>
+ *
+ * <h3>并发访问</h3>
+ * <p>读取方法不加锁，因此 value 和 external 字段声明为 volatile，以便写入线程的更新对读取线程立即可见。
+ * 写入方需先写 value 再写 external，读取方先读 external 再读 value：
+ * 读到 external == false 时，保证读到的是对应的新值而不是旧的外部文件名。
+ * offset、start 等位置字段只在持有 FastKV 对象锁时访问，无需 volatile。
+ * 延迟解码模式下，变长类型加载时 value 为 null，首次读取时在对象锁内解码并写入 value。
  */
 class Container {
     /**
@@ -66,7 +73,7 @@ class Container {
 
     /** 布尔值容器 - 存储boolean类型数据，支持与数值和字符串类型的转换 */
     static class BooleanContainer extends BaseContainer {
-        boolean value;
+        volatile boolean value;
 
         BooleanContainer(int offset, boolean value) {
             this.offset = offset;
@@ -111,7 +118,7 @@ class Container {
 
     /** 整数容器 - 存储int类型数据，支持与其他数值类型和字符串的转换 */
     static class IntContainer extends BaseContainer {
-        int value;
+        volatile int value;
 
         IntContainer(int offset, int value) {
             this.offset = offset;
@@ -156,7 +163,7 @@ class Container {
 
     /** 单精度浮点数容器 - 存储float类型数据，支持与其他数值类型和字符串的转换 */
     static class FloatContainer extends BaseContainer {
-        float value;
+        volatile float value;
 
         FloatContainer(int offset, float value) {
             this.offset = offset;
@@ -201,7 +208,7 @@ class Container {
 
     /** 长整数容器 - 存储long类型数据，支持与其他数值类型和字符串的转换 */
     static class LongContainer extends BaseContainer {
-        long value;
+        volatile long value;
 
         LongContainer(int offset, long value) {
             this.offset = offset;
@@ -246,7 +253,7 @@ class Container {
 
     /** 双精度浮点数容器 - 存储double类型数据，支持与其他数值类型和字符串的转换 */
     static class DoubleContainer extends BaseContainer {
-        double value;
+        volatile double value;
 
         DoubleContainer(int offset, double value) {
             this.offset = offset;
@@ -296,13 +303,13 @@ class Container {
      */
     static abstract class VarContainer extends BaseContainer {
         /** 存储的值对象 */
-        Object value;
+        volatile Object value;
         /** 键值对在缓冲区中的起始位置 */
         int start;
         /** 值的字节长度 */
         int valueSize;
         /** 是否存储在外部文件中（向前兼容字段） */
-        boolean external;
+        volatile boolean external;
 
         VarContainer(int start, int offset, Object value, int size, boolean external) {
             this.start = start;
@@ -311,6 +318,11 @@ class Container {
             this.valueSize = size;
             this.external = external;
         }
+
+        /** 延迟解码模式下加载的值尚未解码（值仍在缓冲区中） */
+        boolean isLazy() {
+            return !external && value == null;
+        }
     }
 
     /** 
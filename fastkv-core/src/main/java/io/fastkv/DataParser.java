@@ -0,0 +1,372 @@
+package io.fastkv;
+
+import io.fastkv.Container.*;
+import io.fastkv.interfaces.FastCipher;
+import io.fastkv.interfaces.FastEncoder;
+
+/**
+ * 数据解析器，使用扩展方法模式处理FastKV的数据解析。
+ */
+class DataParser {
+    private static final String PARSE_DATA_FAILED = "parse dara failed";
+    private static final String MISS_CIPHER = "miss cipher";
+    
+    /**
+     * 解析数据 - 扩展方法模式
+     * 
+     * @param kv FastKV实例
+     * @param hadEncrypted 数据是否已加密
+     * @return 是否解析成功
+     */
+    static boolean parseData(FastKV kv, boolean hadEncrypted) {
+        if (hadEncrypted && kv.cipher == null) {
+            LoggerHelper.error(kv, MISS_CIPHER);
+            return false;
+        }
+        FastCipher dataCipher = hadEncrypted ? kv.cipher : null;
+        // 持久化的索引与数据匹配时，直接恢复索引，无需逐条解析记录
+        if (kv.persistIndex && dataCipher == kv.cipher && IndexHelper.load(kv)) {
+            kv.needRewrite = false;
+            return true;
+        }
+        FastBuffer buffer = kv.fastBuffer;
+        buffer.position = FastKV.DATA_START;
+        try {
+            if (dataCipher == null && ParallelHelper.shouldParallel(kv.dataEnd - FastKV.DATA_START)) {
+                parseParallel(kv);
+                buffer.position = kv.dataEnd;
+            } else {
+                while (buffer.position < kv.dataEnd) {
+                    parseRecord(kv, buffer, dataCipher);
+                }
+            }
+        } catch (Exception e) {
+            LoggerHelper.error(kv, e);
+            return false;
+        }
+        if (buffer.position != kv.dataEnd) {
+            LoggerHelper.error(kv, new Exception(PARSE_DATA_FAILED));
+            return false;
+        }
+        kv.needRewrite = !hadEncrypted && kv.cipher != null && kv.dataEnd != FastKV.DATA_START;
+        return true;
+    }
+    
+    /**
+     * 并行解析未加密的数据。
+     * <ol>
+     * <li>顺序扫描记录头：确定记录边界，记录无效数据段，并按记录边界将数据切分为若干块</li>
+     * <li>并行解析各块中的字符串、数组和基本类型（data 为 ConcurrentHashMap，可并发写入）</li>
+     * <li>按顺序处理需要串行的记录：登记紧凑索引（非线程安全），解码对象（编码器不一定是线程安全的）</li>
+     * </ol>
+     * 加密的数据仍然顺序解析，因为加密器不一定是线程安全的。
+     */
+    private static void parseParallel(final FastKV kv) throws Exception {
+        final byte[] hb = kv.fastBuffer.hb;
+        final int dataEnd = kv.dataEnd;
+        final int maxChunks = ParallelHelper.sParallelism * 4;
+        final int chunkSize = (dataEnd - FastKV.DATA_START) / maxChunks + 1;
+        final int[] bounds = new int[maxChunks + 1];
+        final int[] counts = new int[maxChunks];
+        int n = 0;
+        int records = 0;
+        int p = FastKV.DATA_START;
+        bounds[0] = p;
+        while (p < dataEnd) {
+            if (p - bounds[n] >= chunkSize && n + 1 < maxChunks) {
+                counts[n++] = records;
+                bounds[n] = p;
+                records = 0;
+            }
+            byte info = hb[p];
+            byte type = (byte) (info & DataType.TYPE_MASK);
+            if (type < DataType.BOOLEAN || type > DataType.OBJECT_LARGE || (hb[p + 1] & 0xFF) == 0) {
+                throw new Exception(PARSE_DATA_FAILED);
+            }
+            int size = GCHelper.getRecordSize(hb, p);
+            if (size <= 0 || (long) p + size > dataEnd) {
+                throw new Exception(PARSE_DATA_FAILED);
+            }
+            if (info < 0) {
+                GCHelper.countInvalid(kv, p, p + size);
+            } else {
+                records++;
+            }
+            p += size;
+        }
+        counts[n++] = records;
+        bounds[n] = dataEnd;
+
+        final int chunkCount = n;
+        // 只解析未加密的数据：开启了加密时数据需要重写（needRewrite），与 parseRecord 一样不登记索引、不延迟解码，
+        // 否则基本类型只在索引中，重写时（只复制 data 中的容器）会丢失
+        final boolean useIndex = kv.primitiveIndex != null && kv.cipher == null;
+        final boolean lazy = kv.lazyDecode && kv.cipher == null;
+        final int[][] deferred = new int[chunkCount][];
+        final String[][] deferredKeys = new String[chunkCount][];
+        final int[] deferredCounts = new int[chunkCount];
+        ParallelHelper.run(chunkCount, index -> {
+            int end = bounds[index + 1];
+            int[] starts = new int[counts[index]];
+            String[] keys = useIndex ? new String[counts[index]] : null;
+            int m = 0;
+            FastBuffer buffer = new FastBuffer(hb, bounds[index]);
+            while (buffer.position < end) {
+                int start = buffer.position;
+                byte info = hb[start];
+                byte type = (byte) (info & DataType.TYPE_MASK);
+                if (info < 0) {
+                    buffer.position = start + GCHelper.getRecordSize(hb, start);
+                } else if (type <= DataType.DOUBLE && useIndex) {
+                    buffer.position = start + 2;
+                    keys[m] = buffer.getString(hb[start + 1] & 0xFF);
+                    starts[m++] = start;
+                    buffer.position = start + GCHelper.getRecordSize(hb, start);
+                } else if ((type == DataType.OBJECT || type == DataType.OBJECT_LARGE)
+                        && !lazy && (info & DataType.EXTERNAL_MASK) == 0) {
+                    starts[m++] = start;
+                    buffer.position = start + GCHelper.getRecordSize(hb, start);
+                } else {
+                    parseRecord(kv, buffer, null);
+                }
+            }
+            deferred[index] = starts;
+            deferredKeys[index] = keys;
+            deferredCounts[index] = m;
+        });
+
+        FastBuffer buffer = kv.fastBuffer;
+        for (int i = 0; i < chunkCount; i++) {
+            int[] starts = deferred[i];
+            String[] keys = deferredKeys[i];
+            for (int j = 0, m = deferredCounts[i]; j < m; j++) {
+                if (keys != null && keys[j] != null) {
+                    kv.primitiveIndex.put(keys[j], starts[j], hb, null);
+                } else {
+                    buffer.position = starts[j];
+                    parseRecord(kv, buffer, null);
+                }
+            }
+        }
+    }
+
+    /**
+     * 解析位于 buffer.position 的一条记录，解析完成后 position 指向下一条记录
+     */
+    static void parseRecord(FastKV kv, FastBuffer buffer, FastCipher dataCipher) throws Exception {
+        int start = buffer.position;
+        byte info = buffer.get();
+        byte type = (byte) (info & DataType.TYPE_MASK);
+        if (type < DataType.BOOLEAN || type > DataType.OBJECT_LARGE) {
+            throw new Exception(PARSE_DATA_FAILED);
+        }
+        int keySize = buffer.get() & 0xFF;
+        if (keySize == 0) {
+            throw new IllegalStateException("invalid key size");
+        }
+        if (info < 0) {
+            buffer.position += keySize;
+            int valueSize;
+            if (type <= DataType.DOUBLE) {
+                valueSize = FastKV.TYPE_SIZE[type];
+            } else if (isLargeType(type)) {
+                valueSize = buffer.getInt();
+            } else {
+                valueSize = buffer.getShort() & 0xFFFF;
+            }
+            buffer.position += valueSize;
+            GCHelper.countInvalid(kv, start, buffer.position);
+            return;
+        }
+        String key = buffer.getString(dataCipher, keySize);
+        int pos = buffer.position;
+        if (type <= DataType.DOUBLE) {
+            if (kv.primitiveIndex != null && dataCipher == kv.cipher) {
+                // 紧凑索引只记录位置，值在读取时再从缓冲区解码。
+                // 需要重写加密的数据仍然创建容器，重写之后再登记到索引中。
+                kv.primitiveIndex.put(key, start, buffer.hb, dataCipher);
+                buffer.position = pos + FastKV.TYPE_SIZE[type];
+            } else {
+                parseBasicType(kv, buffer, dataCipher, type, key, pos);
+            }
+        } else {
+            parseComplexType(kv, buffer, dataCipher, type, key, pos, start, info);
+        }
+    }
+
+    /**
+     * 解析基本类型数据
+     */
+    private static void parseBasicType(FastKV kv, FastBuffer buffer, FastCipher dataCipher, 
+                                      byte type, String key, int pos) {
+        switch (type) {
+            case DataType.BOOLEAN:
+                kv.data.put(key, new BooleanContainer(pos, buffer.get() == 1));
+                break;
+            case DataType.INT:
+                kv.data.put(key, new IntContainer(pos, buffer.getInt(dataCipher)));
+                break;
+            case DataType.LONG:
+                kv.data.put(key, new LongContainer(pos, buffer.getLong(dataCipher)));
+                break;
+            case DataType.FLOAT:
+                kv.data.put(key, new FloatContainer(pos, buffer.getFloat(dataCipher)));
+                break;
+            default:
+                kv.data.put(key, new DoubleContainer(pos, buffer.getDouble(dataCipher)));
+                break;
+        }
+    }
+    
+    /**
+     * 解析复杂类型数据
+     */
+    private static void parseComplexType(FastKV kv, FastBuffer buffer, FastCipher dataCipher, 
+                                        byte type, String key, int pos, int start, byte info) throws Exception {
+        // 根据类型选择长度读取方式
+        boolean isLarge = isLargeType(type);
+        int size = isLarge ? buffer.getInt() : (buffer.getShort() & 0xFFFF);
+        int lengthSize = isLarge ? 4 : 2;
+
+        // 目前不再往写大value到external文件了，但是为了兼容之前的版本，读取时还是判断一下。
+        boolean external = (info & DataType.EXTERNAL_MASK) != 0;
+        if (external && size != Utils.NAME_SIZE) {
+            throw new IllegalStateException("name size not match");
+        }
+        
+        // 将大长度类型映射回普通类型进行处理
+        byte normalType = getNormalType(type);
+
+        // 延迟解码：只记录位置，值在首次读取时解码（见 decodeValue）。
+        // 需要重写加密的数据，以及旧版本的外部文件，仍然在加载时解码。
+        if (kv.lazyDecode && !external && dataCipher == kv.cipher) {
+            int offset = pos + lengthSize;
+            VarContainer c;
+            if (normalType == DataType.STRING) {
+                c = new StringContainer(start, offset, null, size, false);
+            } else if (normalType == DataType.ARRAY) {
+                c = new ArrayContainer(start, offset, null, size, false);
+            } else {
+                c = new ObjectContainer(start, offset, null, size, false);
+            }
+            kv.data.put(key, c);
+            buffer.position = offset + size;
+            return;
+        }
+
+        switch (normalType) {
+            case DataType.STRING:
+                String str = external ? buffer.getString(size) : buffer.getString(dataCipher, size);
+                kv.data.put(key, new StringContainer(start, pos + lengthSize, str, size, external));
+                break;
+            case DataType.ARRAY:
+                Object value = external ? buffer.getString(size) : buffer.getBytes(dataCipher, size);
+                kv.data.put(key, new ArrayContainer(start, pos + lengthSize, value, size, external));
+                break;
+            default:
+                parseObjectType(kv, buffer, dataCipher, key, pos, start, size, external, lengthSize);
+                break;
+        }
+    }
+    
+    /**
+     * 解析对象类型数据
+     */
+    private static void parseObjectType(FastKV kv, FastBuffer buffer, FastCipher dataCipher, 
+                                       String key, int pos, int start, int size, boolean external, int lengthSize) throws Exception {
+        if (external) {
+            String fileName = buffer.getString(size);
+            kv.data.put(key, new ObjectContainer(start, pos + lengthSize, fileName, size, true));
+        } else {
+            ObjectContainer container = new ObjectContainer(start, pos + lengthSize, null, size, false);
+            if (decodeObject(kv, dataCipher, container)) {
+                kv.data.put(key, container);
+            }
+            buffer.position = pos + lengthSize + size;
+        }
+    }
+
+    /**
+     * 解码对象数据，成功时设置容器的 encoder 和 value
+     */
+    private static boolean decodeObject(FastKV kv, FastCipher dataCipher, ObjectContainer c) throws Exception {
+        FastBuffer objectBuffer;
+        int dataLen;
+        if (dataCipher == null) {
+            objectBuffer = new FastBuffer(kv.fastBuffer.hb, c.offset);
+            dataLen = c.valueSize;
+        } else {
+            byte[] bytes = new byte[c.valueSize];
+            System.arraycopy(kv.fastBuffer.hb, c.offset, bytes, 0, c.valueSize);
+            byte[] dstBytes = dataCipher.decrypt(bytes);
+            objectBuffer = new FastBuffer(dstBytes);
+            dataLen = dstBytes.length;
+        }
+        int tagSize = objectBuffer.get() & 0xFF;
+        String tag = objectBuffer.getString(tagSize);
+        @SuppressWarnings("rawtypes")
+        FastEncoder encoder = kv.encoderMap.get(tag);
+        int objectSize = dataLen - (tagSize + 1);
+        if (objectSize < 0) {
+            throw new Exception(PARSE_DATA_FAILED);
+        }
+        if (encoder != null) {
+            try {
+                Object obj = encoder.decode(objectBuffer.hb, objectBuffer.position, objectSize);
+                if (obj != null) {
+                    // 先写 encoder 再写 value，读取线程通过 volatile 的 value 看到完整的容器
+                    c.encoder = encoder;
+                    c.value = obj;
+                    return true;
+                }
+            } catch (Exception e) {
+                LoggerHelper.error(kv, e);
+            }
+        } else {
+            LoggerHelper.error(kv, "object with tag: " + tag + " without encoder");
+        }
+        return false;
+    }
+
+    /**
+     * 解码延迟加载的值（见 FastKV.Builder.lazyDecode()），需持有 FastKV 的对象锁。
+     * 延迟加载的数据和当前实例使用相同的加密器。
+     */
+    static void decodeValue(FastKV kv, VarContainer c) {
+        FastBuffer buffer = new FastBuffer(kv.fastBuffer.hb, c.offset);
+        try {
+            switch (c.getType()) {
+                case DataType.STRING:
+                    c.value = buffer.getString(kv.cipher, c.valueSize);
+                    break;
+                case DataType.ARRAY:
+                    c.value = buffer.getBytes(kv.cipher, c.valueSize);
+                    break;
+                default:
+                    decodeObject(kv, kv.cipher, (ObjectContainer) c);
+                    break;
+            }
+        } catch (Exception e) {
+            LoggerHelper.error(kv, e);
+        }
+    }
+    
+    /**
+     * 判断是否为大长度类型
+     */
+    private static boolean isLargeType(byte type) {
+        return type == DataType.STRING_LARGE || type == DataType.ARRAY_LARGE || type == DataType.OBJECT_LARGE;
+    }
+    
+    /**
+     * 将大长度类型映射回普通类型
+     */
+    private static byte getNormalType(byte type) {
+        switch (type) {
+            case DataType.STRING_LARGE: return DataType.STRING;
+            case DataType.ARRAY_LARGE: return DataType.ARRAY;
+            case DataType.OBJECT_LARGE: return DataType.OBJECT;
+            default: return type;
+        }
+    }
+} 
\ No newline at end of file
@@ -0,0 +1,2266 @@
+package io.fastkv;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+import java.io.File;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+
+import io.fastkv.interfaces.FastCipher;
+import io.fastkv.interfaces.FastEncoder;
+import io.fastkv.interfaces.FastListener;
+
+import io.fastkv.Container.*;
+
+/**
+ * FastKV - 高性能键值存储库
+ * 
+ * <h2>架构组成</h2>
+ * FastKV采用模块化设计，主要由以下组件构成：
+ * <ul>
+ * <li><b>FastKV核心类</b>：主要负责API接口、数据管理和业务逻辑协调</li>
+ * <li><b>FileHelper</b>：文件I/O操作模块，处理A/B/C文件的读写、重写、备份恢复等</li>
+ * <li><b>DataParser</b>：数据解析模块，负责二进制数据的编码解码和容器创建</li>
+ * <li><b>GCHelper</b>：垃圾回收模块，处理内存整理、缓冲区扩容和无效数据清理</li>
+ * <li><b>LoggerHelper</b>：日志管理模块，统一处理各模块的日志输出</li>
+ * <li><b>Container系列</b>：数据容器，包装不同类型的值并记录元数据</li>
+ * </ul>
+ * 以上组件位于纯 Java 的 fastkv-core 模块，不依赖 Android，可在服务端 JVM 上运行和测试；
+ * Android 侧的 SharedPreferences 适配由 fastkv 模块中的 FastPreferences 提供。
+ * 
+ * <h2>文件存储结构</h2>
+ * <ul>
+ * <li><b>.kva/.kvb文件</b>：双备份主数据文件，使用mmap内存映射技术</li>
+ * <li><b>.kvc文件</b>：阻塞模式下的完整数据文件</li>
+ * <li><b>.tmp文件</b>：临时文件，用于原子性写入操作</li>
+ * </ul>
+ * 
+ * <h2>运作模式</h2>
+ * 
+ * <h3>三种写入模式</h3>
+ * <ul>
+ * <li><b>NON_BLOCKING</b>：通过mmap写入部分数据，高性能但可能在系统崩溃时丢失最新更新</li>
+ * <li><b>ASYNC_BLOCKING</b>：异步使用阻塞I/O将所有数据写入磁盘，类似SharedPreferences的apply()</li>
+ * <li><b>SYNC_BLOCKING</b>：同步写入所有数据，类似SharedPreferences的commit()，最安全但性能较低</li>
+ * </ul>
+ * 
+ * <h3>数据加载流程</h3>
+ * <ol>
+ * <li>优先尝试从C文件加载（阻塞模式数据）</li>
+ * <li>如果C文件不存在且为非阻塞模式，则从A/B文件加载</li>
+ * <li>验证数据完整性（校验和验证）</li>
+ * <li>解析二进制数据并创建对应的Container对象</li>
+ * <li>如需要加密重写，则执行数据迁移</li>
+ * </ol>
+ * 
+ * <h3>数据写入流程</h3>
+ * <ol>
+ * <li>数据编码：将值序列化为二进制格式</li>
+ * <li>缓冲区管理：检查空间，必要时进行GC或扩容</li>
+ * <li>内存更新：更新FastBuffer和Container对象</li>
+ * <li>持久化：根据写入模式同步到文件</li>
+ * <li>校验和更新：维护数据完整性</li>
+ * </ol>
+ * 
+ * <h3>线程模型</h3>
+ * <ul>
+ * <li>写入操作（put/remove/clear/GC等）在对象锁内串行执行</li>
+ * <li>读取操作（getX/contains）不加锁：容器保存在 ConcurrentHashMap 中，容器的值为 volatile 字段，
+ * 读取线程之间、读取与写入之间互不阻塞</li>
+ * <li>仅在数据加载完成之前，或者读取旧版本的外部文件时，读取操作才需要获取对象锁</li>
+ * <li>开启紧凑索引（{@link Builder#compactIndex()}）时，基本类型的值直接从缓冲区读取，需要获取对象锁</li>
+ * <li>只读实例（{@link Builder#readOnly()}）加载完成后数据不再变化，所有读取（包括 getAll）都不加锁；
+ * 开启多进程模式时，读取发现数据有更新才获取对象锁重新加载</li>
+ * </ul>
+ * 
+ * <h3>垃圾回收机制</h3>
+ * <ul>
+ * <li>跟踪无效数据段，当无效数据超过阈值时触发GC</li>
+ * <li>整理内存布局，移除无效数据，压缩存储空间</li>
+ * <li>支持缓冲区扩容和收缩以适应数据量变化</li>
+ * </ul>
+ * 
+ * <h3>容错和恢复</h3>
+ * <ul>
+ * <li>双文件备份机制（A/B文件）确保数据安全</li>
+ * <li>校验和验证检测数据损坏</li>
+ * <li>自动降级：mmap失败时转为阻塞模式</li>
+ * <li>向前兼容：支持读取旧版本外部文件并自动迁移</li>
+ * </ul>
+ * 
+ * <h2>使用注意事项</h2>
+ * <ul>
+ * <li>一旦创建后不要更改文件名</li>
+ * <li>一旦创建后不要更改加密器（但从无加密状态应用加密器是可以的）</li>
+ * <li>当前版本已移除大值外部文件的写入功能，但保留读取逻辑以确保向前兼容</li>
+ * </ul>
+ */
+@SuppressWarnings("rawtypes")
+public final class FastKV {
+    private static final String ENCRYPT_FAILED = "Encrypt failed";
+
+    static final byte[] EMPTY_ARRAY = new byte[0];
+    static final int[] TYPE_SIZE = {0, 1, 4, 4, 8, 8};
+    static final int DATA_START = 12;
+
+    // 存储设备的页大小，通常为 4KB，但是最新的 Android 设备可能为 16KB。
+    static final int PAGE_SIZE = Utils.getPageSize();
+
+    // 数据文件的路径和名称
+    final String path;
+    final String name;
+
+    // 编码器映射，包含所有支持的编码器
+    final Map<String, FastEncoder> encoderMap;
+
+    // 加密器，如果为 null 则表示不加密
+    final FastCipher cipher;
+
+    // 数据结束的位置
+    int dataEnd;
+
+    // 数据校验和
+    long checksum;
+
+    // 数据存储容器。
+    // 写入在对象锁内进行，读取不加锁，所以使用 ConcurrentHashMap 保证读取线程看到的是完整发布的容器。
+    final ConcurrentHashMap<String, BaseContainer> data = new ConcurrentHashMap<>();
+
+    // 构造参数 options 的标记位
+    static final int OPTION_COMPACT_INDEX = 1;
+    static final int OPTION_LAZY_DECODE = 1 << 1;
+    static final int OPTION_PERSIST_INDEX = 1 << 2;
+    static final int OPTION_SINGLE_FILE = 1 << 3;
+    static final int OPTION_JOURNAL = 1 << 4;
+    static final int OPTION_HEAP_FREE = 1 << 5;
+    static final int OPTION_READ_ONLY = 1 << 6;
+    static final int OPTION_MULTI_PROCESS = 1 << 7;
+
+    // 加载优先级（见 Builder.loadPriority()），数值越小越优先
+    public static final int PRIORITY_CRITICAL = 0;
+    public static final int PRIORITY_NORMAL = 1;
+    public static final int PRIORITY_PREFETCH = 2;
+
+    // 是否延迟解码变长类型的值（见 Builder.lazyDecode()）
+    final boolean lazyDecode;
+
+    // 是否持久化索引（见 Builder.persistIndex()）
+    final boolean persistIndex;
+
+    // 是否使用单文件模式（见 Builder.singleFile()）
+    final boolean singleFile;
+
+    // 阻塞模式下是否使用增量日志（见 Builder.journal()）
+    final boolean useJournal;
+
+    // 阻塞模式的增量日志，未开启或日志文件打不开时为 null
+    Journal journal;
+
+    // 是否为只读实例（见 Builder.readOnly()），只读实例不持有数据副本和文件映射，修改操作抛出 UnsupportedOperationException
+    final boolean readOnly;
+
+    // 多进程模式（见 Builder.multiProcess()）的同步状态，未开启时为 null
+    final MultiProcessSync processSync;
+    // 当前修改操作的嵌套层数（见 beginWrite()），回到 0 时释放多进程模式的写入锁
+    private int writeDepth;
+    // 只读实例加载时，存在的文件都不完整（例如其他进程正在写入）
+    boolean incomplete;
+
+    // 空闲时是否释放堆内的数据副本（见 Builder.heapFree()），释放后 fastBuffer 为 null
+    final boolean heapFree;
+    // 空闲时释放数据副本（heapFree）和A/B文件资源（实例缓存）的状态
+    final ResourceReleaser releaser = new ResourceReleaser(this);
+
+    // 基本类型的紧凑索引，为 null 表示未开启（见 Builder.compactIndex()）。
+    // 开启后，基本类型的记录只登记在此索引中，不创建 Container，访问需持有对象锁。
+    PrimitiveIndex primitiveIndex;
+
+    // 标记数据是否正在加载
+    volatile boolean startLoading = false;
+
+    // 标记数据是否已加载完成，加载完成之前的读取需要等待加载结束
+    volatile boolean loaded = false;
+
+    // 加载完成后执行的回调（见 onLoaded()），访问需持有 loadedCallbacks 的锁（加载期间对象锁被 loadData() 持有）
+    private final ArrayList<Runnable> loadedCallbacks = new ArrayList<>();
+
+    // 用于存储数据的缓冲区
+    FastBuffer fastBuffer;
+    int updateStart;
+    int updateSize;
+
+    // 用于记录外部文件的名称（兼容旧版本FastKV）
+    final List<String> deletedFiles = new ArrayList<>();
+
+    // 如果之前没有加密，而这次打开需要加密，则需要重写数据。
+    boolean needRewrite = false;
+
+    // 标记是否已经关闭
+    boolean closed = false;
+
+    // 用于执行apply()方法的执行器
+    private final Executor applyExecutor = new LimitExecutor();
+
+    // ASYNC_BLOCKING 模式下写入C文件时的数据快照，只在 applyExecutor 的任务中访问（见 FileHelper.writeSnapshotToCFile）
+    byte[] snapshot;
+    // C文件的版本，clear() 删除C文件时递增；snapshotGeneration 为复制快照时的版本，
+    // 两者不一致时快照是删除之前的数据，不能再重命名为C文件（见 FileHelper.renameSnapshot）
+    int cFileGeneration;
+    int snapshotGeneration;
+
+    // ASYNC_BLOCKING 模式写入C文件的安排（提交窗口、背压、进行中的快照写入）
+    final FlushScheduler flushScheduler = new FlushScheduler(this);
+    // 上次写入C文件（阻塞模式）或 msync（NON_BLOCKING 模式）之后修改的字节数（估算值）
+    int pendingBytes;
+
+    // NON_BLOCKING 模式的后台同步策略（见 SyncHelper），为 null 时不主动同步
+    SyncPolicy syncPolicy;
+    // 是否已安排同步
+    boolean syncScheduled;
+    // 最后一次修改的时间（System.nanoTime），用于 SyncPolicy.idle
+    long lastChangeTime;
+
+    // 用于记录无效数据段的起始位置和长度
+    int invalidBytes;
+    final ArrayList<Segment> invalids = new ArrayList<>();
+
+    // 是否正在进行增量整理（见 GCHelper.compact）
+    boolean compacting = false;
+
+    final ArrayList<FastListener> listeners = new ArrayList<>();
+
+    // 原始 FastKV 字段
+    FileChannel aChannel;
+    FileChannel bChannel;
+    ChunkedMapping aBuffer;
+    ChunkedMapping bBuffer;
+
+    // 单文件模式的重做日志，此时 bChannel 和 bBuffer 为 null；未打开或已降级为阻塞模式时为 null
+    RedoLog redoLog;
+
+    // 用于记录删除操作的起始位置
+    private int removeStart;
+
+    // 默认写入模式是非阻塞的（通过 mmap 写入部分数据）。
+    // 如果 mmap API 抛出 IOException，则降级为阻塞模式（使用阻塞 I/O 将所有数据写入磁盘）。
+    // 用户可以通过 FastKV.Builder 指定使用阻塞模式
+    static final int NON_BLOCKING = 0;
+    static final int ASYNC_BLOCKING = 1;
+    static final int SYNC_BLOCKING = 2;
+    int writingMode;
+
+    // 自动提交标记。
+    // 阻塞模式下关闭自动提交时，数据只保留在内存中，commit 时再写入 C 文件；
+    // NON_BLOCKING 模式下关闭自动提交时，数据只写入 fastBuffer，并记录脏数据段，commit 时一次性同步到 A/B 文件。
+    private boolean autoCommit = true;
+
+    // NON_BLOCKING 模式批量写入期间的脏数据段
+    final ArrayList<Segment> dirtySegments = new ArrayList<>();
+
+    FastKV(final String path,
+           final String name,
+           FastEncoder[] encoders,
+           FastCipher cipher,
+           int writingMode) {
+        this(path, name, encoders, cipher, writingMode, 0);
+    }
+
+    FastKV(final String path,
+           final String name,
+           FastEncoder[] encoders,
+           FastCipher cipher,
+           int writingMode,
+           int options) {
+        this(path, name, encoders, cipher, writingMode, options, PRIORITY_NORMAL);
+    }
+
+    FastKV(final String path,
+           final String name,
+           FastEncoder[] encoders,
+           FastCipher cipher,
+           int writingMode,
+           int options,
+           int loadPriority) {
+        this(path, name, encoders, cipher, writingMode, options, loadPriority, false);
+    }
+
+    /**
+     * @param deferLoad 为 true 时不安排加载，由调用方随后在当前线程中调用 {@link #load()}
+     *                  （见 {@link Builder#buildAsync()}）；在此之前访问实例时，会在访问的线程中加载
+     */
+    FastKV(final String path,
+           final String name,
+           FastEncoder[] encoders,
+           FastCipher cipher,
+           int writingMode,
+           int options,
+           int loadPriority,
+           boolean deferLoad) {
+        this.path = path;
+        this.name = name;
+        this.cipher = cipher;
+        this.writingMode = writingMode;
+        // 只读实例加载时解码全部的值，之后不再访问数据副本，所以不使用紧凑索引和延迟解码，其他写入相关的选项也无意义
+        this.readOnly = (options & OPTION_READ_ONLY) != 0;
+        if (readOnly) {
+            options &= OPTION_READ_ONLY | OPTION_MULTI_PROCESS;
+        }
+        boolean multiProcess = (options & OPTION_MULTI_PROCESS) != 0;
+        this.processSync = multiProcess ? new MultiProcessSync(this) : null;
+        // 多进程写入需要A/B两个文件（重做日志无法在进程间同步）
+        this.primitiveIndex = (options & OPTION_COMPACT_INDEX) != 0 ? new PrimitiveIndex() : null;
+        this.lazyDecode = (options & OPTION_LAZY_DECODE) != 0;
+        this.persistIndex = primitiveIndex != null && (options & OPTION_PERSIST_INDEX) != 0;
+        this.singleFile = writingMode == NON_BLOCKING && (options & OPTION_SINGLE_FILE) != 0 && !multiProcess;
+        this.useJournal = writingMode != NON_BLOCKING && (options & OPTION_JOURNAL) != 0;
+        // 读取紧凑索引和延迟解码都需要访问数据副本，不能释放
+        this.heapFree = writingMode == NON_BLOCKING && (options & OPTION_HEAP_FREE) != 0
+                && primitiveIndex == null && !lazyDecode;
+        
+        Map<String, FastEncoder> map = new HashMap<>();
+        if (encoders != null) {
+            for (FastEncoder e : encoders) {
+                String tag = e.tag();
+                if (map.containsKey(tag)) {
+                    LoggerHelper.error(this, "duplicate encoder tag:" + tag);
+                } else {
+                    map.put(tag, e);
+                }
+            }
+        }
+        StringSetEncoder encoder = StringSetEncoder.INSTANCE;
+        map.put(encoder.tag(), encoder);
+        this.encoderMap = map;
+
+        if (deferLoad) {
+            return;
+        }
+        if (FastKVConfig.sLoadConcurrency > 0) {
+            // 由加载调度器安排加载，不等待；在加载开始之前访问实例时，会在访问的线程中加载（见 load()）
+            LoadScheduler.submit(this, loadPriority);
+            return;
+        }
+        synchronized (data) {
+            FastKVConfig.getExecutor().execute(this::load);
+            if (!startLoading) {
+                try {
+                    // 等待直到 loadData() 获得对象锁
+                    data.wait();
+                } catch (InterruptedException ignore) {
+                }
+            }
+        }
+    }
+
+    /**
+     * 数据加载流程
+     * 异步加载数据并通知构造函数继续
+     */
+    private synchronized void loadData() {
+        // 一旦获得对象锁，通知等待者继续构造函数
+        synchronized (data) {
+            startLoading = true;
+            data.notify();
+        }
+
+        long start = System.nanoTime();
+
+        try {
+            if (processSync != null) {
+                processSync.beforeLoad();
+            }
+            if (readOnly) {
+                FileHelper.loadReadOnly(this);
+            } else {
+                // 为了兼容先前用阻塞模式保存数据，然后此次用非阻塞模式打开的情况，先尝试加载 C 文件。
+                if (!FileHelper.loadFromCFile(this) && writingMode == NON_BLOCKING) {
+                    FileHelper.loadFromABFile(this);
+                }
+            }
+            if (fastBuffer == null) {
+                fastBuffer = new FastBuffer(PAGE_SIZE);
+            }
+            if (dataEnd == 0) {
+                dataEnd = DATA_START;
+            }
+            if (needRewrite) {
+                FileHelper.rewrite(this);
+                LoggerHelper.info(this, "rewrite data");
+            }
+            if (readOnly) {
+                // 值已全部解码到容器中，只读实例不再需要数据副本
+                fastBuffer = null;
+            }
+            if (processSync != null) {
+                processSync.afterLoad();
+            }
+            releaser.onLoaded();
+        } finally {
+            loaded = true;
+        }
+
+        if (FastKVConfig.sLogger != null) {
+            long t = (System.nanoTime() - start) / 1000000;
+            LoggerHelper.info(this, "loading finish"
+                    + ", data len:" + dataEnd
+                    + ", get keys:" + keyCount()
+                    + ", use time:" + t + " ms");
+        }
+    }
+
+    private int packSize(int size) {
+        return FileHelper.packSize(size, cipher != null);
+    }
+
+    /**
+     * 获取 key 对应的容器，不加锁。
+     * <p>
+     * 写入操作在对象锁内修改 {@link #data} 和容器的值，读取方通过 ConcurrentHashMap 和 volatile 字段获得可见性，
+     * 因此读取线程之间、读取线程与写入线程（包括 GC 和扩容）之间都不会互相阻塞。
+     * 仅在数据加载完成之前，读取需要等待加载结束。
+     */
+    private BaseContainer getContainer(String key) {
+        if (key == null) {
+            return null;
+        }
+        if (!loaded) {
+            awaitLoaded();
+        }
+        if (processSync != null) {
+            processSync.checkChange();
+        }
+        BaseContainer c = data.get(key);
+        if (c == null) {
+            if (primitiveIndex != null) {
+                c = getIndexedContainer(key);
+            }
+        } else if (c.getType() >= DataType.STRING && ((VarContainer) c).isLazy()) {
+            c = decodeLazy(key);
+        }
+        return c;
+    }
+
+    /**
+     * 解码延迟加载的值。解码需要读取缓冲区，而写入线程可能正在移动数据（GC），所以需要加锁。
+     */
+    private synchronized BaseContainer decodeLazy(String key) {
+        BaseContainer c = data.get(key);
+        if (c != null && c.getType() >= DataType.STRING) {
+            decodeIfLazy((VarContainer) c);
+        }
+        return c;
+    }
+
+    private void decodeIfLazy(VarContainer c) {
+        if (c.isLazy()) {
+            DataParser.decodeValue(this, c);
+        }
+    }
+
+    private synchronized BaseContainer getIndexedContainer(String key) {
+        // 加锁之后重新检查 data：类型变更时，key 可能刚从索引移动到 data 中
+        return findContainer(key);
+    }
+
+    /**
+     * 在对象锁内查找 key 对应的容器。
+     * 对于登记在紧凑索引中的基本类型，返回根据缓冲区中的记录临时创建的容器，
+     * 修改其 value 不会影响存储，但其 offset 与缓冲区一致，可用于更新数据。
+     */
+    private BaseContainer findContainer(String key) {
+        BaseContainer c = data.get(key);
+        if (c == null && primitiveIndex != null) {
+            int start = primitiveIndex.find(key, fastBuffer.hb, cipher);
+            if (start != 0) {
+                c = readPrimitive(start);
+            }
+        }
+        return c;
+    }
+
+    /**
+     * 根据缓冲区中位于 start 的基本类型记录创建容器
+     */
+    BaseContainer readPrimitive(int start) {
+        byte[] hb = fastBuffer.hb;
+        byte type = (byte) (hb[start] & DataType.TYPE_MASK);
+        int offset = start + 2 + (hb[start + 1] & 0xFF);
+        switch (type) {
+            case DataType.BOOLEAN:
+                return new BooleanContainer(offset, hb[offset] == 1);
+            case DataType.INT:
+                return new IntContainer(offset, decrypt(fastBuffer.getInt(offset)));
+            case DataType.FLOAT:
+                return new FloatContainer(offset, Float.intBitsToFloat(decrypt(fastBuffer.getInt(offset))));
+            case DataType.LONG:
+                return new LongContainer(offset, decrypt(fastBuffer.getLong(offset)));
+            default:
+                return new DoubleContainer(offset, Double.longBitsToDouble(decrypt(fastBuffer.getLong(offset))));
+        }
+    }
+
+    private int decrypt(int value) {
+        return cipher != null ? cipher.decrypt(value) : value;
+    }
+
+    private long decrypt(long value) {
+        return cipher != null ? cipher.decrypt(value) : value;
+    }
+
+    /**
+     * 登记新写入的基本类型记录，记录的起始位置为 updateStart
+     */
+    private void addPrimitive(String key, BaseContainer c) {
+        if (primitiveIndex != null) {
+            primitiveIndex.put(key, updateStart, fastBuffer.hb, cipher);
+        } else {
+            data.put(key, c);
+        }
+    }
+
+    private void removeContainer(String key) {
+        if (data.remove(key) == null && primitiveIndex != null) {
+            primitiveIndex.remove(key, fastBuffer.hb, cipher);
+        }
+    }
+
+    /**
+     * 清空所有容器（包括紧凑索引）
+     */
+    void clearContainers() {
+        data.clear();
+        if (primitiveIndex != null) {
+            primitiveIndex.clear();
+        }
+    }
+
+    private int keyCount() {
+        return data.size() + (primitiveIndex != null ? primitiveIndex.size() : 0);
+    }
+
+    /**
+     * 数据是否已加载完成。加载完成之前，读取和写入都会阻塞等待加载结束。
+     */
+    public boolean isLoaded() {
+        return loaded;
+    }
+
+    /**
+     * 在数据加载完成后执行 callback。<p>
+     * 若已加载完成，callback 在调用线程中立即执行；否则在加载线程中执行，
+     * 或者（加载发生在持有对象锁的修改操作中时）提交到执行器中执行，都不持有对象锁。
+     * 可用于在加载完成后预热缓存或通知界面，而不必阻塞当前线程等待加载。
+     *
+     * @param callback 回调
+     */
+    public void onLoaded(Runnable callback) {
+        if (callback == null) {
+            return;
+        }
+        synchronized (loadedCallbacks) {
+            if (!loaded) {
+                loadedCallbacks.add(callback);
+                return;
+            }
+        }
+        callback.run();
+    }
+
+    private void runLoadedCallbacks() {
+        Runnable[] callbacks;
+        synchronized (loadedCallbacks) {
+            if (loadedCallbacks.isEmpty()) {
+                return;
+            }
+            callbacks = loadedCallbacks.toArray(new Runnable[0]);
+            loadedCallbacks.clear();
+        }
+        for (Runnable callback : callbacks) {
+            try {
+                callback.run();
+            } catch (Exception e) {
+                LoggerHelper.error(this, e);
+            }
+        }
+    }
+
+    private void awaitLoaded() {
+        // loadData() 在加载期间一直持有对象锁，获得锁即表示加载已结束；
+        // 加载尚未开始时（在调度器中排队）直接在当前线程中加载
+        load();
+    }
+
+    /**
+     * 加载数据，已开始加载（或已加载完成）时只等待加载结束
+     */
+    void load() {
+        boolean run;
+        synchronized (this) {
+            run = !startLoading;
+            if (run) {
+                loadData();
+            }
+        }
+        if (run) {
+            runLoadedCallbacks();
+        }
+    }
+
+    /**
+     * 持有对象锁的修改操作在访问数据之前调用：加载尚未开始（在调度器中排队）时直接在当前线程中加载。
+     * 回调可能访问其他实例或等待其他线程，不能在持有对象锁时执行，所以提交到执行器中。
+     */
+    private void ensureLoaded() {
+        if (!startLoading) {
+            loadData();
+            try {
+                FastKVConfig.getExecutor().execute(this::runLoadedCallbacks);
+            } catch (RejectedExecutionException e) {
+                LoggerHelper.error(this, e);
+                runLoadedCallbacks();
+            }
+        }
+    }
+
+    public boolean contains(String key) {
+        if (key == null) {
+            return false;
+        }
+        if (!loaded) {
+            awaitLoaded();
+        }
+        if (processSync != null) {
+            processSync.checkChange();
+        }
+        // 不通过 getContainer()，避免解码延迟加载的值
+        return data.containsKey(key) || (primitiveIndex != null && getIndexedContainer(key) != null);
+    }
+
+    public boolean getBoolean(String key) {
+        return getBoolean(key, false);
+    }
+
+    public boolean getBoolean(String key, boolean defValue) {
+        BaseContainer c = getContainer(key);
+        return c == null ? defValue : c.toBoolean();
+    }
+
+    public int getInt(String key) {
+        return getInt(key, 0);
+    }
+
+    public int getInt(String key, int defValue) {
+        BaseContainer c = getContainer(key);
+        return c == null ? defValue : c.toInt();
+    }
+
+    public float getFloat(String key) {
+        return getFloat(key, 0f);
+    }
+
+    public float getFloat(String key, float defValue) {
+        BaseContainer c = getContainer(key);
+        return c == null ? defValue : c.toFloat();
+    }
+
+    public long getLong(String key) {
+        return getLong(key, 0L);
+    }
+
+    public long getLong(String key, long defValue) {
+        BaseContainer c = getContainer(key);
+        return c == null ? defValue : c.toLong();
+    }
+
+    public double getDouble(String key) {
+        return getDouble(key, 0D);
+    }
+
+    public double getDouble(String key, double defValue) {
+        BaseContainer c = getContainer(key);
+        return c == null ? defValue : c.toDouble();
+    }
+
+    public String getString(String key) {
+        return getString(key, "");
+    }
+
+    public String getString(String key, String defValue) {
+        BaseContainer container = getContainer(key);
+        if (container == null) {
+            return defValue;
+        }
+        // 对于STRING类型且为外部文件，需要加锁读取文件
+        if (container.getType() == DataType.STRING && ((StringContainer) container).external) {
+            return getExternalString(key, defValue);
+        }
+        return container.toStringValue();
+    }
+
+    private synchronized String getExternalString(String key, String defValue) {
+        BaseContainer container = data.get(key);
+        if (container == null) {
+            return defValue;
+        }
+        if (container.getType() == DataType.STRING) {
+            StringContainer c = (StringContainer) container;
+            if (c.external) {
+                String str = FileHelper.getStringFromFile(this, c, cipher);
+                if (str == null || str.isEmpty()) {
+                    if (!readOnly) {
+                        remove(key);
+                    }
+                    return defValue;
+                } else {
+                    c.value = str;
+                    c.external = false;
+                    return str;
+                }
+            }
+        }
+        return container.toStringValue();
+    }
+
+    public byte[] getArray(String key) {
+        return getArray(key, EMPTY_ARRAY);
+    }
+
+    public byte[] getArray(String key, byte[] defValue) {
+        BaseContainer container = getContainer(key);
+        if (container == null || container.getType() != DataType.ARRAY) {
+            return defValue;
+        }
+        ArrayContainer c = (ArrayContainer) container;
+        if (c.external) {
+            return getExternalArray(key, defValue);
+        }
+        return (byte[]) c.value;
+    }
+
+    private synchronized byte[] getExternalArray(String key, byte[] defValue) {
+        BaseContainer container = data.get(key);
+        if (container == null || container.getType() != DataType.ARRAY) {
+            return defValue;
+        }
+        ArrayContainer c = (ArrayContainer) container;
+        if (c.external) {
+            byte[] bytes = FileHelper.getArrayFromFile(this, c, cipher);
+            if (bytes == null || bytes.length == 0) {
+                if (!readOnly) {
+                    remove(key);
+                }
+                return defValue;
+            } else {
+                c.value = bytes;
+                c.external = false;
+                return bytes;
+            }
+        } else {
+            return (byte[]) c.value;
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    public <T> T getObject(String key) {
+        BaseContainer container = getContainer(key);
+        if (container == null || container.getType() != DataType.OBJECT) {
+            return null;
+        }
+        ObjectContainer c = (ObjectContainer) container;
+        if (c.external) {
+            return getExternalObject(key);
+        }
+        return (T) c.value;
+    }
+
+    @SuppressWarnings("unchecked")
+    private synchronized <T> T getExternalObject(String key) {
+        BaseContainer container = data.get(key);
+        if (container == null || container.getType() != DataType.OBJECT) {
+            return null;
+        }
+        ObjectContainer c = (ObjectContainer) container;
+        if (c.external) {
+            Object obj = FileHelper.getObjectFromFile(this, c, cipher);
+            if (obj == null) {
+                if (!readOnly) {
+                    remove(key);
+                }
+                return null;
+            } else {
+                c.value = obj;
+                c.external = false;
+                return (T) obj;
+            }
+        } else {
+            return (T) c.value;
+        }
+    }
+
+    public Set<String> getStringSet(String key) {
+        return getObject(key);
+    }
+
+    @Nullable
+    public Set<String> getStringSet(String key, @Nullable Set<String> defValues) {
+        Set<String> set = getStringSet(key);
+        return set != null ? set : defValues;
+    }
+
+    public Map<String, Object> getAll() {
+        if (!loaded) {
+            awaitLoaded();
+        }
+        if (processSync != null) {
+            processSync.checkChange();
+        }
+        if (readOnly) {
+            return collectAll();
+        }
+        synchronized (this) {
+            return collectAll();
+        }
+    }
+
+    private Map<String, Object> collectAll() {
+        int size = keyCount();
+        if (size == 0) {
+            return new HashMap<>();
+        }
+        Map<String, Object> result = new HashMap<>(size * 4 / 3 + 1);
+        for (Map.Entry<String, BaseContainer> entry : data.entrySet()) {
+            putValue(result, entry.getKey(), entry.getValue());
+        }
+        if (primitiveIndex != null) {
+            FastBuffer buffer = new FastBuffer(fastBuffer.hb);
+            for (int i = 0, n = primitiveIndex.capacity(); i < n; i++) {
+                int start = primitiveIndex.startAt(i);
+                if (start != 0) {
+                    buffer.position = start + 2;
+                    String key = buffer.getString(cipher, fastBuffer.hb[start + 1] & 0xFF);
+                    putValue(result, key, readPrimitive(start));
+                }
+            }
+        }
+        return result;
+    }
+
+    private void putValue(Map<String, Object> result, String key, BaseContainer c) {
+        if (c.getType() >= DataType.STRING) {
+            decodeIfLazy((VarContainer) c);
+        }
+        Object value = null;
+        switch (c.getType()) {
+            case DataType.BOOLEAN:
+                value = ((BooleanContainer) c).value;
+                break;
+            case DataType.INT:
+                value = ((IntContainer) c).value;
+                break;
+            case DataType.FLOAT:
+                value = ((FloatContainer) c).value;
+                break;
+            case DataType.LONG:
+                value = ((LongContainer) c).value;
+                break;
+            case DataType.DOUBLE:
+                value = ((DoubleContainer) c).value;
+                break;
+            case DataType.STRING:
+                StringContainer sc = (StringContainer) c;
+                value = sc.external ? FileHelper.getStringFromFile(this, sc, cipher) : sc.value;
+                break;
+            case DataType.ARRAY:
+                ArrayContainer ac = (ArrayContainer) c;
+                value = ac.external ? FileHelper.getArrayFromFile(this, ac, cipher) : ac.value;
+                break;
+            case DataType.OBJECT:
+                ObjectContainer oc = (ObjectContainer) c;
+                value = oc.external ? FileHelper.getObjectFromFile(this, oc, cipher) : ((ObjectContainer) c).value;
+                break;
+        }
+        if (value != null) {
+            result.put(key, value);
+        }
+    }
+
+
+    public synchronized FastKV remove(String key) {
+        if (!beginWrite()) return this;
+        try {
+            BaseContainer container = findContainer(key);
+            if (container != null) {
+                final String oldFileName;
+                removeContainer(key);
+                byte type = container.getType();
+                if (type <= DataType.DOUBLE) {
+                    int keySize = getKeySize(key);
+                    int start = container.offset - (2 + keySize);
+                    remove(start, container.offset + TYPE_SIZE[type]);
+                    oldFileName = null;
+                } else {
+                    VarContainer c = (VarContainer) container;
+                    remove(c.start, c.offset + c.valueSize);
+                    oldFileName = c.external ? (String) c.value : null;
+                }
+                byte newByte = fastBuffer.hb[removeStart];
+                addPendingBytes(1);
+                if (isTrackingDirty()) {
+                    markDirty(removeStart, removeStart + 1);
+                } else if (redoLog != null) {
+                    redoLog.add(removeStart, removeStart + 1);
+                    redoLog.commit(this);
+                } else if (writingMode == NON_BLOCKING) {
+                    aBuffer.putLong(4, checksum);
+                    aBuffer.put(removeStart, newByte);
+                    bBuffer.putLong(4, checksum);
+                    bBuffer.put(removeStart, newByte);
+                } else {
+                    fastBuffer.putLong(4, checksum);
+                }
+                removeStart = 0;
+                if (oldFileName != null) {
+                    if (writingMode == NON_BLOCKING) {
+                        FileHelper.deleteExternalFile(this, oldFileName);
+                    } else {
+                        deletedFiles.add(oldFileName);
+                    }
+                }
+                GCHelper.checkGC(this);
+                checkIfCommit();
+            }
+            return this;
+        } finally {
+            endWrite();
+        }
+    }
+
+    public synchronized FastKV clear() {
+        if (!beginWrite()) return this;
+        try {
+            FileHelper.clearData(this);
+            if (journal != null) {
+                commitJournal(true);
+            } else if (writingMode != NON_BLOCKING) {
+                cFileGeneration++;
+                FileHelper.deleteCFiles(this);
+            } else {
+                onABFileChanged();
+            }
+            notifyListeners(null);
+            return this;
+        } finally {
+            endWrite();
+        }
+    }
+
+    /**
+     * 批量保存。
+     * 仅支持 [boolean, int, long, float, double, String, byte[], Set of String] 类型和带编码器的对象。
+     *
+     * @param values   键值映射
+     * @param encoders 值类型到编码器的映射
+     */
+    public synchronized void putAll(Map<String, Object> values, Map<Class, FastEncoder> encoders) {
+        if (autoCommit) {
+            flushScheduler.awaitFlush();
+        }
+        if (closed) return;
+        checkWritable();
+        // 若调用方已经关闭了自动提交，则由调用方负责提交
+        boolean needCommit = autoCommit;
+        autoCommit = false;
+        try {
+            putValues(values, encoders);
+        } finally {
+            if (needCommit) {
+                commit();
+            }
+        }
+    }
+
+    private void putValues(Map<String, Object> values, Map<Class, FastEncoder> encoders) {
+        for (Map.Entry<String, Object> entry : values.entrySet()) {
+            String key = entry.getKey();
+            Object value = entry.getValue();
+            if (key != null && !key.isEmpty()) {
+                if (value instanceof String) {
+                    putString(key, (String) value);
+                } else if (value instanceof Boolean) {
+                    putBoolean(key, (Boolean) value);
+                } else if (value instanceof Integer) {
+                    putInt(key, (Integer) value);
+                } else if (value instanceof Long) {
+                    putLong(key, (Long) value);
+                } else if (value instanceof Float) {
+                    putFloat(key, (Float) value);
+                } else if (value instanceof Double) {
+                    putDouble(key, (Double) value);
+                } else if (value instanceof byte[]) {
+                    putArray(key, (byte[]) value);
+                } else {
+                    encodeObject(key, value, encoders);
+                }
+            }
+        }
+    }
+
+    public void putAll(Map<String, Object> values) {
+        putAll(values, null);
+    }
+
+    private void encodeObject(String key, Object value, Map<Class, FastEncoder> encoders) {
+        if (value instanceof Set) {
+            Set set = (Set) value;
+            if (set.isEmpty() || set.iterator().next() instanceof String) {
+                //noinspection unchecked
+                putStringSet(key, set);
+                return;
+            }
+        }
+        if (encoders != null) {
+            FastEncoder encoder = encoders.get(value.getClass());
+            if (encoder != null) {
+                //noinspection unchecked
+                putObject(key, value, encoder);
+            } else {
+                LoggerHelper.warning(this, new Exception("missing encoder for type:" + value.getClass()));
+            }
+        } else {
+            LoggerHelper.warning(this, new Exception("missing encoders"));
+        }
+    }
+
+    /**
+     * 强制将任何更改写入包含映射文件的存储设备。
+     * 除非写入的内容非常重要，否则无需调用此方法。
+     * 在数据同步到磁盘之前系统崩溃或断电可能导致最近的更新丢失。
+     */
+    public synchronized void force() {
+        flushScheduler.flushIfScheduled();
+        FileHelper.force(this);
+        if (persistIndex && !closed) {
+            IndexHelper.save(this);
+        }
+    }
+
+    /**
+     * 默认情况下会在每次 put 或 remove 后自动提交。
+     * 如果需要批量更新多个键值，可以先调用此方法，
+     * 然后在更新后调用 {@link #commit()}，该方法将再次将 {@link #autoCommit} 恢复为 'true'。
+     * <p>
+     * 在 SYNC_BLOCKING 或 ASYNC_BLOCKING 模式下，提交时将所有数据写入 C 文件一次。<br>
+     * 在 NON_BLOCKING 模式下，批量写入期间数据只写入内存，提交时将脏数据段一次性同步到 A/B 文件，
+     * 数据头（长度和校验和）只更新一次；同步过程与单次写入一样先写 A 文件再写 B 文件，
+     * 因此在崩溃后整批数据要么全部生效，要么全部不生效。<br>
+     * 提交之前的修改对当前实例的读取立即可见；调用 {@link #clear()} 会立即生效；
+     * 未提交就调用 {@link #close()} 的修改会丢失。
+     */
+    public synchronized void disableAutoCommit() {
+        this.autoCommit = false;
+    }
+
+    public synchronized boolean commit() {
+        if (!beginWrite()) return false;
+        try {
+            autoCommit = true;
+            if (writingMode == NON_BLOCKING) {
+                FileHelper.syncDirtyToABFile(this);
+                onABFileChanged();
+                return true;
+            }
+            return commitToCFile();
+        } finally {
+            endWrite();
+        }
+    }
+
+    public synchronized void apply() {
+        commit();
+    }
+
+    /**
+     * 修改操作的入口（持有对象锁时调用）：等待提交窗口的背压，确保数据可写，多进程模式下获取写入锁。
+     * <p>
+     * 需要等待时（见 {@link FlushScheduler#awaitFlush()} 和 {@link MultiProcessSync#lock()}）通过 wait() 释放对象锁，
+     * 所以只在修改任何状态之前调用；嵌套的修改操作（例如改变类型时先 remove）已持有写入锁，不会再等待。
+     * 返回 true 时调用方必须在 finally 中调用 {@link #endWrite()}；等待期间实例被关闭时返回 false，调用方直接返回。
+     */
+    private boolean beginWrite() {
+        if (writeDepth == 0 && autoCommit) {
+            flushScheduler.awaitFlush();
+        }
+        if (closed) {
+            return false;
+        }
+        checkWritable();
+        ensureLoaded();
+        if (processSync != null && processSync.needLock() && !processSync.lock()) {
+            return false;
+        }
+        writeDepth++;
+        try {
+            releaser.reopenIfEvicted();
+            if (processSync != null && processSync.needLock()) {
+                processSync.syncFromFile();
+            }
+            if (fastBuffer == null) {
+                FileHelper.restoreBuffer(this);
+            }
+            releaser.onWrite();
+        } catch (Throwable e) {
+            endWrite();
+            throw e;
+        }
+        return true;
+    }
+
+    /**
+     * 修改操作结束：最外层的修改结束时释放多进程模式的写入锁，批量写入期间一直持有，直到提交
+     */
+    private void endWrite() {
+        if (--writeDepth == 0 && processSync != null && !isBatchWriting()) {
+            processSync.unlock();
+        }
+    }
+
+    private void checkWritable() {
+        if (readOnly) {
+            throw new UnsupportedOperationException("FastKV " + name + " is read-only");
+        }
+    }
+
+    /**
+     * 是否可以释放数据副本或A/B文件资源（持有对象锁时调用，见 {@link ResourceReleaser}）：
+     * NON_BLOCKING 模式下没有进行中的修改，且不在批量写入中（没有未同步的脏数据），每次修改都已写入A/B文件
+     */
+    boolean canRelease() {
+        return !closed && writingMode == NON_BLOCKING && autoCommit && writeDepth == 0 && dirtySegments.isEmpty();
+    }
+
+    /**
+     * 是否处于 NON_BLOCKING 模式的批量写入中（关闭了自动提交）。
+     * 此时对 A/B 文件的修改需通过 {@link #markDirty(int, int)} 记录，延迟到提交时同步。
+     */
+    boolean isBatchWriting() {
+        return writingMode == NON_BLOCKING && !autoCommit;
+    }
+
+    /**
+     * 是否需要记录脏数据段：NON_BLOCKING 模式的批量写入期间，或者阻塞模式开启了增量日志时（提交时只写入脏数据段）
+     */
+    boolean isTrackingDirty() {
+        return journal != null || isBatchWriting();
+    }
+
+    synchronized void setSyncPolicy(SyncPolicy policy) {
+        this.syncPolicy = policy.type == SyncPolicy.TYPE_NEVER ? null : policy;
+    }
+
+    synchronized void setCommitWindow(long delayMillis, int maxPendingBytes) {
+        flushScheduler.setWindow(delayMillis, maxPendingBytes);
+    }
+
+    /**
+     * 累计修改的字节数。没有同步策略和提交窗口时（例如 NON_BLOCKING 模式的默认配置）不会被清零，
+     * 所以在 Integer.MAX_VALUE 处饱和，避免长时间运行后溢出为负数（负数会被当作没有待同步的修改）。
+     */
+    void addPendingBytes(int bytes) {
+        int n = pendingBytes + bytes;
+        pendingBytes = n < 0 ? Integer.MAX_VALUE : n;
+    }
+
+    void markDirty(int start, int end) {
+        dirtySegments.add(new Segment(start, end));
+        if (dirtySegments.size() >= FileHelper.DIRTY_MERGE_THRESHOLD) {
+            FileHelper.mergeDirty(dirtySegments);
+        }
+    }
+
+    private void handleChange(String key) {
+        checkIfCommit();
+        notifyListeners(key);
+    }
+
+    private void checkIfCommit() {
+        if (writingMode != NON_BLOCKING && autoCommit) {
+            commitToCFile();
+        } else if (autoCommit) {
+            onABFileChanged();
+        }
+    }
+
+    /**
+     * NON_BLOCKING 模式下修改已写入A/B文件之后调用
+     */
+    private void onABFileChanged() {
+        if (syncPolicy != null) {
+            SyncHelper.onChange(this);
+        }
+        if (processSync != null) {
+            processSync.onChanged();
+        }
+    }
+
+    private boolean commitToCFile() {
+        if (journal != null) {
+            return commitJournal(false);
+        }
+        if (writingMode == ASYNC_BLOCKING) {
+            if (flushScheduler.isWindowCommit()) {
+                flushScheduler.schedule();
+            } else {
+                submitFlush();
+            }
+        } else if (writingMode == SYNC_BLOCKING) {
+            return FileHelper.writeToCFile(this);
+        }
+        return true;
+    }
+
+    /**
+     * 安排一次快照写入：开启组提交时交给全局的 {@link GroupCommitter}，否则由本实例的 applyExecutor 执行
+     */
+    void submitFlush() {
+        if (FastKVConfig.sGroupCommitParallelism > 0) {
+            GroupCommitter.submit(this);
+        } else {
+            applyExecutor.execute(() -> FileHelper.writeSnapshotToCFile(this));
+        }
+    }
+
+    /**
+     * 将脏数据段写入增量日志
+     *
+     * @param checkpoint 是否同时做检查点
+     */
+    boolean commitJournal(boolean checkpoint) {
+        final Journal j = journal;
+        j.add(this, checkpoint);
+        if (writingMode == ASYNC_BLOCKING) {
+            applyExecutor.execute(() -> j.flush(this));
+            return true;
+        }
+        return j.flush(this);
+    }
+
+    private synchronized void notifyListeners(String key) {
+        if (listeners.isEmpty()) return;
+        for (FastListener listener : listeners) {
+            listener.onChanged(this, key);
+        }
+    }
+
+    /**
+     * 注册数据变更监听。<br>
+     * 回调在写入线程中同步执行，请勿在回调中执行耗时操作。
+     * 如需切换线程（例如 Android 主线程），由调用方自行处理。
+     */
+    public synchronized void registerListener(FastListener listener) {
+        if (listener == null) {
+            return;
+        }
+        if (!listeners.contains(listener)) {
+            listeners.add(listener);
+        }
+    }
+
+    public synchronized void unregisterListener(FastListener listener) {
+        listeners.remove(listener);
+    }
+
+    public synchronized FastKV putBoolean(String key, boolean value) {
+        if (!beginWrite()) return this;
+        try {
+            checkKey(key);
+            BaseContainer container = findContainer(key);
+            if (container != null && container.getType() != DataType.BOOLEAN) {
+                remove(key);
+                container = null;
+            }
+            BooleanContainer c = (BooleanContainer) container;
+            if (c == null) {
+                if (!wrapHeader(key, DataType.BOOLEAN)) return this;
+                int offset = fastBuffer.position;
+                fastBuffer.put((byte) (value ? 1 : 0));
+                updateChange();
+                addPrimitive(key, new BooleanContainer(offset, value));
+                handleChange(key);
+            } else if (c.value != value) {
+                c.value = value;
+                updateBoolean((byte) (value ? 1 : 0), c.offset);
+                handleChange(key);
+            }
+            return this;
+        } finally {
+            endWrite();
+        }
+    }
+
+    public synchronized FastKV putInt(String key, int value) {
+        if (!beginWrite()) return this;
+        try {
+            checkKey(key);
+            BaseContainer container = findContainer(key);
+            if (container != null && container.getType() != DataType.INT) {
+                remove(key);
+                container = null;
+            }
+            IntContainer c = (IntContainer) container;
+            if (c == null) {
+                if (!wrapHeader(key, DataType.INT)) return this;
+                int offset = fastBuffer.position;
+                fastBuffer.putInt(cipher != null ? cipher.encrypt(value) : value);
+                updateChange();
+                addPrimitive(key, new IntContainer(offset, value));
+                handleChange(key);
+            } else if (c.value != value) {
+                int newValue = cipher != null ? cipher.encrypt(value) : value;
+                int oldValue = cipher != null ? fastBuffer.getInt(c.offset) : c.value;
+                long sum = (newValue ^ oldValue) & 0xFFFFFFFFL;
+                c.value = value;
+                updateInt32(newValue, sum, c.offset);
+                handleChange(key);
+            }
+            return this;
+        } finally {
+            endWrite();
+        }
+    }
+
+    public synchronized FastKV putFloat(String key, float value) {
+        if (!beginWrite()) return this;
+        try {
+            checkKey(key);
+            BaseContainer container = findContainer(key);
+            if (container != null && container.getType() != DataType.FLOAT) {
+                remove(key);
+                container = null;
+            }
+            FloatContainer c = (FloatContainer) container;
+            if (c == null) {
+                if (!wrapHeader(key, DataType.FLOAT)) return this;
+                int offset = fastBuffer.position;
+                fastBuffer.putInt(getNewFloatValue(value));
+                updateChange();
+                addPrimitive(key, new FloatContainer(offset, value));
+                handleChange(key);
+            } else if (c.value != value) {
+                int newValue = getNewFloatValue(value);
+                int oldValue = fastBuffer.getInt(c.offset);
+                long sum = (newValue ^ oldValue) & 0xFFFFFFFFL;
+                c.value = value;
+                updateInt32(newValue, sum, c.offset);
+                handleChange(key);
+            }
+            return this;
+        } finally {
+            endWrite();
+        }
+    }
+
+    public synchronized FastKV putLong(String key, long value) {
+        if (!beginWrite()) return this;
+        try {
+            checkKey(key);
+            BaseContainer container = findContainer(key);
+            if (container != null && container.getType() != DataType.LONG) {
+                remove(key);
+                container = null;
+            }
+            LongContainer c = (LongContainer) container;
+            if (c == null) {
+                if (!wrapHeader(key, DataType.LONG)) return this;
+                int offset = fastBuffer.position;
+                fastBuffer.putLong(cipher != null ? cipher.encrypt(value) : value);
+                updateChange();
+                addPrimitive(key, new LongContainer(offset, value));
+                handleChange(key);
+            } else if (c.value != value) {
+                long newValue = cipher != null ? cipher.encrypt(value) : value;
+                long oldValue = cipher != null ? fastBuffer.getLong(c.offset) : c.value;
+                long sum = newValue ^ oldValue;
+                c.value = value;
+                updateInt64(newValue, sum, c.offset);
+                handleChange(key);
+            }
+            return this;
+        } finally {
+            endWrite();
+        }
+    }
+
+    public synchronized FastKV putDouble(String key, double value) {
+        if (!beginWrite()) return this;
+        try {
+            checkKey(key);
+            BaseContainer container = findContainer(key);
+            if (container != null && container.getType() != DataType.DOUBLE) {
+                remove(key);
+                container = null;
+            }
+            DoubleContainer c = (DoubleContainer) container;
+            if (c == null) {
+                if (!wrapHeader(key, DataType.DOUBLE)) return this;
+                int offset = fastBuffer.position;
+                fastBuffer.putLong(getNewDoubleValue(value));
+                updateChange();
+                addPrimitive(key, new DoubleContainer(offset, value));
+                handleChange(key);
+            } else if (c.value != value) {
+                long newValue = getNewDoubleValue(value);
+                long oldValue = fastBuffer.getLong(c.offset);
+                long sum = newValue ^ oldValue;
+                c.value = value;
+                updateInt64(newValue, sum, c.offset);
+                handleChange(key);
+            }
+            return this;
+        } finally {
+            endWrite();
+        }
+    }
+
+    public synchronized FastKV putString(String key, String value) {
+        if (!beginWrite()) return this;
+        try {
+            checkKey(key);
+            if (value == null) {
+                remove(key);
+            } else {
+                BaseContainer container = findContainer(key);
+                if (container != null && container.getType() != DataType.STRING) {
+                    remove(key);
+                    container = null;
+                }
+                StringContainer c = (StringContainer) container;
+                if (c != null && !c.external && value.equals(c.value)) {
+                    return this;
+                }
+                byte[] bytes = value.isEmpty() ? EMPTY_ARRAY : value.getBytes(StandardCharsets.UTF_8);
+                byte[] newBytes = cipher != null ? cipher.encrypt(bytes) : bytes;
+                if (newBytes == null) {
+                    LoggerHelper.error(this, new Exception(ENCRYPT_FAILED));
+                    return this;
+                }
+                addOrUpdate(key, value, newBytes, c, DataType.STRING);
+                handleChange(key);
+            }
+            return this;
+        } finally {
+            endWrite();
+        }
+    }
+
+    public synchronized FastKV putArray(String key, byte[] value) {
+        if (!beginWrite()) return this;
+        try {
+            checkKey(key);
+            if (value == null) {
+                remove(key);
+            } else {
+                BaseContainer container = findContainer(key);
+                if (container != null && container.getType() != DataType.ARRAY) {
+                    remove(key);
+                    container = null;
+                }
+                ArrayContainer c = (ArrayContainer) container;
+                byte[] newBytes = cipher != null ? cipher.encrypt(value) : value;
+                if (newBytes == null) {
+                    LoggerHelper.error(this, new Exception(ENCRYPT_FAILED));
+                    return this;
+                }
+                addOrUpdate(key, value, newBytes, c, DataType.ARRAY);
+                handleChange(key);
+            }
+            return this;
+        } finally {
+            endWrite();
+        }
+    }
+
+    /**
+     * @param key     key
+     * @param value   新值
+     * @param encoder 将 value encode 为 byte[] 的编码器。
+     *                编码器必须在 Builder.encoder() 中注册，以便在下次加载时将 byte[] decode 为对象。
+     * @param <T>     值的类型
+     */
+    public synchronized <T> void putObject(String key, T value, FastEncoder<T> encoder) {
+        if (!beginWrite()) return;
+        try {
+            checkKey(key);
+            if (encoder == null) {
+                throw new IllegalArgumentException("Encoder is null");
+            }
+            String tag = encoder.tag();
+            if (tag == null || tag.isEmpty() || tag.length() > 50) {
+                throw new IllegalArgumentException("Invalid encoder tag:" + tag);
+            }
+            if (!encoderMap.containsKey(tag)) {
+                throw new IllegalArgumentException("Encoder hasn't been registered");
+            }
+
+            if (value == null) {
+                remove(key);
+                return;
+            }
+            byte[] objBytes = null;
+            try {
+                objBytes = encoder.encode(value);
+                } catch (Exception e) {
+                LoggerHelper.error(this, e);
+            }
+            if (objBytes == null) {
+                remove(key);
+                return;
+            }
+
+            BaseContainer container = findContainer(key);
+            if (container != null && container.getType() != DataType.OBJECT) {
+                remove(key);
+                container = null;
+            }
+            ObjectContainer c = (ObjectContainer) container;
+
+            // 组装对象字节
+            int tagSize = FastBuffer.getStringSize(tag);
+            FastBuffer buffer = new FastBuffer(1 + tagSize + objBytes.length);
+            buffer.put((byte) tagSize);
+            buffer.putString(tag);
+            buffer.putBytes(objBytes);
+            byte[] bytes = buffer.hb;
+
+            byte[] newBytes = cipher != null ? cipher.encrypt(bytes) : bytes;
+            if (newBytes == null) return;
+            addOrUpdate(key, value, newBytes, c, DataType.OBJECT);
+            handleChange(key);
+        } finally {
+            endWrite();
+        }
+    }
+
+    public synchronized FastKV putStringSet(String key, Set<String> set) {
+        if (!beginWrite()) return this;
+        try {
+            if (set == null) {
+                remove(key);
+                } else {
+                putObject(key, set, StringSetEncoder.INSTANCE);
+            }
+            return this;
+        } finally {
+            endWrite();
+        }
+    }
+
+    /**
+     * 准备数据写入
+     * 确保缓冲区空间并设置写入位置
+     */
+    private void preparePutBytes() {
+        GCHelper.ensureSize(this, updateSize);
+        updateStart = dataEnd;
+        dataEnd += updateSize;
+        fastBuffer.position = updateStart;
+    }
+
+    @SuppressWarnings("BooleanMethodIsAlwaysInverted")
+    private boolean wrapHeader(String key, byte type) {
+        return wrapHeader(key, type, TYPE_SIZE[type]);
+    }
+
+    private boolean wrapHeader(String key, byte type, int valueSize) {
+        if (cipher != null) {
+            byte[] keyBytes = cipher.encrypt(key.getBytes(StandardCharsets.UTF_8));
+            if (keyBytes == null) {
+                LoggerHelper.error(this, new Exception(ENCRYPT_FAILED));
+                return false;
+            }
+            int keySize = keyBytes.length;
+            prepareHeaderInfo(keySize, valueSize, type);
+            fastBuffer.put((byte) keySize);
+            System.arraycopy(keyBytes, 0, fastBuffer.hb, fastBuffer.position, keySize);
+            fastBuffer.position += keySize;
+        } else {
+            int keySize = FastBuffer.getStringSize(key);
+            prepareHeaderInfo(keySize, valueSize, type);
+            wrapKey(key, keySize);
+        }
+        return true;
+    }
+
+    private void prepareHeaderInfo(int keySize, int valueSize, byte type) {
+        if (keySize > 0xFF) {
+            throw new IllegalArgumentException("key's length must less than 256");
+        }
+        updateSize = 2 + keySize + valueSize;
+        preparePutBytes();
+        fastBuffer.put(type);
+    }
+
+    private void wrapKey(String key, int keySize) {
+        fastBuffer.put((byte) keySize);
+        if (keySize == key.length()) {
+            //noinspection deprecation
+            key.getBytes(0, keySize, fastBuffer.hb, fastBuffer.position);
+            fastBuffer.position += keySize;
+        } else {
+            fastBuffer.putString(key);
+        }
+    }
+
+    /**
+     * 添加或更新可变长度数据
+     * 处理新增和更新两种情况
+     */
+    private void addOrUpdate(String key, Object value, byte[] bytes, VarContainer c, byte type) {
+        if (c == null) {
+            addObject(key, value, bytes, type);
+        } else {
+            if (!c.external && c.valueSize == bytes.length) {
+                updateBytes(c.offset, bytes);
+                c.value = value;
+            } else {
+                updateObject(key, value, bytes, c);
+            }
+        }
+    }
+
+    /**
+     * 添加新的对象数据
+     * 创建新的容器并写入数据
+     */
+    private void addObject(String key, Object value, byte[] bytes, byte type) {
+        int offset = wrapArray(key, bytes, type);
+        if (offset > 0) {
+            int size = bytes.length;
+            BaseContainer c;
+            if (type == DataType.STRING) {
+                c = new StringContainer(updateStart, offset, (String) value, size, false);
+            } else if (type == DataType.ARRAY) {
+                c = new ArrayContainer(updateStart, offset, value, size, false);
+            } else {
+                c = new ObjectContainer(updateStart, offset, value, size, false);
+            }
+            data.put(key, c);
+            updateChange();
+        }
+    }
+
+    /**
+     * 更新已存在的对象数据
+     * 处理容器重用和垃圾回收
+     */
+    private void updateObject(String key, Object value, byte[] bytes, VarContainer c) {
+        int offset = wrapArray(key, bytes, c.getType());
+        if (offset > 0) {
+            String oldFileName = c.external ? (String) c.value : null;
+            remove(c.start, c.offset + c.valueSize);
+            c.start = updateStart;
+            c.offset = offset;
+            c.valueSize = bytes.length;
+            // 先写 value 再写 external，见 Container 的并发说明
+            c.value = value;
+            c.external = false;
+            updateChange();
+            GCHelper.checkGC(this);
+            if (oldFileName != null) {
+                removeOldFile(oldFileName);
+            }
+        }
+    }
+
+    /**
+     * 包装可变长度数据
+     * 根据数据大小选择合适的编码格式
+     */
+    private int wrapArray(String key, byte[] value, byte type) {
+        // 根据数据大小选择合适的类型和长度编码方式
+        boolean isLarge = value.length >= 0xFFFF;
+        byte actualType = isLarge ? getLargeType(type) : type;
+        int lengthSize = isLarge ? 4 : 2;
+        
+        if (!wrapHeader(key, actualType, lengthSize + value.length)) {
+            return 0;
+        }
+        
+        if (isLarge) {
+            fastBuffer.putInt(value.length);
+        } else {
+            fastBuffer.putShort((short) value.length);
+        }
+        
+        int offset = fastBuffer.position;
+        fastBuffer.putBytes(value);
+        return offset;
+    }
+    
+    private byte getLargeType(byte type) {
+        switch (type) {
+            case DataType.STRING: return DataType.STRING_LARGE;
+            case DataType.ARRAY: return DataType.ARRAY_LARGE;
+            case DataType.OBJECT: return DataType.OBJECT_LARGE;
+            default: return type;
+        }
+    }
+
+    private int getNewFloatValue(float value) {
+        int intValue = Float.floatToRawIntBits(value);
+        return cipher != null ? cipher.encrypt(intValue) : intValue;
+    }
+
+    private long getNewDoubleValue(double value) {
+        long longValue = Double.doubleToRawLongBits(value);
+        return cipher != null ? cipher.encrypt(longValue) : longValue;
+    }
+
+    /**
+     * 关闭 kv 实例。<br>
+     * 如果 kv 已关闭，它将不接受任何更新。<br>
+     * 如果 kv 被缓存，调用此方法后, 请记得将其从缓存中移除。
+     */
+    public synchronized void close() {
+        ensureLoaded();
+        flushScheduler.flushIfScheduled();
+        if (persistIndex && !closed) {
+            IndexHelper.save(this);
+        }
+        FileHelper.close(this);
+        InstanceCache.onClose(this);
+        Builder.INSTANCES.remove(Builder.getInstanceKey(path, name, readOnly), this);
+    }
+
+    /**
+     * 更新数据变更
+     * 计算校验和并同步到文件
+     */
+    private void updateChange() {
+        checksum ^= fastBuffer.getChecksum(updateStart, updateSize);
+        int packedSize = packSize(dataEnd - DATA_START);
+        addPendingBytes(updateSize + (removeStart != 0 ? 1 : 0));
+        if (isTrackingDirty()) {
+            if (removeStart != 0) {
+                markDirty(removeStart, removeStart + 1);
+            }
+            if (updateSize != 0) {
+                markDirty(updateStart, updateStart + updateSize);
+            }
+        } else if (redoLog != null) {
+            if (removeStart != 0) {
+                redoLog.add(removeStart, removeStart + 1);
+            }
+            redoLog.add(updateStart, updateStart + updateSize);
+            redoLog.commit(this);
+        } else if (writingMode == NON_BLOCKING) {
+            // 当更改数据的大小超过 8 字节时,checksum 可能在小概率下无法检查完整性。
+            // 因此，我们在写入数据之前，将 dataLen 设置为负数；
+            // 如果在向 mmap 内存写入数据时发生崩溃，我们可以根据dataLen为负数知道写入没有完成。
+            aBuffer.putInt(0, -1);
+            syncToABBuffer(aBuffer);
+            aBuffer.putInt(0, packedSize);
+
+            // bBuffer 不需要在写入字节之前标记 dataLen 部分，
+            // 因为此时 aBuffer 已经完全写入了。
+            // 我们只需在任何时候至少有一个文件是完整的即可。
+            bBuffer.putInt(0, packedSize);
+            syncToABBuffer(bBuffer);
+        } else {
+            fastBuffer.putInt(0, packedSize);
+            fastBuffer.putLong(4, checksum);
+        }
+        removeStart = 0;
+        updateSize = 0;
+    }
+
+    /**
+     * 同步数据到A/B缓冲区
+     * 更新校验和和数据内容
+     */
+    private void syncToABBuffer(ChunkedMapping buffer) {
+        buffer.putLong(4, checksum);
+        if (removeStart != 0) {
+            buffer.put(removeStart, fastBuffer.hb[removeStart]);
+        }
+        if (updateSize != 0) {
+            buffer.position(updateStart);
+            buffer.put(fastBuffer.hb, updateStart, updateSize);
+        }
+    }
+
+    private void updateBoolean(byte value, int offset) {
+        checksum ^= FileHelper.shiftCheckSum(1L, offset);
+        fastBuffer.hb[offset] = value;
+        addPendingBytes(1);
+        if (isTrackingDirty()) {
+            markDirty(offset, offset + 1);
+        } else if (redoLog != null) {
+            redoLog.add(offset, offset + 1);
+            redoLog.commit(this);
+        } else if (writingMode == NON_BLOCKING) {
+            aBuffer.putLong(4, checksum);
+            aBuffer.put(offset, value);
+            bBuffer.putLong(4, checksum);
+            bBuffer.put(offset, value);
+        } else {
+            fastBuffer.putLong(4, checksum);
+        }
+    }
+
+    private void updateInt32(int value, long sum, int offset) {
+        checksum ^= FileHelper.shiftCheckSum(sum, offset);
+        fastBuffer.putInt(offset, value);
+        addPendingBytes(4);
+        if (isTrackingDirty()) {
+            markDirty(offset, offset + 4);
+        } else if (redoLog != null) {
+            redoLog.add(offset, offset + 4);
+            redoLog.commit(this);
+        } else if (writingMode == NON_BLOCKING) {
+            aBuffer.putLong(4, checksum);
+            aBuffer.putInt(offset, value);
+            bBuffer.putLong(4, checksum);
+            bBuffer.putInt(offset, value);
+        } else {
+            fastBuffer.putLong(4, checksum);
+        }
+    }
+
+    private void updateInt64(long value, long sum, int offset) {
+        checksum ^= FileHelper.shiftCheckSum(sum, offset);
+        fastBuffer.putLong(offset, value);
+        addPendingBytes(8);
+        if (isTrackingDirty()) {
+            markDirty(offset, offset + 8);
+        } else if (redoLog != null) {
+            redoLog.add(offset, offset + 8);
+            redoLog.commit(this);
+        } else if (writingMode == NON_BLOCKING) {
+            aBuffer.putLong(4, checksum);
+            aBuffer.putLong(offset, value);
+            bBuffer.putLong(4, checksum);
+            bBuffer.putLong(offset, value);
+        } else {
+            fastBuffer.putLong(4, checksum);
+        }
+    }
+
+    private void updateBytes(int offset, byte[] bytes) {
+        int size = bytes.length;
+        checksum ^= fastBuffer.getChecksum(offset, size);
+        fastBuffer.position = offset;
+        fastBuffer.putBytes(bytes);
+        checksum ^= fastBuffer.getChecksum(offset, size);
+        
+        addPendingBytes(size);
+        if (isTrackingDirty()) {
+            markDirty(offset, offset + size);
+        } else if (redoLog != null) {
+            redoLog.add(offset, offset + size);
+            redoLog.commit(this);
+        } else if (writingMode == NON_BLOCKING) {
+            aBuffer.putInt(0, -1);
+            aBuffer.putLong(4, checksum);
+            aBuffer.position(offset);
+            aBuffer.put(bytes);
+            aBuffer.putInt(0, packSize(dataEnd - DATA_START));
+
+            bBuffer.putLong(4, checksum);
+            bBuffer.position(offset);
+            bBuffer.put(bytes);
+        } else {
+            fastBuffer.putLong(4, checksum);
+        }
+    }
+
+    private void removeOldFile(String oldFileName) {
+        if (writingMode == NON_BLOCKING) {
+            FileHelper.deleteExternalFile(this, oldFileName);
+        } else {
+            deletedFiles.add(oldFileName);
+        }
+    }
+
+    private void remove(int start, int end) {
+        GCHelper.countInvalid(this, start, end);
+        // 保留原来的类型（例如 STRING_LARGE），加载时需要据此跳过已删除记录的值
+        byte oldByte = fastBuffer.hb[start];
+        byte newByte = (byte) (oldByte | DataType.DELETE_MASK);
+        int shift = (start & 7) << 3;
+        checksum ^= ((long) (newByte ^ oldByte) & 0xFF) << shift;
+        fastBuffer.hb[start] = newByte;
+        removeStart = start;
+    }
+
+    /**
+     * 获取 key 在缓冲区中的长度（加密时为加密后的长度）
+     */
+    private int getKeySize(String key) {
+        if (cipher != null) {
+            byte[] keyBytes = cipher.encrypt(key.getBytes(StandardCharsets.UTF_8));
+            if (keyBytes != null) {
+                return keyBytes.length;
+            }
+        }
+        return FastBuffer.getStringSize(key);
+    }
+
+    private void checkKey(String key) {
+        if (key == null || key.isEmpty()) {
+            throw new IllegalArgumentException("key is empty");
+        }
+    }
+
+    public static final class Builder {
+        static final InstanceRegistry<FastKV> INSTANCES = new InstanceRegistry<>();
+        private final String path;
+        private final String name;
+        private FastEncoder[] encoders;
+        private FastCipher cipher;
+        private int writingMode = NON_BLOCKING;
+        private int options = 0;
+        private long commitDelay;
+        private int maxPendingBytes;
+        private SyncPolicy syncPolicy;
+        private int loadPriority = PRIORITY_NORMAL;
+
+        public Builder(String path, String name) {
+            if (path == null || path.isEmpty()) {
+                throw new IllegalArgumentException("path is empty");
+            }
+            if (name == null || name.isEmpty()) {
+                throw new IllegalArgumentException("name is empty");
+            }
+            this.path = path.endsWith("/") ? path : (path + '/');
+            this.name = name;
+        }
+
+        private Builder(Builder other, String name) {
+            this.path = other.path;
+            this.name = name;
+            this.encoders = other.encoders;
+            this.cipher = other.cipher;
+            this.writingMode = other.writingMode;
+            this.options = other.options;
+            this.commitDelay = other.commitDelay;
+            this.maxPendingBytes = other.maxPendingBytes;
+            this.syncPolicy = other.syncPolicy;
+            this.loadPriority = other.loadPriority;
+        }
+
+        /**
+         * 设置对象编码器
+         *
+         * @param encoders 用于将字节解码为对象的编码器数组。
+         * @return Builder对象
+         */
+        public Builder encoder(FastEncoder[] encoders) {
+            this.encoders = encoders;
+            return this;
+        }
+
+        /**
+         * 设置加密实现。
+         */
+        public Builder cipher(FastCipher cipher) {
+            this.cipher = cipher;
+            return this;
+        }
+
+        /**
+         * 将写入模式设置为 SYNC_BLOCKING。<p>
+         * 在 NON_BLOCKING 模式下（默认模式，使用 mmap 写入数据），
+         * 如果系统在将数据刷新到磁盘之前崩溃或断电，可能会丢失更新（仅丢失更新，不会丢失整个文件）。
+         * 如果需要取保数据写盘后，可使用 {@link #force()} 避免丢失更新，或使用 SYNC_BLOCKING 模式。<p>
+         * 在 SYNC_BLOCKING 模式下，每次更新都会将所有数据写入文件，相比而言会稍微耗时一些。
+         * 因此，建议在数据非常重要时才使用阻塞模式。
+         *
+         * @return 构建器
+         */
+        public Builder blocking() {
+            writingMode = SYNC_BLOCKING;
+            return this;
+        }
+
+        /**
+         * 类似于 {@link #blocking()}，但将写入任务放到异步线程。
+         *
+         * @return 构建器
+         */
+        public Builder asyncBlocking() {
+            writingMode = ASYNC_BLOCKING;
+            return this;
+        }
+
+        /**
+         * 使用紧凑索引存储基本类型（boolean/int/float/long/double）。<p>
+         * 默认情况下每个 key 都有一个容器对象，key 的数量很大时（例如数十万）会占用较多的堆内存，并加重 GC 负担。
+         * 开启后，基本类型的 key 只在开放寻址的 int 数组中记录哈希值和位置，值直接从缓冲区读取，不创建对象。<p>
+         * 代价是读取基本类型时需要获取对象锁，并且每次读取都需要比较 key 和解码值，
+         * 因此适合 key 很多、读取并发不高的场景。String、数组和对象类型不受影响。
+         *
+         * @return 构建器
+         */
+        public Builder compactIndex() {
+            options |= OPTION_COMPACT_INDEX;
+            return this;
+        }
+
+        /**
+         * 延迟解码 String、byte[] 和对象类型的值。<p>
+         * 默认情况下，加载时会解码（和解密）所有的值。
+         * 开启后，加载时只记录 key、类型和位置，值在首次读取时才解码并缓存，
+         * 适合数据量大而启动阶段只读取少量 key 的场景，可以减少加载耗时和内存占用。<p>
+         * 注意：对象的解码也会延迟到首次读取，如果解码失败，读取返回 null，但 contains() 返回 true。
+         *
+         * @return 构建器
+         */
+        public Builder lazyDecode() {
+            options |= OPTION_LAZY_DECODE;
+            return this;
+        }
+
+        /**
+         * 持久化 key 的索引，以加快大文件的打开速度（同时开启 {@link #compactIndex()}）。<p>
+         * 调用 {@link FastKV#force()} 或 {@link FastKV#close()} 时，将索引（基本类型的紧凑索引、变长类型记录和无效数据段的位置）
+         * 写入 .kvi 文件。下次打开时，如果数据的长度和校验和与索引记录的一致，则直接恢复索引，
+         * 不再逐条解析记录：基本类型的 key 不需要解码，变长类型只解析对应的记录（可配合 {@link #lazyDecode()}）。<p>
+         * 索引写入之后若数据有更新，则索引失效，打开时会按常规流程解析全部数据。
+         *
+         * @return 构建器
+         */
+        public Builder persistIndex() {
+            options |= OPTION_COMPACT_INDEX | OPTION_PERSIST_INDEX;
+            return this;
+        }
+
+        /**
+         * 使用单文件存储（仅对 NON_BLOCKING 模式有效）。<p>
+         * 默认的 NON_BLOCKING 模式把每次修改分别写入A/B两个文件，任一文件写入中断时都可以用另一个文件恢复。
+         * 开启后只保留一个数据文件（.kva），另外用一个很小的重做日志文件（.kvr）应对写入中断：
+         * 追加的新记录直接写入数据文件，原地修改的部分（通常只有几个字节）和数据头先写日志再写数据文件。
+         * 对于写入频繁的场景，可以减少大约一半的脏页和回写流量。<p>
+         * 以A/B文件保存的数据用此模式打开时会自动转换（删除B文件）；反之亦可，以默认模式打开时会重新生成B文件。
+         *
+         * @return 构建器
+         */
+        public Builder singleFile() {
+            options |= OPTION_SINGLE_FILE;
+            return this;
+        }
+
+        /**
+         * 阻塞模式下使用增量日志（仅对 {@link #blocking()} 和 {@link #asyncBlocking()} 有效）。<p>
+         * 默认的阻塞模式每次提交都将全部数据写入 .kvc 文件，数据量大时每次提交都很耗时。
+         * 开启后，提交时只将修改的部分追加到日志文件（.kvj）并 fsync；
+         * 日志的长度超过数据长度时，再将全部数据写入 .kvc 文件并清空日志（检查点）。<p>
+         * 注意：不支持日志的旧版本打开数据时，会忽略最近一次检查点之后的修改。
+         *
+         * @return 构建器
+         */
+        public Builder journal() {
+            options |= OPTION_JOURNAL;
+            return this;
+        }
+
+        /**
+         * 设置 {@link #asyncBlocking()} 模式的提交窗口。<p>
+         * 默认情况下每次提交都会安排一次写入（同一时间最多一个任务在执行、一个任务在等待），
+         * 频繁提交时会不停地重写整个 .kvc 文件。
+         * 设置后，第一次修改之后最多等待 delayMillis 毫秒再写入，期间的修改合并为一次写入；
+         * 未写入的修改超过 maxPendingBytes 字节时立即写入，若此时上一次写入仍未完成，则写入线程阻塞等待。<p>
+         * 调用 {@link FastKV#force()} 或 {@link FastKV#close()} 时会立即写入。
+         * 开启 {@link #journal()} 时此设置无效。
+         *
+         * @param delayMillis     最长延迟时间（毫秒）
+         * @param maxPendingBytes 最多积压的修改字节数
+         * @return 构建器
+         */
+        public Builder commitWindow(long delayMillis, int maxPendingBytes) {
+            if (delayMillis <= 0) {
+                throw new IllegalArgumentException("delayMillis must be positive");
+            }
+            if (maxPendingBytes <= 0) {
+                throw new IllegalArgumentException("maxPendingBytes must be positive");
+            }
+            this.commitDelay = delayMillis;
+            this.maxPendingBytes = maxPendingBytes;
+            return this;
+        }
+
+        /**
+         * 设置 NON_BLOCKING 模式（默认模式）的后台同步策略，默认为 {@link SyncPolicy#NEVER}。<p>
+         * NON_BLOCKING 模式的修改写入 mmap 内存后由系统择机写回磁盘，系统崩溃或断电时可能丢失最近的更新。
+         * 设置后，在后台线程中按策略将修改过的页面同步到磁盘，限制可能丢失的数据范围，
+         * 而不必在调用线程中执行 {@link FastKV#force()}。阻塞模式下此设置无效。
+         *
+         * @param policy 同步策略，见 {@link SyncPolicy#interval(long)}、{@link SyncPolicy#bytes(int)}、
+         *               {@link SyncPolicy#idle(long)}
+         * @return 构建器
+         */
+        public Builder syncPolicy(SyncPolicy policy) {
+            if (policy == null) {
+                throw new IllegalArgumentException("policy is null");
+            }
+            this.syncPolicy = policy;
+            return this;
+        }
+
+        /**
+         * 创建分段存储（见 {@link SegmentedKV}），用于数据量可能超过单个 FastKV 上限（256MB）的场景。
+         * 各段的文件名为 name_seg0, name_seg1 ...，使用当前 Builder 的全部配置。
+         *
+         * @param segments 段数，首次创建后以保存的段数为准
+         * @return 分段存储实例
+         */
+        public SegmentedKV buildSegmented(int segments) {
+            if (segments <= 0 || segments > SegmentedKV.MAX_SEGMENTS) {
+                throw new IllegalArgumentException("segments must be in [1, " + SegmentedKV.MAX_SEGMENTS + "]");
+            }
+            return SegmentedKV.open(this, path, name, segments);
+        }
+
+        FastKV buildSegment(String segmentName) {
+            return new Builder(this, segmentName).build();
+        }
+
+        /**
+         * 空闲时释放堆内的数据副本（仅对 NON_BLOCKING 模式有效，开启 {@link #compactIndex()} 或 {@link #lazyDecode()} 时无效）。<p>
+         * 默认情况下，除了已解码的值，内存中还保留一份完整的数据副本（与A文件相同），用于写入时计算校验和、整理数据等。
+         * 开启后，加载完成以及最后一次写入之后空闲一段时间，释放该副本，读取只使用已解码的值；
+         * 下次写入时再从A文件的映射中复制回来（数据通常还在页缓存中）。
+         * 适合数据量大而很少写入的场景。
+         *
+         * @return 构建器
+         */
+        public Builder heapFree() {
+            options |= OPTION_HEAP_FREE;
+            return this;
+        }
+
+        /**
+         * 以只读方式打开。<p>
+         * 只读实例只读取文件，不创建、修复或转换任何文件（包括不生成和校验B文件、不打开增量日志），
+         * 按 C文件 > 临时文件 > A文件 > B文件 的顺序使用第一个完整的文件；
+         * 加载时将全部的值解码到容器中，随后释放数据副本，不保留文件映射。
+         * 加载完成后数据不再变化，所有读取都不加锁；修改操作抛出 {@link UnsupportedOperationException}。<p>
+         * 同一路径和名称的只读实例是共享的（与可写实例相互独立），数据为打开时的状态，
+         * 之后其他实例或进程的修改不可见，需要时可关闭后重新打开，或配合 {@link #multiProcess()} 自动刷新。
+         * 开启后忽略其他写入相关的选项（{@link #compactIndex()}、{@link #lazyDecode()} 等）。
+         *
+         * @return 构建器
+         */
+        public Builder readOnly() {
+            options |= OPTION_READ_ONLY;
+            return this;
+        }
+
+        /**
+         * 多进程模式：多个进程可以同时读写同一份数据。<p>
+         * 对可写实例（仅 NON_BLOCKING 模式），修改之前先获取写入锁（锁定序号文件 .kvq 中的一个字节），
+         * 若其他进程在此期间修改过数据（序号不同），先从A/B文件重新同步；修改写入A/B文件之后递增序号。
+         * 写入锁在本次修改结束时释放，批量写入期间（{@link FastKV#disableAutoCommit()}）一直持有直到提交；
+         * 其他进程持有锁时，等待期间不占用对象锁，读取不受影响；文件系统不支持文件锁时降级为阻塞模式。<p>
+         * 对只读实例（{@link #readOnly()}），每次读取时比较序号（读取共享内存，开销很小），
+         * 有更新则重新加载数据，之后的读取即可看到其他进程的修改，无需通过 IPC 访问写入进程。
+         * 可写实例的读取同样会检查序号，有更新时重新加载（不获取写入锁），下次修改获得写入锁之后再从A/B文件同步。<p>
+         * 注意：重新加载期间各个 key 逐个替换，读取可能同时看到部分新值和部分旧值；
+         * 每个进程都需要开启此模式；开启后不使用 {@link #singleFile()}；可写实例降级为阻塞模式后不再参与同步。
+         *
+         * @return 构建器
+         */
+        public Builder multiProcess() {
+            options |= OPTION_MULTI_PROCESS;
+            return this;
+        }
+
+        static String getInstanceKey(String path, String name, boolean readOnly) {
+            return readOnly ? path + name + "#r" : path + name;
+        }
+
+        /**
+         * 设置加载优先级（仅在通过 {@link FastKVConfig#setLoadConcurrency(int)} 开启加载调度时有效）。<p>
+         * 调度器同一时间只执行有限个加载任务，优先级高的先加载：启动时必需的实例使用 {@link FastKV#PRIORITY_CRITICAL}，
+         * 预加载（之后才可能用到）的实例使用 {@link FastKV#PRIORITY_PREFETCH}，默认为 {@link FastKV#PRIORITY_NORMAL}。
+         * 无论优先级如何，读写尚未开始加载的实例时都会立即在当前线程中加载。
+         *
+         * @param priority {@link FastKV#PRIORITY_CRITICAL}、{@link FastKV#PRIORITY_NORMAL} 或 {@link FastKV#PRIORITY_PREFETCH}
+         * @return 构建器
+         */
+        public Builder loadPriority(int priority) {
+            if (priority < PRIORITY_CRITICAL || priority > PRIORITY_PREFETCH) {
+                throw new IllegalArgumentException("invalid priority: " + priority);
+            }
+            this.loadPriority = priority;
+            return this;
+        }
+
+        /**
+         * 异步打开：在后台线程中创建实例并加载数据，返回的 Future 在加载完成后才完成。<p>
+         * 启动时可以先并行预加载多个实例，在真正需要时再调用 {@link Future#get()}，
+         * 使加载与其他初始化工作重叠。实例已打开时，返回的 Future 很快就会完成。
+         *
+         * @return 加载完成后得到 FastKV 实例的 Future
+         */
+        public Future<FastKV> buildAsync() {
+            final SettableFuture<FastKV> future = new SettableFuture<>();
+            final boolean readOnly = (options & OPTION_READ_ONLY) != 0;
+            try {
+                FastKVConfig.getExecutor().execute(() -> {
+                    try {
+                        // 创建时不另外安排加载，直接在当前任务中加载：
+                        // 若再提交一个加载任务并等待它，有界的执行器中所有线程都在等待时会死锁
+                        FastKV kv = INSTANCES.get(getInstanceKey(path, name, readOnly), () -> create(true));
+                        // 实例已在其他线程中加载时，只等待其加载结束
+                        kv.load();
+                        future.set(kv);
+                    } catch (Throwable e) {
+                        future.setException(e);
+                    }
+                });
+            } catch (Throwable e) {
+                // 执行器拒绝任务等
+                future.setException(e);
+            }
+            return future;
+        }
+
+        /**
+         * 创建或获取已打开的实例（同一路径和名称只有一个实例，以首次创建时的配置为准）。
+         * 不同实例的创建可以在多个线程中并行，同时打开同一实例时只创建一次。
+         *
+         * @return FastKV 实例
+         */
+        public FastKV build() {
+            boolean readOnly = (options & OPTION_READ_ONLY) != 0;
+            return INSTANCES.get(getInstanceKey(path, name, readOnly), () -> create(false));
+        }
+
+        private FastKV create(boolean deferLoad) {
+            FastKV kv = new FastKV(path, name, encoders, cipher, writingMode, options, loadPriority, deferLoad);
+            if (commitDelay > 0) {
+                kv.setCommitWindow(commitDelay, maxPendingBytes);
+            }
+            if (syncPolicy != null) {
+                kv.setSyncPolicy(syncPolicy);
+            }
+            return kv;
+        }
+    }
+
+    @NonNull
+    @Override
+    public String toString() {
+        return "FastKV: path:" + path + " name:" + name;
+    }
+}
@@ -0,0 +1,109 @@
+package io.fastkv;
+
+import java.util.concurrent.*;
+
+import io.fastkv.interfaces.FastLogger;
+
+public final class FastKVConfig {
+    static FastLogger sLogger = null;
+    static volatile Executor sExecutor;
+    private static volatile ScheduledExecutorService sScheduler;
+    static volatile int sGroupCommitParallelism = 0;
+    static volatile int sLoadConcurrency = 0;
+    static volatile int sCacheMaxInstances = 0;
+    static volatile long sCacheMaxBytes = 0L;
+    static volatile long sCacheIdleMillis = 0L;
+
+    private FastKVConfig() {
+    }
+
+    public static void setLogger(FastLogger logger) {
+        sLogger = logger;
+    }
+
+    /**
+     * 强烈建议设置您自己的 Executor 以在公共线程池中重用线程。
+     *
+     * @param executor 用于加载或写入的执行器。
+     */
+    public static void setExecutor(Executor executor) {
+        if (executor != null) {
+            sExecutor = executor;
+        }
+    }
+
+    /**
+     * 开启 ASYNC_BLOCKING 模式的组提交（默认关闭），请在打开任何 FastKV 实例之前调用。<p>
+     * 默认情况下每个实例各自写入并 fsync 自己的 .kvc 文件，多个实例同时提交时会有多次独立的 fsync。
+     * 开启后，所有实例待写入的数据由一个全局的调度器分批处理：
+     * 同一批次先写入全部临时文件，再一起 fsync，最后依次替换 .kvc 文件；
+     * 一个批次执行期间到达的提交合并到下一批次。<p>
+     * 开启 journal 的实例不受影响。
+     *
+     * @param parallelism 每个批次中同时执行写入和 fsync 的最大线程数，小于等于 0 时关闭组提交
+     */
+    public static void setGroupCommit(int parallelism) {
+        sGroupCommitParallelism = parallelism;
+    }
+
+    /**
+     * 开启加载调度（默认关闭），请在打开任何 FastKV 实例之前调用。<p>
+     * 默认情况下每个实例创建时都立即在执行器中加载，启动时同时打开大量实例会占用大量线程并争抢 I/O。
+     * 开启后，加载任务按优先级（{@link FastKV.Builder#loadPriority(int)}）排队，同一时间最多执行 concurrency 个；
+     * 创建实例不再等待加载开始，读写尚未开始加载的实例时直接在当前线程中加载，不必等待排队。
+     *
+     * @param concurrency 同时执行的加载任务的最大数量，小于等于 0 时关闭调度
+     */
+    public static void setLoadConcurrency(int concurrency) {
+        sLoadConcurrency = concurrency;
+    }
+
+    /**
+     * 限制同时持有文件资源的实例（默认不限制），请在打开任何 FastKV 实例之前调用。<p>
+     * NON_BLOCKING 模式的实例在关闭之前一直持有A/B文件的通道、映射和堆内的数据副本，
+     * 按用户或环境分别创建实例时，长时间运行后会累积大量文件描述符和内存。
+     * 开启后，超过上限时按最后一次写入的时间从早到晚释放实例的文件资源（释放前同步到磁盘），
+     * 超过空闲时间没有写入的实例也会被释放。<p>
+     * 被释放的实例仍可正常读取（值已解码在内存中），下次写入时自动重新打开文件，调用方无需重新获取实例。
+     * 批量写入期间（关闭了自动提交）的实例和阻塞模式的实例不会被释放。
+     *
+     * @param maxInstances 同时持有文件资源的最大实例数，小于等于 0 时不限制
+     * @param maxBytes     这些实例的映射和数据副本的总字节数上限（估算值），小于等于 0 时不限制
+     * @param idleMillis   没有写入超过此时间（毫秒）的实例被释放，小于等于 0 时不按空闲时间释放
+     */
+    public static void setInstanceCache(int maxInstances, long maxBytes, long idleMillis) {
+        sCacheMaxInstances = maxInstances;
+        sCacheMaxBytes = maxBytes;
+        sCacheIdleMillis = idleMillis;
+    }
+
+    static Executor getExecutor() {
+        if (sExecutor == null) {
+            synchronized (FastKVConfig.class) {
+                if (sExecutor == null) {
+                    sExecutor = Executors.newCachedThreadPool();
+                }
+            }
+        }
+        return sExecutor;
+    }
+
+    /**
+     * 用于延迟提交的定时器（见 {@link FastKV.Builder#commitWindow(long, int)}），
+     * 只负责在到期时把写入任务交给执行器，不执行耗时操作，因此单个守护线程即可。
+     */
+    static ScheduledExecutorService getScheduler() {
+        if (sScheduler == null) {
+            synchronized (FastKVConfig.class) {
+                if (sScheduler == null) {
+                    sScheduler = Executors.newSingleThreadScheduledExecutor(r -> {
+                        Thread t = new Thread(r, "FastKV-Scheduler");
+                        t.setDaemon(true);
+                        return t;
+                    });
+                }
+            }
+        }
+        return sScheduler;
+    }
+}
@@ -8,6 +8,8 @@ import java.nio.MappedByteBuffer;
 import java.nio.channels.FileChannel;
 import java.nio.charset.StandardCharsets;
 import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 
@@ -30,11 +32,14 @@ class FileHelper {
     static final String TEMP_SUFFIX = ".tmp";
 
     // 数据大小限制，256M
-    private static final int DATA_SIZE_LIMIT = 1 << 28;
+    static final int DATA_SIZE_LIMIT = 1 << 28;
 
     // 加密标记掩码
     private static final int CIPHER_MASK = 1 << 30;
 
+    // 脏数据段数量达到此阈值时合并一次，避免批量写入期间反复更新同一个 key 导致列表无限增长
+    static final int DIRTY_MERGE_THRESHOLD = 256;
+
     /**
      * 从A/B文件加载数据
      * 核心流程：创建文件通道 -> 建立内存映射 -> 数据校验 -> 解析数据
@@ -45,6 +50,10 @@ class FileHelper {
     static void loadFromABFile(FastKV kv) {
         File aFile = new File(kv.path, kv.name + A_SUFFIX);
         File bFile = new File(kv.path, kv.name + B_SUFFIX);
+        if (kv.singleFile && !bFile.exists()) {
+            loadFromSingleFile(kv, aFile);
+            return;
+        }
         try {
             if (!Utils.makeFileIfNotExist(aFile) || !Utils.makeFileIfNotExist(bFile)) {
                 LoggerHelper.error(kv, new Exception(OPEN_FILE_FAILED));
@@ -58,12 +67,8 @@ class FileHelper {
             kv.aChannel = aAccessFile.getChannel();
             kv.bChannel = bAccessFile.getChannel();
             try {
-                kv.aBuffer = kv.aChannel.map(FileChannel.MapMode.READ_WRITE, 0, 
-                        aFileLen > 0 ? aFileLen : FastKV.PAGE_SIZE);
-                kv.aBuffer.order(ByteOrder.LITTLE_ENDIAN);
-                kv.bBuffer = kv.bChannel.map(FileChannel.MapMode.READ_WRITE, 0, 
-                        bFileLen > 0 ? bFileLen : FastKV.PAGE_SIZE);
-                kv.bBuffer.order(ByteOrder.LITTLE_ENDIAN);
+                kv.aBuffer = ChunkedMapping.map(kv.aChannel, aFileLen > 0 ? aFileLen : FastKV.PAGE_SIZE);
+                kv.bBuffer = ChunkedMapping.map(kv.bChannel, bFileLen > 0 ? bFileLen : FastKV.PAGE_SIZE);
             } catch (IOException e) {
                 LoggerHelper.error(kv, e);
                 toBlockingMode(kv);
@@ -75,14 +80,105 @@ class FileHelper {
             if (aFileLen == 0 && bFileLen == 0) {
                 kv.dataEnd = FastKV.DATA_START;
             } else {
+                replayIfInterrupted(kv);
                 processFiles(kv, aFileLen, bFileLen);
             }
+            if (kv.singleFile && kv.writingMode == FastKV.NON_BLOCKING) {
+                // 从A/B文件切换到单文件模式：A文件此时已是完整的，不再需要B文件
+                kv.redoLog = RedoLog.open(new File(kv.path, kv.name + RedoLog.REDO_SUFFIX));
+                Utils.closeQuietly(kv.bChannel);
+                kv.bChannel = null;
+                kv.bBuffer = null;
+                Utils.deleteFile(bFile);
+            }
         } catch (Exception e) {
             LoggerHelper.error(kv, e);
             resetMemory(kv);
             toBlockingMode(kv);
         }
     }
+
+    /**
+     * 之前以单文件模式打开、A文件写入中断（dataLen 为 -1）时，先重放重做日志，然后删除日志。
+     */
+    private static void replayIfInterrupted(FastKV kv) throws IOException {
+        File redoFile = new File(kv.path, kv.name + RedoLog.REDO_SUFFIX);
+        if (!redoFile.exists()) {
+            return;
+        }
+        if (kv.aBuffer.getInt(0) == -1) {
+            RedoLog redoLog = RedoLog.open(redoFile);
+            if (redoLog.replay(kv.aBuffer)) {
+                LoggerHelper.warning(kv, new Exception("recover from redo log"));
+            }
+            redoLog.close();
+        }
+        Utils.deleteFile(redoFile);
+    }
+
+    /**
+     * 单文件模式（见 {@link FastKV.Builder#singleFile()}）下加载A文件，
+     * A文件无效时（写入中断）重放重做日志后再加载一次。
+     */
+    @SuppressWarnings("resource")
+    private static void loadFromSingleFile(FastKV kv, File aFile) {
+        try {
+            if (!Utils.makeFileIfNotExist(aFile)) {
+                LoggerHelper.error(kv, new Exception(OPEN_FILE_FAILED));
+                toBlockingMode(kv);
+                return;
+            }
+            RandomAccessFile aAccessFile = new RandomAccessFile(aFile, "rw");
+            long aFileLen = aAccessFile.length();
+            kv.aChannel = aAccessFile.getChannel();
+            try {
+                kv.aBuffer = ChunkedMapping.map(kv.aChannel, aFileLen > 0 ? aFileLen : FastKV.PAGE_SIZE);
+                kv.redoLog = RedoLog.open(new File(kv.path, kv.name + RedoLog.REDO_SUFFIX));
+            } catch (IOException e) {
+                LoggerHelper.error(kv, e);
+                toBlockingMode(kv);
+                if (!loadWithBlockingIO(kv, aFile)) {
+                    resetMemory(kv);
+                }
+                return;
+            }
+            kv.fastBuffer = new FastBuffer(kv.aBuffer.capacity());
+
+            if (aFileLen == 0) {
+                kv.dataEnd = FastKV.DATA_START;
+            } else if (!loadSingleFile(kv, aFileLen)) {
+                if (kv.redoLog.replay(kv.aBuffer) && loadSingleFile(kv, aFileLen)) {
+                    LoggerHelper.warning(kv, new Exception("recover from redo log"));
+                } else {
+                    LoggerHelper.error(kv, new Exception("file error"));
+                    clearData(kv);
+                }
+            }
+        } catch (Exception e) {
+            LoggerHelper.error(kv, e);
+            resetMemory(kv);
+            toBlockingMode(kv);
+        }
+    }
+
+    private static boolean loadSingleFile(FastKV kv, long fileLen) {
+        int size = kv.aBuffer.getInt(0);
+        int dataSize = unpackSize(size);
+        long checksum = kv.aBuffer.getLong(4);
+        if (dataSize >= 0 && dataSize <= fileLen - FastKV.DATA_START) {
+            kv.dataEnd = FastKV.DATA_START + dataSize;
+            kv.aBuffer.rewind();
+            kv.aBuffer.get(kv.fastBuffer.hb, 0, kv.dataEnd);
+            if (checksum == ParallelHelper.getChecksum(kv.fastBuffer, FastKV.DATA_START, dataSize)
+                    && DataParser.parseData(kv, isCipher(size))) {
+                kv.checksum = checksum;
+                return true;
+            }
+        }
+        kv.clearContainers();
+        GCHelper.clearInvalid(kv);
+        return false;
+    }
     
     /**
      * 处理A/B文件数据
@@ -104,7 +200,7 @@ class FileHelper {
             kv.dataEnd = FastKV.DATA_START + aDataSize;
             kv.aBuffer.rewind();
             kv.aBuffer.get(kv.fastBuffer.hb, 0, kv.dataEnd);
-            if (aCheckSum == kv.fastBuffer.getChecksum(FastKV.DATA_START, aDataSize) && DataParser.parseData(kv, aHadEncrypted)) {
+            if (aCheckSum == ParallelHelper.getChecksum(kv.fastBuffer, FastKV.DATA_START, aDataSize) && DataParser.parseData(kv, aHadEncrypted)) {
                 kv.checksum = aCheckSum;
                 isAValid = true;
             }
@@ -127,7 +223,7 @@ class FileHelper {
     private static void processFileB(FastKV kv, long bFileLen, int bDataSize, long bCheckSum, boolean bHadEncrypted)  {
         boolean isBValid = false;
         if (bDataSize >= 0 && (bDataSize <= bFileLen - FastKV.DATA_START)) {
-            kv.data.clear();
+            kv.clearContainers();
             GCHelper.clearInvalid(kv);
             kv.dataEnd = FastKV.DATA_START + bDataSize;
             if (kv.fastBuffer.hb.length != kv.bBuffer.capacity()) {
@@ -135,7 +231,7 @@ class FileHelper {
             }
             kv.bBuffer.rewind();
             kv.bBuffer.get(kv.fastBuffer.hb, 0, kv.dataEnd);
-            if (bCheckSum == kv.fastBuffer.getChecksum(FastKV.DATA_START, bDataSize) && DataParser.parseData(kv, bHadEncrypted)) {
+            if (bCheckSum == ParallelHelper.getChecksum(kv.fastBuffer, FastKV.DATA_START, bDataSize) && DataParser.parseData(kv, bHadEncrypted)) {
                 // B文件数据有效，打印日志并复制到A文件
                 LoggerHelper.warning(kv, new Exception("A file error"));
                 copyBuffer(kv, kv.bBuffer, kv.aBuffer, kv.dataEnd);
@@ -165,21 +261,27 @@ class FileHelper {
             int fileLen = buffer.hb.length;
             File aFile = new File(kv.path, kv.name + A_SUFFIX);
             File bFile = new File(kv.path, kv.name + B_SUFFIX);
-            if (!Utils.makeFileIfNotExist(aFile) || !Utils.makeFileIfNotExist(bFile)) {
+            if (!Utils.makeFileIfNotExist(aFile) || (!kv.singleFile && !Utils.makeFileIfNotExist(bFile))) {
                 throw new Exception(OPEN_FILE_FAILED);
             }
             aAccessFile = new RandomAccessFile(aFile, "rw");
             aAccessFile.setLength(fileLen);
             kv.aChannel = aAccessFile.getChannel();
-            kv.aBuffer = kv.aChannel.map(FileChannel.MapMode.READ_WRITE, 0, fileLen);
-            kv.aBuffer.order(ByteOrder.LITTLE_ENDIAN);
+            kv.aBuffer = ChunkedMapping.map(kv.aChannel, fileLen);
             kv.aBuffer.put(buffer.hb, 0, kv.dataEnd);
+            if (kv.singleFile) {
+                if (kv.redoLog == null) {
+                    kv.redoLog = RedoLog.open(new File(kv.path, kv.name + RedoLog.REDO_SUFFIX));
+                }
+                // 日志中的记录对应的是写入之前的数据，不能再重放
+                kv.redoLog.reset();
+                return true;
+            }
 
             bAccessFile = new RandomAccessFile(bFile, "rw");
             bAccessFile.setLength(fileLen);
             kv.bChannel = bAccessFile.getChannel();
-            kv.bBuffer = kv.bChannel.map(FileChannel.MapMode.READ_WRITE, 0, fileLen);
-            kv.bBuffer.order(ByteOrder.LITTLE_ENDIAN);
+            kv.bBuffer = ChunkedMapping.map(kv.bChannel, fileLen);
             kv.bBuffer.put(buffer.hb, 0, kv.dataEnd);
             return true;
         } catch (Exception e) {
@@ -189,11 +291,88 @@ class FileHelper {
             kv.bChannel = null;
             kv.aBuffer = null;
             kv.bBuffer = null;
+            closeRedoLog(kv);
             LoggerHelper.error(kv, e);
         }
         return false;
     }
     
+    /**
+     * 将批量写入期间的脏数据段同步到A/B文件。
+     * <p>
+     * 与单次写入相同：先将A文件的 dataLen 标记为 -1，写入所有脏数据段和数据头后再恢复，然后写B文件。
+     * 任一时刻至少有一个文件是完整的，加载时若A文件未写完则使用B文件（即批量写入之前的数据），
+     * 所以整批数据在崩溃后要么全部生效，要么全部不生效。
+     * 单文件模式下整批数据作为一条重做日志记录写入，同样是全部生效或全部不生效。
+     *
+     * @param kv FastKV实例
+     */
+    static void syncDirtyToABFile(FastKV kv) {
+        if (kv.dirtySegments.isEmpty()) {
+            return;
+        }
+        mergeDirty(kv.dirtySegments);
+        if (kv.redoLog != null) {
+            for (Segment segment : kv.dirtySegments) {
+                kv.redoLog.add(segment.start, segment.end);
+            }
+            kv.redoLog.commit(kv);
+            kv.dirtySegments.clear();
+            GCHelper.checkTruncate(kv, 0);
+            return;
+        }
+        int packedSize = packSize(kv.dataEnd - FastKV.DATA_START, kv.cipher != null);
+        kv.aBuffer.putInt(0, -1);
+        writeDirty(kv, kv.aBuffer);
+        kv.aBuffer.putInt(0, packedSize);
+
+        kv.bBuffer.putInt(0, packedSize);
+        writeDirty(kv, kv.bBuffer);
+        kv.dirtySegments.clear();
+
+        // 批量写入期间 GC 不截断文件（否则会截掉尚未提交的旧数据），提交之后再检查
+        GCHelper.checkTruncate(kv, 0);
+    }
+
+    private static void writeDirty(FastKV kv, ChunkedMapping buffer) {
+        buffer.putLong(4, kv.checksum);
+        byte[] hb = kv.fastBuffer.hb;
+        for (Segment segment : kv.dirtySegments) {
+            buffer.position(segment.start);
+            buffer.put(hb, segment.start, segment.end - segment.start);
+        }
+    }
+
+    /**
+     * 合并脏数据段：排序后合并重叠或相邻的段。
+     * 与 {@link GCHelper#mergeInvalids} 不同，脏数据段之间可能重叠（例如同一个 key 多次更新）。
+     */
+    static void mergeDirty(ArrayList<Segment> segments) {
+        int n = segments.size();
+        if (n <= 1) {
+            return;
+        }
+        Collections.sort(segments);
+        int index = 0;
+        Segment p = segments.get(0);
+        for (int i = 1; i < n; i++) {
+            Segment q = segments.get(i);
+            if (q.start <= p.end) {
+                if (q.end > p.end) {
+                    p.end = q.end;
+                }
+            } else {
+                index++;
+                segments.set(index, q);
+                p = q;
+            }
+        }
+        index++;
+        if (n > index) {
+            segments.subList(index, n).clear();
+        }
+    }
+
     /**
      * 检查A/B文件数据一致性
      * 逐字节比较两个文件的内容
@@ -202,28 +381,21 @@ class FileHelper {
         FastBuffer tempBuffer = new FastBuffer(kv.dataEnd);
         kv.bBuffer.rewind();
         kv.bBuffer.get(tempBuffer.hb, 0, kv.dataEnd);
-        byte[] a = kv.fastBuffer.hb;
-        byte[] b = tempBuffer.hb;
-        for (int i = 0; i < kv.dataEnd; i++) {
-            if (a[i] != b[i]) {
-                return false;
-            }
-        }
-        return true;
+        return ParallelHelper.equals(kv.fastBuffer.hb, tempBuffer.hb, kv.dataEnd);
     }
 
     /**
-     * 复制 Buffer 数据
+     * 复制 Buffer 数据（src 的数据已读入 fastBuffer，从 fastBuffer 写入 dest）
      *
      * @param kv FastKV实例
      * @param src 源缓冲区
      * @param dest 目标缓冲区
      * @param end 复制结束位置
      */
-    static void copyBuffer(FastKV kv, MappedByteBuffer src, MappedByteBuffer dest, int end) {
+    static void copyBuffer(FastKV kv, ChunkedMapping src, ChunkedMapping dest, int end) {
         if (src.capacity() != dest.capacity()) {
             FileChannel channel = (dest == kv.bBuffer) ? kv.bChannel : kv.aChannel;
-            MappedByteBuffer newBuffer = remapBuffer(channel, src.capacity());
+            ChunkedMapping newBuffer = remapFile(channel, src.capacity());
             if (newBuffer == null) {
                 LoggerHelper.error(kv, new Exception(MAP_FAILED));
                 toBlockingMode(kv);
@@ -236,11 +408,20 @@ class FileHelper {
             }
             dest = newBuffer;
         }
-        src.rewind();
         dest.rewind();
-        src.limit(end);
-        dest.put(src);
-        src.limit(src.capacity());
+        dest.put(kv.fastBuffer.hb, 0, end);
+    }
+
+    /**
+     * 重新映射A/B文件的 [0, newCapacity) 区域
+     * @return 成功时返回新的映射, 失败时返回null
+     */
+    static ChunkedMapping remapFile(FileChannel channel, int newCapacity) {
+        try {
+            return ChunkedMapping.map(channel, newCapacity);
+        } catch (IOException e) {
+            return null;
+        }
     }
 
     /**
@@ -265,17 +446,123 @@ class FileHelper {
      * @return 是否成功
      */
     static boolean writeToCFile(FastKV kv) {
+        if (writeToCFile(kv, kv.fastBuffer.hb, kv.dataEnd)) {
+            clearDeletedFiles(kv);
+            return true;
+        }
+        return false;
+    }
+
+    /**
+     * ASYNC_BLOCKING 模式下提交（在 applyExecutor 中执行）。
+     * <p>
+     * 写入期间前台线程仍会修改 fastBuffer（GC 时还会替换它），所以先在对象锁内将数据复制到快照缓冲区，
+     * 再在锁外写入C文件，文件内容总是某一时刻的完整数据，apply() 也不需要等待I/O。
+     * LimitExecutor 会合并等待中的任务，所以连续多次 apply() 只复制一次；
+     * 快照缓冲区只在写入任务中访问（任务串行执行），可以复用。
+     */
+    static boolean writeSnapshotToCFile(FastKV kv) {
+        List<String> deletedFiles = new ArrayList<>();
+        int size = takeSnapshot(kv, deletedFiles);
+        boolean success = false;
         try {
             File tmpFile = new File(kv.path, kv.name + TEMP_SUFFIX);
             if (Utils.makeFileIfNotExist(tmpFile)) {
                 try (RandomAccessFile accessFile = new RandomAccessFile(tmpFile, "rw")) {
-                    accessFile.setLength(kv.dataEnd);
-                    accessFile.write(kv.fastBuffer.hb, 0, kv.dataEnd);
+                    accessFile.setLength(size);
+                    accessFile.write(kv.snapshot, 0, size);
+                    accessFile.getFD().sync();
+                }
+                success = renameSnapshot(kv, tmpFile);
+            }
+        } catch (Exception e) {
+            LoggerHelper.error(kv, e);
+        }
+        finishSnapshot(kv, success, deletedFiles);
+        return success;
+    }
+
+    /**
+     * 在对象锁内将数据复制到 kv.snapshot，并将待删除的外部文件转移到 deletedFiles
+     *
+     * @return 快照的大小（包括数据头）
+     */
+    static int takeSnapshot(FastKV kv, List<String> deletedFiles) {
+        synchronized (kv) {
+            int size = kv.dataEnd;
+            byte[] snapshot = kv.snapshot;
+            // 数据变少很多时（例如 clear 或 GC 之后）重新分配，避免一直占用内存
+            if (snapshot == null || snapshot.length < size
+                    || (snapshot.length > FastKV.PAGE_SIZE && snapshot.length > (size << 2))) {
+                snapshot = new byte[size];
+                kv.snapshot = snapshot;
+            }
+            System.arraycopy(kv.fastBuffer.hb, 0, snapshot, 0, size);
+            kv.snapshotGeneration = kv.cFileGeneration;
+            kv.pendingBytes = 0;
+            kv.flushScheduler.flushing = true;
+            deletedFiles.addAll(kv.deletedFiles);
+            kv.deletedFiles.clear();
+            return size;
+        }
+    }
+
+    /**
+     * 将写好的快照临时文件重命名为C文件。
+     * <p>
+     * 在对象锁内检查并重命名，与 clear() 删除C文件互斥：若复制快照之后执行过 clear()，
+     * 快照中是清空之前的数据，丢弃临时文件，否则重命名会让已清空的数据在下次加载时恢复。
+     *
+     * @return 是否成功（快照被丢弃时也返回 true，其待删除的外部文件已不再被引用）
+     */
+    static boolean renameSnapshot(FastKV kv, File tmpFile) {
+        synchronized (kv) {
+            if (kv.snapshotGeneration != kv.cFileGeneration) {
+                Utils.deleteFile(tmpFile);
+                return true;
+            }
+            File cFile = new File(kv.path, kv.name + C_SUFFIX);
+            if (Utils.renameFile(tmpFile, cFile)) {
+                return true;
+            }
+        }
+        LoggerHelper.warning(kv, new Exception("rename failed"));
+        return false;
+    }
+
+    /**
+     * 快照写入完成之后调用：成功则删除外部文件，失败则将其放回待删除列表
+     */
+    static void finishSnapshot(FastKV kv, boolean success, List<String> deletedFiles) {
+        synchronized (kv) {
+            kv.flushScheduler.flushing = false;
+            if (!success) {
+                kv.deletedFiles.addAll(deletedFiles);
+            }
+            // 唤醒因积压过多而等待的写入线程（见 FlushScheduler.awaitFlush）
+            kv.notifyAll();
+        }
+        if (success) {
+            for (String name : deletedFiles) {
+                deleteExternalFile(kv, name);
+            }
+        }
+    }
+
+    /**
+     * 将 bytes 的前 size 个字节（包括数据头）写入C文件
+     */
+    static boolean writeToCFile(FastKV kv, byte[] bytes, int size) {
+        try {
+            File tmpFile = new File(kv.path, kv.name + TEMP_SUFFIX);
+            if (Utils.makeFileIfNotExist(tmpFile)) {
+                try (RandomAccessFile accessFile = new RandomAccessFile(tmpFile, "rw")) {
+                    accessFile.setLength(size);
+                    accessFile.write(bytes, 0, size);
                     accessFile.getFD().sync();
                 }
                 File cFile = new File(kv.path, kv.name + C_SUFFIX);
                 if (Utils.renameFile(tmpFile, cFile)) {
-                    clearDeletedFiles(kv);
                     return true;
                 } else {
                     LoggerHelper.warning(kv, new Exception("rename failed"));
@@ -294,9 +581,15 @@ class FileHelper {
      */
     static void force(FastKV kv) {
         if (kv.closed) return;
+        if (kv.journal != null) {
+            kv.journal.flush(kv);
+        }
         if (kv.writingMode == FastKV.NON_BLOCKING) {
             forceBuffer(kv.aBuffer);
             forceBuffer(kv.bBuffer);
+            if (kv.redoLog != null) {
+                kv.redoLog.force();
+            }
         }
     }
 
@@ -306,11 +599,19 @@ class FileHelper {
     static void close(FastKV kv) {
         if (kv.closed) return;
         kv.closed = true;
+        if (kv.processSync != null) {
+            kv.processSync.close();
+        }
+        if (kv.journal != null) {
+            kv.journal.flush(kv);
+            kv.journal.close();
+        }
         if (kv.writingMode == FastKV.NON_BLOCKING) {
             forceChannel(kv.aChannel);
             closeChannel(kv.aChannel);
             forceChannel(kv.bChannel);
             closeChannel(kv.bChannel);
+            closeRedoLog(kv);
         }
     }
     
@@ -319,7 +620,7 @@ class FileHelper {
     /**
      * 强制同步缓冲区到磁盘
      */
-    private static void forceBuffer(MappedByteBuffer buffer) {
+    private static void forceBuffer(ChunkedMapping buffer) {
         if (buffer != null) {
             buffer.force();
         }
@@ -356,12 +657,22 @@ class FileHelper {
      */
     static void toBlockingMode(FastKV kv) {
         kv.writingMode = FastKV.ASYNC_BLOCKING;
+        // 阻塞模式下提交时会写入全部数据，无需再记录脏数据段
+        kv.dirtySegments.clear();
         Utils.closeQuietly(kv.aChannel);
         Utils.closeQuietly(kv.bChannel);
         kv.aChannel = null;
         kv.bChannel = null;
         kv.aBuffer = null;
         kv.bBuffer = null;
+        closeRedoLog(kv);
+    }
+
+    private static void closeRedoLog(FastKV kv) {
+        if (kv.redoLog != null) {
+            kv.redoLog.close();
+            kv.redoLog = null;
+        }
     }
 
     /**
@@ -434,10 +745,15 @@ class FileHelper {
         long sum = buffer.getLong();
         kv.dataEnd = FastKV.DATA_START + dataSize;
         if (dataSize >= 0 && (dataSize <= fileSize - FastKV.DATA_START)
-                && sum == buffer.getChecksum(FastKV.DATA_START, dataSize)
-                && DataParser.parseData(kv, hadEncrypted)) {
+                && sum == ParallelHelper.getChecksum(buffer, FastKV.DATA_START, dataSize)) {
             kv.checksum = sum;
-            return true;
+            if (kv.journal != null) {
+                int packedSize = kv.journal.replay(kv);
+                if (packedSize >= 0) {
+                    hadEncrypted = isCipher(packedSize);
+                }
+            }
+            return DataParser.parseData(kv, hadEncrypted);
         }
         return false;
     }
@@ -453,6 +769,9 @@ class FileHelper {
         boolean hadWriteToABFile = false;
         File cFile = new File(kv.path, kv.name + C_SUFFIX);
         File tmpFile = new File(kv.path, kv.name + TEMP_SUFFIX);
+        if (kv.useJournal && kv.writingMode != FastKV.NON_BLOCKING) {
+            kv.journal = new Journal(new File(kv.path, kv.name + Journal.JOURNAL_SUFFIX));
+        }
         try {
             File srcFile = null;
             if (cFile.exists()) {
@@ -481,17 +800,84 @@ class FileHelper {
                 if (kv.writingMode != FastKV.NON_BLOCKING) {
                     File aFile = new File(kv.path, kv.name + A_SUFFIX);
                     File bFile = new File(kv.path, kv.name + B_SUFFIX);
-                    if (aFile.exists() && bFile.exists()) {
+                    // 单文件模式下没有B文件
+                    if (aFile.exists()) {
                         tryBlockingIO(kv, aFile, bFile);
                     }
                 }
             }
+            if (kv.journal != null) {
+                if (!kv.journal.isReplayed()) {
+                    // 没有可用的快照时，在空数据上重放日志
+                    replayOnEmptyData(kv);
+                }
+                if (!kv.journal.isOpened()) {
+                    // 日志文件打不开时，仍然每次写入全部数据
+                    kv.journal = null;
+                }
+            }
         } catch (Exception e) {
             LoggerHelper.error(kv, e);
         }
         return hadWriteToABFile;
     }
 
+    /**
+     * 只读模式加载数据（见 {@link FastKV.Builder#readOnly()}）
+     * 优先级与可写模式相同：C文件 > 临时文件 > A文件 > B文件，使用第一个校验通过的文件；
+     * 不写入、修复或删除任何文件，增量日志只在内存中重放。
+     * 存在的文件都不完整时（例如其他进程正在写入）标记 kv.incomplete。
+     */
+    static void loadReadOnly(FastKV kv) {
+        File journalFile = new File(kv.path, kv.name + Journal.JOURNAL_SUFFIX);
+        if (journalFile.exists()) {
+            kv.journal = new Journal(journalFile);
+        }
+        File[] files = {
+                new File(kv.path, kv.name + C_SUFFIX),
+                new File(kv.path, kv.name + TEMP_SUFFIX),
+                new File(kv.path, kv.name + A_SUFFIX),
+                new File(kv.path, kv.name + B_SUFFIX)
+        };
+        boolean found = false;
+        boolean loaded = false;
+        try {
+            for (File file : files) {
+                if (!file.exists()) {
+                    continue;
+                }
+                found = true;
+                try {
+                    if (loadWithBlockingIO(kv, file)) {
+                        loaded = true;
+                        break;
+                    }
+                } catch (IOException e) {
+                    LoggerHelper.warning(kv, e);
+                }
+                resetMemory(kv);
+            }
+            if (kv.journal != null && !kv.journal.isReplayed()) {
+                replayOnEmptyData(kv);
+            }
+        } catch (Exception e) {
+            LoggerHelper.error(kv, e);
+            resetMemory(kv);
+            loaded = false;
+        }
+        kv.incomplete = found && !loaded && kv.dataEnd == FastKV.DATA_START;
+        kv.journal = null;
+        kv.needRewrite = false;
+    }
+
+    private static void replayOnEmptyData(FastKV kv) {
+        resetMemory(kv);
+        int packedSize = kv.journal.replay(kv);
+        if (packedSize >= 0 && !DataParser.parseData(kv, isCipher(packedSize))) {
+            resetMemory(kv);
+        }
+    }
+
     /**
      * 重写数据：从未加密到加密
      * 创建临时FastKV实例进行数据迁移
@@ -506,7 +892,8 @@ class FileHelper {
 
         // 这里我们使用阻塞模式的 FastKV 并关闭 'autoCommit'，
         // 使数据只保留在内存中。
-        FastKV tempKV = new FastKV(kv.path, tempName, encoders, kv.cipher, FastKV.SYNC_BLOCKING);
+        FastKV tempKV = new FastKV(kv.path, tempName, encoders, kv.cipher, FastKV.SYNC_BLOCKING,
+                kv.primitiveIndex != null ? FastKV.OPTION_COMPACT_INDEX : 0);
         tempKV.disableAutoCommit();
 
         List<String> oldExternalFiles = new ArrayList<>();
@@ -574,6 +961,9 @@ class FileHelper {
         GCHelper.clearInvalid(kv);
         kv.data.clear();
         kv.data.putAll(tempKV.data);
+        if (kv.primitiveIndex != null) {
+            kv.primitiveIndex = tempKV.primitiveIndex;
+        }
 
         copyToMainFile(kv, tempKV);
 
@@ -600,7 +990,10 @@ class FileHelper {
         FastBuffer buffer = tempKV.fastBuffer;
         if (kv.writingMode == FastKV.NON_BLOCKING) {
             int capacity = buffer.hb.length;
-            if (kv.aBuffer != null && kv.aBuffer.capacity() == capacity
+            if (kv.redoLog != null && kv.aBuffer.capacity() == capacity) {
+                kv.redoLog.add(FastKV.DATA_START, kv.dataEnd);
+                kv.redoLog.commit(kv);
+            } else if (kv.aBuffer != null && kv.aBuffer.capacity() == capacity
                     && kv.bBuffer != null && kv.bBuffer.capacity() == capacity) {
                 kv.aBuffer.position(0);
                 kv.aBuffer.put(buffer.hb, 0, kv.dataEnd);
@@ -613,7 +1006,13 @@ class FileHelper {
             }
         }
         if (kv.writingMode != FastKV.NON_BLOCKING) {
-            writeToCFile(kv);
+            if (kv.journal != null) {
+                // 数据被整体替换，做一次检查点
+                kv.markDirty(FastKV.DATA_START, kv.dataEnd);
+                kv.commitJournal(true);
+            } else {
+                writeToCFile(kv);
+            }
         }
     }
 
@@ -693,7 +1092,7 @@ class FileHelper {
                 bytes = fastCipher != null ? fastCipher.decrypt(bytes) : bytes;
                 int tagSize = bytes[0] & 0xFF;
                 String tag = kv.fastBuffer.decodeStr(bytes, 1, tagSize);
-                //noinspection rawtypes
+                @SuppressWarnings("rawtypes")
                 FastEncoder encoder = kv.encoderMap.get(tag);
                 if (encoder != null) {
                     c.encoder = encoder;
@@ -728,8 +1127,13 @@ class FileHelper {
     static void clearData(FastKV kv) {
         if (kv.writingMode == FastKV.NON_BLOCKING) {
             try {
+                if (kv.redoLog != null) {
+                    kv.redoLog.reset();
+                }
                 resetBuffer(kv, kv.aBuffer);
-                resetBuffer(kv, kv.bBuffer);
+                if (kv.bBuffer != null) {
+                    resetBuffer(kv, kv.bBuffer);
+                }
             } catch (Exception e) {
                 toBlockingMode(kv);
             }
@@ -738,10 +1142,10 @@ class FileHelper {
         Utils.deleteFile(new File(kv.path + kv.name));
     }
 
-    private static void resetBuffer(FastKV kv, MappedByteBuffer buffer) throws IOException {
+    private static void resetBuffer(FastKV kv, ChunkedMapping buffer) throws IOException {
         if (buffer.capacity() != FastKV.PAGE_SIZE) {
             FileChannel channel = buffer == kv.aBuffer ? kv.aChannel : kv.bChannel;
-            MappedByteBuffer newBuffer = truncateAndRemap(channel, FastKV.PAGE_SIZE);
+            ChunkedMapping newBuffer = truncateAndRemap(channel, FastKV.PAGE_SIZE);
             if (newBuffer == null) {
                 throw new IOException("Failed to truncate and remap buffer");
             }
@@ -756,19 +1160,130 @@ class FileHelper {
         buffer.putLong(4, 0L);
     }
 
-    static MappedByteBuffer truncateAndRemap(FileChannel channel, int newCapacity) {
+    static ChunkedMapping truncateAndRemap(FileChannel channel, int newCapacity) {
         try {
             channel.truncate(newCapacity);
-            return remapBuffer(channel, newCapacity);
+            return remapFile(channel, newCapacity);
         } catch (IOException e) {
             return null;
         }
     }
 
+    /**
+     * 多进程模式下，获得写入锁后发现其他进程修改过数据时，从A/B文件重新同步数据和索引（见 FastKV.lockFile()）。
+     * 其他进程可能扩容或收缩了文件，先按文件的长度重新映射。
+     * 容器逐个替换而不是先清空，同一进程中不加锁的读取不会看到数据为空的中间状态。
+     */
+    static void resyncFromABFile(FastKV kv) {
+        try {
+            kv.aBuffer = resizeMapping(kv.aChannel, kv.aBuffer);
+            kv.bBuffer = resizeMapping(kv.bChannel, kv.bBuffer);
+            Map<String, BaseContainer> oldData = new HashMap<>(kv.data);
+            if (kv.primitiveIndex != null) {
+                kv.primitiveIndex.clear();
+            }
+            GCHelper.clearInvalid(kv);
+            kv.compacting = false;
+            int capacity = kv.aBuffer.capacity();
+            if (kv.fastBuffer == null || kv.fastBuffer.hb.length != capacity) {
+                kv.fastBuffer = new FastBuffer(capacity);
+            }
+            kv.aBuffer.rewind();
+            kv.bBuffer.rewind();
+            processFiles(kv, capacity, kv.bBuffer.capacity());
+            // 没有被替换的容器对应的 key 已被其他进程删除
+            for (Map.Entry<String, BaseContainer> entry : oldData.entrySet()) {
+                kv.data.remove(entry.getKey(), entry.getValue());
+            }
+            LoggerHelper.info(kv, "resync data");
+        } catch (Exception e) {
+            LoggerHelper.error(kv, e);
+            resetMemory(kv);
+            toBlockingMode(kv);
+        }
+    }
+
+    private static ChunkedMapping resizeMapping(FileChannel channel, ChunkedMapping mapping) throws IOException {
+        long size = channel.size();
+        if (size <= 0 || size >= DATA_SIZE_LIMIT) {
+            throw new IOException("invalid file size: " + size);
+        }
+        if (size > mapping.capacity()) {
+            mapping.grow((int) size);
+        } else if (size < mapping.capacity()) {
+            mapping = ChunkedMapping.map(channel, size);
+        }
+        return mapping;
+    }
+
+    /**
+     * 释放A/B文件的通道和映射（见 {@link ResourceReleaser#evict(long)}），释放前同步到磁盘。
+     * 映射在不再被引用之后由 GC 解除。
+     */
+    static void releaseABFile(FastKV kv) {
+        forceBuffer(kv.aBuffer);
+        forceBuffer(kv.bBuffer);
+        closeChannel(kv.aChannel);
+        closeChannel(kv.bChannel);
+        kv.aChannel = null;
+        kv.bChannel = null;
+        kv.aBuffer = null;
+        kv.bBuffer = null;
+        closeRedoLog(kv);
+    }
+
+    /**
+     * 重新打开已释放的A/B文件（见 {@link #releaseABFile(FastKV)}），数据副本已释放时从A文件恢复。
+     * 释放期间文件没有被修改（多进程模式下其他进程的修改在获取写入锁时同步），所以不需要重新解析。
+     * 打开失败时降级为阻塞模式，数据副本已释放时从A/B文件重新加载。
+     */
+    @SuppressWarnings("resource")
+    static void reopenABFile(FastKV kv) {
+        kv.releaser.evicted = false;
+        File aFile = new File(kv.path, kv.name + A_SUFFIX);
+        File bFile = new File(kv.path, kv.name + B_SUFFIX);
+        try {
+            long aFileLen = aFile.length();
+            if (aFileLen < kv.dataEnd || aFileLen >= DATA_SIZE_LIMIT) {
+                throw new IOException("invalid file size: " + aFileLen);
+            }
+            kv.aChannel = new RandomAccessFile(aFile, "rw").getChannel();
+            kv.aBuffer = ChunkedMapping.map(kv.aChannel, aFileLen);
+            if (kv.singleFile) {
+                kv.redoLog = RedoLog.open(new File(kv.path, kv.name + RedoLog.REDO_SUFFIX));
+            } else {
+                kv.bChannel = new RandomAccessFile(bFile, "rw").getChannel();
+                long bFileLen = kv.bChannel.size();
+                kv.bBuffer = ChunkedMapping.map(kv.bChannel, bFileLen > 0 ? bFileLen : FastKV.PAGE_SIZE);
+            }
+            if (kv.fastBuffer == null) {
+                restoreBuffer(kv);
+            }
+            LoggerHelper.info(kv, "reopen");
+        } catch (Exception e) {
+            LoggerHelper.error(kv, e);
+            toBlockingMode(kv);
+            if (kv.fastBuffer == null) {
+                tryBlockingIO(kv, aFile, bFile);
+            }
+        }
+    }
+
+    /**
+     * 从A文件恢复已释放的数据副本（见 {@link ResourceReleaser}）
+     */
+    static void restoreBuffer(FastKV kv) {
+        byte[] hb = new byte[kv.aBuffer.capacity()];
+        kv.aBuffer.rewind();
+        kv.aBuffer.get(hb, 0, kv.dataEnd);
+        kv.fastBuffer = new FastBuffer(hb);
+    }
+
     static void resetMemory(FastKV kv) {
         kv.dataEnd = FastKV.DATA_START;
         kv.checksum = 0L;
-        kv.data.clear();
+        kv.clearContainers();
+        kv.dirtySegments.clear();
         GCHelper.clearInvalid(kv);
         resetFastBuffer(kv);
     }
@@ -0,0 +1,87 @@
+package io.fastkv;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * ASYNC_BLOCKING 模式下快照写入C文件的安排：提交窗口（见 {@link FastKV.Builder#commitWindow(long, int)}）、
+ * 积压过多时的背压，以及是否有快照正在写入。
+ * <p>
+ * 方法都在持有实例的对象锁时调用；快照的复制和写入见 {@link FileHelper#takeSnapshot} 和 {@link GroupCommitter}。
+ */
+final class FlushScheduler {
+    private final FastKV kv;
+
+    // 提交窗口，delayMillis 为 0 时每次提交都立即安排写入
+    private long delayMillis;
+    private int maxPendingBytes;
+    // 是否已安排延迟写入
+    private boolean scheduled;
+    // 是否有快照正在写入C文件
+    boolean flushing;
+
+    FlushScheduler(FastKV kv) {
+        this.kv = kv;
+    }
+
+    void setWindow(long delayMillis, int maxPendingBytes) {
+        this.delayMillis = delayMillis;
+        this.maxPendingBytes = maxPendingBytes;
+    }
+
+    /**
+     * 是否开启了提交窗口（见 {@link #schedule()}）
+     */
+    boolean isWindowCommit() {
+        return delayMillis > 0 && kv.writingMode == FastKV.ASYNC_BLOCKING && kv.journal == null;
+    }
+
+    /**
+     * 在提交窗口内合并写入：第一次修改后等待 delayMillis 再写入，期间的修改由同一次写入完成；
+     * 累计修改超过 maxPendingBytes 时立即安排写入（背压见 {@link #awaitFlush()}）。
+     */
+    void schedule() {
+        if (kv.pendingBytes >= maxPendingBytes) {
+            flushNow();
+        } else if (!scheduled) {
+            scheduled = true;
+            FastKVConfig.getScheduler().schedule(() -> {
+                synchronized (kv) {
+                    flushIfScheduled();
+                }
+            }, delayMillis, TimeUnit.MILLISECONDS);
+        }
+    }
+
+    /**
+     * 立即执行已安排的延迟写入（force() 和 close() 时调用）
+     */
+    void flushIfScheduled() {
+        if (scheduled) {
+            flushNow();
+        }
+    }
+
+    private void flushNow() {
+        scheduled = false;
+        kv.submitFlush();
+    }
+
+    /**
+     * 提交窗口的背压：积压的修改超过 maxPendingBytes 且上一次写入还未完成时，阻塞写入线程直至其完成
+     * （快照写入结束时由 {@link FileHelper#finishSnapshot} 唤醒）。
+     * <p>
+     * 只在写入方法的入口（修改任何状态之前）调用：wait() 会释放对象锁，
+     * 若在修改过程中等待，其他线程会看到（甚至修改）写了一半的数据。
+     * 批量写入期间（关闭了自动提交）不调用，积压的修改在 commit() 时一起写入。
+     */
+    void awaitFlush() {
+        while (isWindowCommit() && flushing && kv.pendingBytes >= maxPendingBytes && !kv.closed) {
+            try {
+                kv.wait(delayMillis);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            }
+        }
+    }
+}
@@ -0,0 +1,535 @@
+package io.fastkv;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+
+import io.fastkv.Container.BaseContainer;
+import io.fastkv.Container.VarContainer;
+
+/**
+ * 垃圾回收辅助类，使用扩展方法模式处理FastKV的内存管理和垃圾回收。
+ *
+ * <h2>GC执行策略</h2>
+ * 
+ * <h3>触发条件（双重阈值机制）</h3>
+ * FastKV使用双重阈值来决定何时触发垃圾回收：
+ * <ul>
+ * <li><b>字节阈值</b>：当无效数据达到8KB时触发</li>
+ * <li><b>键数量阈值</b>：当无效键数量达到100个时触发</li>
+ * </ul>
+ * 满足任一条件即触发GC，确保在数据碎片化严重时及时清理。
+ * 
+ * <h3>GC执行流程</h3>
+ * <ol>
+ * <li><b>合并无效段</b>：将相邻的无效内存段合并，减少后续处理复杂度</li>
+ * <li><b>数据压缩</b>：将有效数据向前移动，填补无效数据留下的空隙</li>
+ * <li><b>偏移量更新</b>：更新所有Container对象的内存偏移量</li>
+ * <li><b>校验和重算</b>：根据压缩范围选择增量或全量重算校验和</li>
+ * <li><b>缓冲区同步</b>：将压缩后的数据同步到A/B文件（非阻塞模式）</li>
+ * <li><b>缓冲区截断</b>：如果空闲空间过大，截断缓冲区以节省内存</li>
+ * </ol>
+ * 
+ * <h3>内存管理策略</h3>
+ * <ul>
+ * <li><b>预防式GC</b>：在空间不足时，优先尝试GC而非直接扩容</li>
+ * <li><b>智能扩容</b>：只有在GC后仍空间不足时才扩容缓冲区</li>
+ * <li><b>自适应截断</b>：GC后如果空闲空间超过32KB则截断缓冲区</li>
+ * <li><b>统一阈值</b>：使用统一的100个键作为触发阈值</li>
+ * </ul>
+ * 
+ * <h3>增量整理（NON_BLOCKING 模式）</h3>
+ * 全量GC需要移动第一个空洞之后的所有数据并更新所有Container，数据量大时会使写入卡顿数毫秒。
+ * 因此 NON_BLOCKING 模式下达到阈值后改为增量整理，每次写入操作最多移动 {@link #COMPACT_STEP_BYTES} 字节：
+ * <ol>
+ * <li>将第一个空洞之后的若干条完整记录前移，空洞随之后移（与后面的空洞相邻时合并）</li>
+ * <li>在后移的空洞位置写入一条"已删除"的填充记录，保证文件随时都可以被正常解析</li>
+ * <li>解析被移动记录的key，只更新这些记录对应的Container</li>
+ * <li>只对移动的区域增量更新校验和，并同步到A/B文件（协议与普通写入相同）</li>
+ * <li>空洞移动到数据末尾时直接截掉，所有空洞都被消除后本轮整理结束</li>
+ * </ol>
+ * 空间不足时（ensureSize）仍执行全量GC；无效段过多（增量整理跟不上）时也退回全量GC。
+ * 阻塞模式每次提交都会写入全部数据，整理的耗时占比很小，仍使用全量GC。
+ * 
+ * <h3>性能优化</h3>
+ * <ul>
+ * <li><b>段合并优化</b>：减少内存拷贝次数和处理复杂度</li>
+ * <li><b>增量校验和</b>：避免不必要的全量校验和计算</li>
+ * <li><b>批量偏移更新</b>：使用数组记录偏移映射，批量更新</li>
+ * <li><b>原地压缩</b>：在同一缓冲区内完成数据移动，避免额外内存分配</li>
+ * </ul>
+ */
+class GCHelper {
+    static final String GC_FINISH = "gc finish";
+
+    static final String TRUNCATE_FINISH = "truncate finish";
+
+    // 当无效key数量超过此阈值时触发GC
+    private static final int GC_KEYS_THRESHOLD = 100;
+
+    // 当无效字节数超过此阈值时触发GC
+    private static final int GC_BYTES_THRESHOLD = 8192;
+
+    // 当缓冲区空闲空间超过此阈值时进行截断
+    private static final int TRUNCATE_THRESHOLD = 32 * 1024;
+
+    // 增量整理每一步最多移动的字节数（以完整记录为单位，单条记录超过此值时也整条移动）
+    static final int COMPACT_STEP_BYTES = 16 * 1024;
+
+    // 无效段数量超过此阈值时，说明增量整理跟不上写入，退回全量GC
+    private static final int COMPACT_MAX_SEGMENTS = 4096;
+
+    /**
+     * 合并无效段以加速GC。
+     * 将相邻的内存段合并成更大的段，减少GC时的处理复杂度。
+     * 
+     * @param invalids 无效段列表，会被就地修改
+     */
+    static void mergeInvalids(ArrayList<Segment> invalids) {
+        if (invalids.isEmpty()) {
+            return;
+        }
+        
+        Collections.sort(invalids);
+        int index = 0;
+        Segment p = invalids.get(0);
+        int n = invalids.size();
+        
+        for (int i = 1; i < n; i++) {
+            Segment q = invalids.get(i);
+            if (q.start == p.end) {
+                // 相邻段，合并
+                p.end = q.end;
+            } else {
+                // 不相邻，保留当前段
+                index++;
+                if (index != i) {
+                    invalids.set(index, q);
+                }
+                p = q;
+            }
+        }
+        
+        // 清理多余的段
+        index++;
+        if (n > index) {
+            invalids.subList(index, n).clear();
+        }
+    }
+    
+    /**
+     * 执行垃圾回收 
+     * 核心流程：合并无效段 -> 数据压缩 -> 偏移量更新 -> 校验和重算 -> 文件同步
+     *
+     * @param kv FastKV实例
+     * @param allocate 需要分配的空间大小
+     */
+    static void gc(FastKV kv, int allocate) {
+        mergeInvalids(kv.invalids);
+
+        final Segment head = kv.invalids.get(0);
+        final int gcStart = head.start;
+        final int newDataEnd = kv.dataEnd - kv.invalidBytes;
+        final int newDataSize = newDataEnd - FastKV.DATA_START;
+        final int gcUpdateSize = newDataEnd - gcStart;
+        final int gcSize = kv.dataEnd - gcStart;
+        final boolean fullChecksum = newDataSize < gcSize + gcUpdateSize;
+        if (!fullChecksum) {
+            kv.checksum ^= kv.fastBuffer.getChecksum(gcStart, gcSize);
+        }
+        // 压缩并记录偏移
+        int n = kv.invalids.size();
+        final int remain = kv.dataEnd - kv.invalids.get(n - 1).end;
+        int shiftCount = (remain > 0) ? n : n - 1;
+        int[] src = new int[shiftCount];
+        int[] shift = new int[shiftCount];
+        int desPos = head.start;
+        int srcPos = head.end;
+        for (int i = 1; i < n; i++) {
+            Segment q = kv.invalids.get(i);
+            int size = q.start - srcPos;
+            System.arraycopy(kv.fastBuffer.hb, srcPos, kv.fastBuffer.hb, desPos, size);
+            int index = i - 1;
+            src[index] = srcPos;
+            shift[index] = srcPos - desPos;
+            desPos += size;
+            srcPos = q.end;
+        }
+        if (remain > 0) {
+            System.arraycopy(kv.fastBuffer.hb, srcPos, kv.fastBuffer.hb, desPos, remain);
+            int index = n - 1;
+            src[index] = srcPos;
+            shift[index] = srcPos - desPos;
+        }
+        clearInvalid(kv);
+
+        if (fullChecksum) {
+            kv.checksum = kv.fastBuffer.getChecksum(FastKV.DATA_START, newDataEnd - FastKV.DATA_START);
+        } else {
+            kv.checksum ^= kv.fastBuffer.getChecksum(gcStart, newDataEnd - gcStart);
+        }
+        kv.dataEnd = newDataEnd;
+
+        updateBuffer(kv, gcStart, allocate, gcUpdateSize);
+
+        updateOffset(kv, gcStart, src, shift);
+
+        LoggerHelper.info(kv, GC_FINISH);
+    }
+
+    /**
+     * 更新容器偏移量
+     * 使用二分查找确定每个容器的偏移量调整幅度
+     */
+    private static void updateOffset(FastKV kv, int gcStart, int[] srcArray, int[] shiftArray) {
+        Collection<BaseContainer> values = kv.data.values();
+        for (BaseContainer c : values) {
+            if (c.offset > gcStart) {
+                int index = Utils.binarySearch(srcArray, c.offset);
+                int shift = shiftArray[index];
+                c.offset -= shift;
+                if (c.getType() >= DataType.STRING) {
+                    ((VarContainer) c).start -= shift;
+                }
+            }
+        }
+        if (kv.primitiveIndex != null) {
+            kv.primitiveIndex.shift(gcStart, srcArray, shiftArray);
+        }
+    }
+
+    /**
+     * 更新缓冲区
+     * 同步数据到A/B文件，根据需要截断缓冲区
+     */
+    private static void updateBuffer(FastKV kv, int gcStart, int allocate, int gcUpdateSize) {
+        syncRegion(kv, gcStart, gcUpdateSize);
+        // 批量写入期间不截断文件，否则会截掉A/B文件中尚未提交的旧数据，提交之后再检查
+        if (!kv.isBatchWriting()) {
+            checkTruncate(kv, allocate);
+        }
+    }
+
+    /**
+     * 将 [start, start + size) 区域和数据头同步到文件。
+     * NON_BLOCKING 模式下先写A文件（写入期间 dataLen 标记为 -1），再写B文件；单文件模式下经重做日志写入A文件；
+     * 批量写入期间只记录脏数据段；阻塞模式下只更新内存中的数据头。
+     */
+    private static void syncRegion(FastKV kv, int start, int size) {
+        kv.addPendingBytes(size);
+        if (kv.isTrackingDirty()) {
+            kv.markDirty(start, start + size);
+            return;
+        }
+        if (kv.redoLog != null) {
+            kv.redoLog.add(start, start + size);
+            kv.redoLog.commit(kv);
+            return;
+        }
+        int packedSize = FileHelper.packSize(kv.dataEnd - FastKV.DATA_START, kv.cipher != null);
+        if (kv.writingMode == FastKV.NON_BLOCKING) {
+            kv.aBuffer.putInt(0, -1);
+            kv.aBuffer.putLong(4, kv.checksum);
+            kv.aBuffer.position(start);
+            kv.aBuffer.put(kv.fastBuffer.hb, start, size);
+            kv.aBuffer.putInt(0, packedSize);
+
+            kv.bBuffer.putInt(0, packedSize);
+            kv.bBuffer.putLong(4, kv.checksum);
+            kv.bBuffer.position(start);
+            kv.bBuffer.put(kv.fastBuffer.hb, start, size);
+        } else {
+            kv.fastBuffer.putInt(0, packedSize);
+            kv.fastBuffer.putLong(4, kv.checksum);
+        }
+    }
+
+    /**
+     * 如果空闲空间超过阈值，则截断缓冲区
+     */
+    static void checkTruncate(FastKV kv, int allocate) {
+        int expectedEnd = kv.dataEnd + allocate;
+        if (kv.fastBuffer.hb.length - expectedEnd > TRUNCATE_THRESHOLD) {
+            truncate(kv, expectedEnd);
+        }
+    }
+
+    /**
+     * 截断缓冲区
+     * 在GC后如果空闲空间过大则收缩缓冲区以节省内存
+     */
+    private static void truncate(FastKV kv, int expectedEnd) {
+        // 至少保留一页空间
+        int newCapacity = FileHelper.getNewCapacity(FastKV.PAGE_SIZE, expectedEnd + FastKV.PAGE_SIZE);
+        if (newCapacity >= kv.fastBuffer.hb.length) {
+            return;
+        }
+        byte[] bytes = new byte[newCapacity];
+        System.arraycopy(kv.fastBuffer.hb, 0, bytes, 0, kv.dataEnd);
+        kv.fastBuffer.hb = bytes;
+        if (kv.writingMode == FastKV.NON_BLOCKING) {
+            ChunkedMapping newABuffer = FileHelper.truncateAndRemap(kv.aChannel, newCapacity);
+            ChunkedMapping newBBuffer = kv.singleFile ? null : FileHelper.truncateAndRemap(kv.bChannel, newCapacity);
+            if (newABuffer == null || (newBBuffer == null && !kv.singleFile)) {
+                LoggerHelper.error(kv, new Exception(FileHelper.MAP_FAILED));
+                FileHelper.toBlockingMode(kv);
+            } else {
+                kv.aBuffer = newABuffer;
+                kv.bBuffer = newBBuffer;
+            }
+        }
+        LoggerHelper.info(kv, TRUNCATE_FINISH);
+    }
+
+    /**
+     * 确保缓冲区大小
+     * 空间不足时优先尝试GC，仍不足则扩容
+     *
+     * @param kv FastKV实例
+     * @param allocate 需要分配的空间大小
+     */
+    static void ensureSize(FastKV kv, int allocate) {
+        int capacity = kv.fastBuffer.hb.length;
+        int expected = kv.dataEnd + allocate;
+        if (expected >= capacity) {
+            if (kv.invalidBytes > allocate && kv.invalidBytes > GC_BYTES_THRESHOLD) {
+                gc(kv, allocate);
+            } else {
+                int newCapacity = FileHelper.getNewCapacity(capacity, expected);
+                byte[] bytes = new byte[newCapacity];
+                System.arraycopy(kv.fastBuffer.hb, 0, bytes, 0, kv.dataEnd);
+                kv.fastBuffer.hb = bytes;
+                if (kv.writingMode == FastKV.NON_BLOCKING) {
+                    // 分块映射，只需映射新增的区域
+                    try {
+                        kv.aBuffer.grow(newCapacity);
+                        if (kv.bBuffer != null) {
+                            kv.bBuffer.grow(newCapacity);
+                        }
+                    } catch (IOException e) {
+                        LoggerHelper.error(kv, new Exception(FileHelper.MAP_FAILED, e));
+                        int packedSize = FileHelper.packSize(kv.dataEnd - FastKV.DATA_START, kv.cipher != null);
+                        kv.fastBuffer.putInt(0, packedSize);
+                        kv.fastBuffer.putLong(4, kv.checksum);
+                        FileHelper.toBlockingMode(kv);
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * 检查是否需要垃圾回收
+     * 基于双重阈值策略判断是否触发GC
+     *
+     * @param kv FastKV实例
+     */
+    static void checkGC(FastKV kv) {
+        boolean reachThreshold = kv.invalidBytes >= GC_BYTES_THRESHOLD || kv.invalids.size() >= GC_KEYS_THRESHOLD;
+        if (kv.writingMode != FastKV.NON_BLOCKING) {
+            if (reachThreshold) {
+                gc(kv, 0);
+            }
+            return;
+        }
+        if (!kv.compacting) {
+            if (!reachThreshold) {
+                return;
+            }
+            kv.compacting = true;
+        }
+        if (kv.invalids.size() >= COMPACT_MAX_SEGMENTS) {
+            gc(kv, 0);
+        } else {
+            compact(kv, COMPACT_STEP_BYTES);
+        }
+    }
+
+    /**
+     * 增量整理：将第一个空洞向后滑动，最多移动 budget 字节的有效数据。
+     * 所有空洞都被消除后，本轮整理结束。
+     *
+     * @param kv     FastKV实例
+     * @param budget 本次最多移动的字节数
+     */
+    static void compact(FastKV kv, int budget) {
+        ArrayList<Segment> invalids = kv.invalids;
+        if (invalids.isEmpty()) {
+            kv.compacting = false;
+            return;
+        }
+        mergeInvalids(invalids);
+        FastBuffer buffer = kv.fastBuffer;
+        byte[] hb = buffer.hb;
+        int n = invalids.size();
+        Segment hole = invalids.get(0);
+        int nextIndex = 1;
+        boolean reachEnd = false;
+        // 每一步修改的区域都从上一步空洞的新位置开始，所以整个过程的修改区域是连续的，最后一次性同步
+        final int syncStart = hole.start;
+        int syncEnd = syncStart;
+        while (budget > 0) {
+            final int start = hole.start;
+            final int holeSize = hole.end - start;
+            Segment next = nextIndex < n ? invalids.get(nextIndex) : null;
+            int liveEnd = next != null ? next.start : kv.dataEnd;
+
+            // 选取空洞之后的若干条完整记录
+            int p = hole.end;
+            while (p < liveEnd && p - hole.end < budget) {
+                p += getRecordSize(hb, p);
+            }
+            final int moveSize = p - hole.end;
+            budget -= moveSize;
+
+            if (next == null && p == kv.dataEnd) {
+                // 空洞将到达数据末尾，移动后直接截掉
+                kv.checksum ^= buffer.getChecksum(start, kv.dataEnd - start);
+                System.arraycopy(hb, hole.end, hb, start, moveSize);
+                kv.checksum ^= buffer.getChecksum(start, moveSize);
+                updateMovedOffset(kv, start, start + moveSize, holeSize);
+                kv.invalidBytes -= holeSize;
+                kv.dataEnd = start + moveSize;
+                syncEnd = Math.max(syncEnd, kv.dataEnd);
+                reachEnd = true;
+                break;
+            }
+
+            // 变化的字节只有移动后的记录和填充记录的头部，空洞中的其余字节保持不变
+            int newHoleStart = start + moveSize;
+            int changeSize = moveSize + getFillerHeadSize(holeSize);
+            kv.checksum ^= buffer.getChecksum(start, changeSize);
+            System.arraycopy(hb, hole.end, hb, start, moveSize);
+            fillHole(hb, newHoleStart, holeSize);
+            kv.checksum ^= buffer.getChecksum(start, changeSize);
+            updateMovedOffset(kv, start, newHoleStart, holeSize);
+            syncEnd = Math.max(syncEnd, start + changeSize);
+
+            hole.start = newHoleStart;
+            hole.end = p;
+            if (next != null && p == next.start) {
+                hole.end = next.end;
+                nextIndex++;
+            }
+        }
+
+        if (reachEnd) {
+            invalids.clear();
+        } else if (nextIndex > 1) {
+            invalids.subList(1, nextIndex).clear();
+        }
+        syncRegion(kv, syncStart, syncEnd - syncStart);
+
+        if (invalids.isEmpty()) {
+            kv.compacting = false;
+            LoggerHelper.info(kv, GC_FINISH);
+            if (!kv.isBatchWriting()) {
+                checkTruncate(kv, 0);
+            }
+        }
+    }
+
+    /**
+     * 获取位于 p 的记录（包括已删除的记录）的总长度
+     */
+    static int getRecordSize(byte[] hb, int p) {
+        byte type = (byte) (hb[p] & DataType.TYPE_MASK);
+        int keySize = hb[p + 1] & 0xFF;
+        int headSize = 2 + keySize;
+        if (type <= DataType.DOUBLE) {
+            return headSize + FastKV.TYPE_SIZE[type];
+        }
+        int i = p + headSize;
+        if (type >= DataType.STRING_LARGE) {
+            int valueSize = (hb[i] & 0xFF) | ((hb[i + 1] & 0xFF) << 8)
+                    | ((hb[i + 2] & 0xFF) << 16) | ((hb[i + 3]) << 24);
+            return headSize + 4 + valueSize;
+        }
+        int valueSize = (hb[i] & 0xFF) | ((hb[i + 1] & 0xFF) << 8);
+        return headSize + 2 + valueSize;
+    }
+
+    /**
+     * 更新被移动的记录所对应的Container。
+     * 记录已移动到 [start, end)，原位置在 shift 字节之后。
+     */
+    private static void updateMovedOffset(FastKV kv, int start, int end, int shift) {
+        FastBuffer buffer = kv.fastBuffer;
+        byte[] hb = buffer.hb;
+        int p = start;
+        while (p < end) {
+            int recordSize = getRecordSize(hb, p);
+            byte type = (byte) (hb[p] & DataType.TYPE_MASK);
+            int keySize = hb[p + 1] & 0xFF;
+            buffer.position = p + 2;
+            String key = buffer.getString(kv.cipher, keySize);
+            BaseContainer c = key != null ? kv.data.get(key) : null;
+            if (c != null) {
+                if (type <= DataType.DOUBLE) {
+                    if (c.offset == p + shift + 2 + keySize) {
+                        c.offset -= shift;
+                    }
+                } else {
+                    VarContainer vc = (VarContainer) c;
+                    if (vc.start == p + shift) {
+                        vc.start = p;
+                        vc.offset -= shift;
+                    }
+                }
+            } else if (key != null && type <= DataType.DOUBLE && kv.primitiveIndex != null) {
+                kv.primitiveIndex.relocate(PrimitiveIndex.hash(key), p + shift, p);
+            }
+            p += recordSize;
+        }
+    }
+
+    /**
+     * 在空洞位置写入一条已删除的记录，使文件在整理过程中仍然可以被解析，加载时这段数据会被计为无效数据。
+     * 空洞由若干条完整记录组成，所以长度至少为 4（最短的记录：boolean 类型，1 字节的 key）。
+     */
+    private static int getFillerHeadSize(int size) {
+        if (size < 5) {
+            return 4;
+        } else if (size - 5 <= 0xFFFF) {
+            return 5;
+        } else {
+            return 7;
+        }
+    }
+
+    private static void fillHole(byte[] hb, int start, int size) {
+        hb[start + 1] = 1;
+        hb[start + 2] = 0;
+        if (size < 5) {
+            // [type|keyLen|key|value]
+            hb[start] = (byte) (DataType.BOOLEAN | DataType.DELETE_MASK);
+            hb[start + 3] = 0;
+        } else if (size - 5 <= 0xFFFF) {
+            // [type|keyLen|key|len(2)|value]
+            int valueSize = size - 5;
+            hb[start] = (byte) (DataType.ARRAY | DataType.DELETE_MASK);
+            hb[start + 3] = (byte) valueSize;
+            hb[start + 4] = (byte) (valueSize >> 8);
+        } else {
+            // [type|keyLen|key|len(4)|value]
+            int valueSize = size - 7;
+            hb[start] = (byte) (DataType.ARRAY_LARGE | DataType.DELETE_MASK);
+            hb[start + 3] = (byte) valueSize;
+            hb[start + 4] = (byte) (valueSize >> 8);
+            hb[start + 5] = (byte) (valueSize >> 16);
+            hb[start + 6] = (byte) (valueSize >> 24);
+        }
+    }
+
+    static void clearInvalid(FastKV kv) {
+        kv.invalidBytes = 0;
+        kv.invalids.clear();
+        kv.compacting = false;
+    }
+
+    static void countInvalid(FastKV kv, int start, int end) {
+        kv.invalidBytes += (end - start);
+        kv.invalids.add(new Segment(start, end));
+    }
+}
\ No newline at end of file
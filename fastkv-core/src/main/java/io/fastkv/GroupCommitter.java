@@ -0,0 +1,169 @@
+package io.fastkv;
+
+import java.io.File;
+import java.io.RandomAccessFile;
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
+import java.util.List;
+
+/**
+ * ASYNC_BLOCKING 模式的组提交（见 {@link FastKVConfig#setGroupCommit(int)}）。
+ * <p>
+ * 各实例提交时只登记到待写入集合，由一个全局的任务循环处理：每次取出当前所有待写入的实例作为一个批次，
+ * <ol>
+ * <li>在各实例的对象锁内复制快照</li>
+ * <li>并行写入各自的临时文件（不 fsync）</li>
+ * <li>并行 fsync 所有临时文件</li>
+ * <li>依次将临时文件重命名为 .kvc 文件（见 {@link FileHelper#renameSnapshot}）</li>
+ * </ol>
+ * 批次执行期间到达的提交进入下一批次，同一实例在一个批次中只写入一次。
+ * 任务循环是串行的，所以同一实例的临时文件不会被并发写入。
+ */
+final class GroupCommitter {
+    private static final LinkedHashSet<FastKV> sPending = new LinkedHashSet<>();
+    private static boolean sRunning = false;
+
+    private GroupCommitter() {
+    }
+
+    static void submit(FastKV kv) {
+        synchronized (sPending) {
+            sPending.add(kv);
+            if (!sRunning) {
+                sRunning = true;
+                try {
+                    FastKVConfig.getExecutor().execute(GroupCommitter::loop);
+                } catch (Exception e) {
+                    // 执行器拒绝时由下一次提交重新启动任务循环，待写入的实例仍在集合中
+                    sRunning = false;
+                    LoggerHelper.error(kv, e);
+                }
+            }
+        }
+    }
+
+    /**
+     * 是否没有待写入或正在写入的批次
+     */
+    static boolean isIdle() {
+        synchronized (sPending) {
+            return !sRunning;
+        }
+    }
+
+    private static void loop() {
+        boolean exited = false;
+        try {
+            while (true) {
+                List<FastKV> batch;
+                synchronized (sPending) {
+                    if (sPending.isEmpty()) {
+                        sRunning = false;
+                        exited = true;
+                        return;
+                    }
+                    batch = new ArrayList<>(sPending);
+                    sPending.clear();
+                }
+                try {
+                    commit(batch);
+                } catch (Exception e) {
+                    // 本批次的快照都已在 commit() 中结束，继续处理下一批次
+                    LoggerHelper.error(batch.get(0), e);
+                }
+            }
+        } finally {
+            if (!exited) {
+                // 异常退出（例如 OutOfMemoryError）时复位，下一次提交会重新启动任务循环
+                synchronized (sPending) {
+                    sRunning = false;
+                }
+            }
+        }
+    }
+
+    private static class Item {
+        final FastKV kv;
+        final List<String> deletedFiles = new ArrayList<>();
+        int size;
+        File tmpFile;
+        RandomAccessFile accessFile;
+        // 临时文件是否已写入并同步
+        boolean success;
+        // 是否已重命名为C文件
+        boolean committed;
+
+        Item(FastKV kv) {
+            this.kv = kv;
+        }
+    }
+
+    /**
+     * 提交一个批次。已复制快照的实例无论成功与否都会调用 {@link FileHelper#finishSnapshot}，
+     * 否则其 flushing 标记不会复位，因背压等待的写入线程也不会被唤醒。
+     */
+    static void commit(List<FastKV> batch) {
+        int n = batch.size();
+        final Item[] items = new Item[n];
+        int taken = 0;
+        try {
+            while (taken < n) {
+                Item item = new Item(batch.get(taken));
+                item.size = FileHelper.takeSnapshot(item.kv, item.deletedFiles);
+                items[taken++] = item;
+            }
+            int parallelism = Math.max(FastKVConfig.sGroupCommitParallelism, 1);
+            try {
+                ParallelHelper.run(n, parallelism, index -> write(items[index]));
+                ParallelHelper.run(n, parallelism, index -> sync(items[index]));
+            } catch (Exception e) {
+                // 每个任务都自行处理异常，不会执行到这里
+                LoggerHelper.error(items[0].kv, e);
+            }
+            for (Item item : items) {
+                if (item.success) {
+                    item.committed = FileHelper.renameSnapshot(item.kv, item.tmpFile);
+                }
+            }
+        } finally {
+            for (int i = 0; i < taken; i++) {
+                Item item = items[i];
+                Utils.closeQuietly(item.accessFile);
+                FileHelper.finishSnapshot(item.kv, item.committed, item.deletedFiles);
+            }
+        }
+    }
+
+    private static void write(Item item) {
+        FastKV kv = item.kv;
+        try {
+            File tmpFile = new File(kv.path, kv.name + FileHelper.TEMP_SUFFIX);
+            if (Utils.makeFileIfNotExist(tmpFile)) {
+                RandomAccessFile accessFile = new RandomAccessFile(tmpFile, "rw");
+                item.tmpFile = tmpFile;
+                item.accessFile = accessFile;
+                accessFile.setLength(item.size);
+                accessFile.write(kv.snapshot, 0, item.size);
+                item.success = true;
+            }
+        } catch (Exception e) {
+            LoggerHelper.error(kv, e);
+        }
+    }
+
+    private static void sync(Item item) {
+        if (item.accessFile == null) {
+            return;
+        }
+        try {
+            if (item.success) {
+                item.accessFile.getFD().sync();
+            }
+        } catch (Exception e) {
+            item.success = false;
+            LoggerHelper.error(item.kv, e);
+        } finally {
+            Utils.closeQuietly(item.accessFile);
+        }
+    }
+}
@@ -0,0 +1,175 @@
+package io.fastkv;
+
+import java.io.File;
+
+import io.fastkv.Container.*;
+
+/**
+ * 索引持久化，见 {@link FastKV.Builder#persistIndex()}。
+ * <p>
+ * 索引文件（.kvi）的格式（小端）：
+ * <pre>
+ * [version(4)|dataEnd(4)|checksum(8)]                  对应的数据长度和数据校验和
+ * [capacity(4)|size(4)|hashes(4*capacity)|starts(4*capacity)]  基本类型的紧凑索引
+ * [count(4)|starts(4*count)]                           变长类型记录的起始位置
+ * [count(4)|(start(4)|end(4))*count]                   无效数据段
+ * [fileChecksum(8)]                                    以上内容的校验和
+ * </pre>
+ * 打开文件时，只有索引记录的数据长度和校验和与加载的数据一致，并且每条记录的头部都能通过校验，才会使用索引；
+ * 否则按常规流程解析全部数据。索引只在 force() 和 close() 时写入，之后的更新会使索引失效。
+ */
+class IndexHelper {
+    static final String INDEX_SUFFIX = ".kvi";
+    private static final int VERSION = 1;
+
+    /**
+     * 保存索引，需持有 FastKV 的对象锁
+     */
+    static void save(FastKV kv) {
+        PrimitiveIndex index = kv.primitiveIndex;
+        if (!kv.loaded || index == null || kv.fastBuffer == null) {
+            return;
+        }
+        int varCount = 0;
+        for (BaseContainer c : kv.data.values()) {
+            if (c.getType() <= DataType.DOUBLE) {
+                // 基本类型应当都在紧凑索引中（仅在重写加密数据的过程中不是），此时不保存
+                return;
+            }
+            varCount++;
+        }
+        int capacity = index.capacity();
+        int invalidCount = kv.invalids.size();
+        int size = 16 + 8 + 8 * capacity + 4 + 4 * varCount + 4 + 8 * invalidCount + 8;
+        FastBuffer buffer = new FastBuffer(size);
+        buffer.putInt(VERSION);
+        buffer.putInt(kv.dataEnd);
+        buffer.putLong(kv.checksum);
+        buffer.putInt(capacity);
+        buffer.putInt(index.size());
+        for (int i = 0; i < capacity; i++) {
+            buffer.putInt(index.hashAt(i));
+        }
+        for (int i = 0; i < capacity; i++) {
+            buffer.putInt(index.startAt(i));
+        }
+        buffer.putInt(varCount);
+        for (BaseContainer c : kv.data.values()) {
+            buffer.putInt(((VarContainer) c).start);
+        }
+        buffer.putInt(invalidCount);
+        for (Segment segment : kv.invalids) {
+            buffer.putInt(segment.start);
+            buffer.putInt(segment.end);
+        }
+        buffer.putLong(buffer.getChecksum(0, size - 8));
+        Utils.saveBytes(new File(kv.path, kv.name + INDEX_SUFFIX), buffer.hb);
+    }
+
+    /**
+     * 加载索引，成功时恢复紧凑索引、变长类型的容器和无效数据段。
+     * 调用时缓冲区中的数据已通过校验，且数据的加密状态与当前的加密器一致。
+     *
+     * @return 索引是否可用
+     */
+    static boolean load(FastKV kv) {
+        try {
+            byte[] bytes = Utils.getBytes(new File(kv.path, kv.name + INDEX_SUFFIX));
+            if (bytes == null || bytes.length < 40 || (bytes.length & 3) != 0) {
+                return false;
+            }
+            FastBuffer buffer = new FastBuffer(bytes);
+            int fileSize = bytes.length;
+            if (buffer.getInt() != VERSION
+                    || buffer.getInt() != kv.dataEnd
+                    || buffer.getLong() != kv.fastBuffer.getLong(4)
+                    || buffer.getLong(fileSize - 8) != buffer.getChecksum(0, fileSize - 8)) {
+                return false;
+            }
+            if (restore(kv, buffer, fileSize - 8)) {
+                return true;
+            }
+            LoggerHelper.warning(kv, new Exception("invalid index file"));
+        } catch (Exception e) {
+            LoggerHelper.warning(kv, e);
+        }
+        kv.clearContainers();
+        GCHelper.clearInvalid(kv);
+        return false;
+    }
+
+    private static boolean restore(FastKV kv, FastBuffer buffer, int end) throws Exception {
+        byte[] hb = kv.fastBuffer.hb;
+        int dataEnd = kv.dataEnd;
+        int capacity = buffer.getInt();
+        int size = buffer.getInt();
+        if (capacity <= 0 || (capacity & (capacity - 1)) != 0 || size < 0 || size >= capacity
+                || buffer.position + 8L * capacity > end) {
+            return false;
+        }
+        int[] hashes = new int[capacity];
+        int[] starts = new int[capacity];
+        for (int i = 0; i < capacity; i++) {
+            hashes[i] = buffer.getInt();
+        }
+        // 各条记录的长度之和应当正好等于数据长度，以此检查索引与数据是否匹配
+        long total = 0;
+        int count = 0;
+        for (int i = 0; i < capacity; i++) {
+            int s = buffer.getInt();
+            if (s != 0) {
+                if (s < FastKV.DATA_START || s + 2 > dataEnd) {
+                    return false;
+                }
+                byte info = hb[s];
+                if (info < DataType.BOOLEAN || info > DataType.DOUBLE) {
+                    return false;
+                }
+                total += GCHelper.getRecordSize(hb, s);
+                count++;
+            }
+            starts[i] = s;
+        }
+        if (count != size) {
+            return false;
+        }
+
+        int varCount = buffer.getInt();
+        if (varCount < 0 || buffer.position + 4L * varCount + 4 > end) {
+            return false;
+        }
+        FastBuffer dataBuffer = kv.fastBuffer;
+        for (int i = 0; i < varCount; i++) {
+            int s = buffer.getInt();
+            if (s < FastKV.DATA_START || s + 2 > dataEnd) {
+                return false;
+            }
+            byte info = hb[s];
+            if ((info & DataType.TYPE_MASK) < DataType.STRING || info < 0) {
+                return false;
+            }
+            dataBuffer.position = s;
+            DataParser.parseRecord(kv, dataBuffer, kv.cipher);
+            total += dataBuffer.position - s;
+        }
+
+        int invalidCount = buffer.getInt();
+        if (invalidCount < 0 || buffer.position + 8L * invalidCount != end) {
+            return false;
+        }
+        for (int i = 0; i < invalidCount; i++) {
+            int s = buffer.getInt();
+            int e = buffer.getInt();
+            if (s < FastKV.DATA_START || e <= s || e > dataEnd) {
+                return false;
+            }
+            GCHelper.countInvalid(kv, s, e);
+        }
+        total += kv.invalidBytes;
+        if (total != dataEnd - FastKV.DATA_START) {
+            return false;
+        }
+        kv.primitiveIndex.restore(hashes, starts, size);
+        return true;
+    }
+}
@@ -0,0 +1,139 @@
+package io.fastkv;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 实例的文件资源缓存（见 {@link FastKVConfig#setInstanceCache(int, long, long)}）。
+ * <p>
+ * 登记持有文件资源（A/B文件的通道和映射、堆内的数据副本）的 NON_BLOCKING 实例，
+ * 数量或内存超过上限时，按最后一次写入的时间从早到晚释放（见 {@link ResourceReleaser#evict(long)}），
+ * 超过空闲时间没有写入的实例也会被释放。
+ * <p>
+ * 释放后实例仍然可用：值都已解码到容器中，读取不需要文件资源；下次写入时重新打开文件（见 {@link ResourceReleaser#reopenIfEvicted()}）。
+ * <p>
+ * 释放需要获取实例的对象锁，为避免与持有其他实例对象锁的线程互相等待，释放总是在执行器中进行。
+ */
+final class InstanceCache {
+    // 持有文件资源的实例，访问需持有其自身的锁
+    static final Set<FastKV> sOpened = new LinkedHashSet<>();
+    private static boolean sTrimScheduled = false;
+    private static boolean sIdleCheckStarted = false;
+    // 同一时间只执行一次整理，避免多次整理基于同一快照重复释放
+    private static final Object sTrimLock = new Object();
+
+    private InstanceCache() {
+    }
+
+    static boolean isEnabled() {
+        return FastKVConfig.sCacheMaxInstances > 0 || FastKVConfig.sCacheMaxBytes > 0
+                || FastKVConfig.sCacheIdleMillis > 0;
+    }
+
+    /**
+     * 实例打开（或重新打开）文件之后登记
+     */
+    static void onOpen(FastKV kv) {
+        if (!isEnabled()) {
+            return;
+        }
+        boolean overLimit;
+        synchronized (sOpened) {
+            sOpened.add(kv);
+            overLimit = FastKVConfig.sCacheMaxInstances > 0 && sOpened.size() > FastKVConfig.sCacheMaxInstances
+                    || FastKVConfig.sCacheMaxBytes > 0;
+            if (!sIdleCheckStarted && FastKVConfig.sCacheIdleMillis > 0) {
+                sIdleCheckStarted = true;
+                long period = FastKVConfig.sCacheIdleMillis;
+                FastKVConfig.getScheduler().scheduleWithFixedDelay(InstanceCache::scheduleTrim,
+                        period, period, TimeUnit.MILLISECONDS);
+            }
+        }
+        if (overLimit) {
+            scheduleTrim();
+        }
+    }
+
+    static void onClose(FastKV kv) {
+        synchronized (sOpened) {
+            sOpened.remove(kv);
+        }
+    }
+
+    private static void scheduleTrim() {
+        synchronized (sOpened) {
+            if (sTrimScheduled) {
+                return;
+            }
+            sTrimScheduled = true;
+        }
+        FastKVConfig.getExecutor().execute(InstanceCache::trim);
+    }
+
+    /**
+     * 按最后一次写入的时间从早到晚检查：空闲超时的实例都释放，其余的释放到数量和内存都不超过上限为止
+     */
+    static void trim() {
+        synchronized (sTrimLock) {
+            List<FastKV> candidates;
+            synchronized (sOpened) {
+                sTrimScheduled = false;
+                candidates = new ArrayList<>(sOpened);
+            }
+            trim(candidates);
+        }
+    }
+
+    private static final class Entry {
+        final FastKV kv;
+        final long accessTime;
+
+        Entry(FastKV kv) {
+            this.kv = kv;
+            this.accessTime = kv.releaser.lastAccessTime;
+        }
+    }
+
+    private static void trim(List<FastKV> instances) {
+        // 最后一次写入的时间只是用于排序的估算值，读取时不加锁；
+        // 排序期间其他线程仍在写入，所以先复制一份，保证比较的结果前后一致
+        List<Entry> candidates = new ArrayList<>(instances.size());
+        for (FastKV kv : instances) {
+            candidates.add(new Entry(kv));
+        }
+        Collections.sort(candidates, (a, b) -> Long.compare(a.accessTime, b.accessTime));
+        int maxInstances = FastKVConfig.sCacheMaxInstances;
+        long maxBytes = FastKVConfig.sCacheMaxBytes;
+        long idleNanos = TimeUnit.MILLISECONDS.toNanos(FastKVConfig.sCacheIdleMillis);
+        int count = candidates.size();
+        long totalBytes = 0L;
+        for (Entry e : candidates) {
+            totalBytes += e.kv.releaser.residentBytes();
+        }
+        long now = System.nanoTime();
+        for (Entry e : candidates) {
+            FastKV kv = e.kv;
+            boolean idle = idleNanos > 0 && now - e.accessTime >= idleNanos;
+            boolean overLimit = (maxInstances > 0 && count > maxInstances) || (maxBytes > 0 && totalBytes > maxBytes);
+            if (!idle && !overLimit) {
+                break;
+            }
+            long bytes = kv.releaser.residentBytes();
+            // 释放的登记由 ResourceReleaser.evict() 在对象锁内移除：在这里移除的话，可能移除的是其他线程写入时重新打开后的登记
+            boolean released = kv.releaser.evict(e.accessTime);
+            // 已关闭或已降级为阻塞模式的实例不再持有A/B文件，直接移除登记
+            if (!released && (kv.closed || kv.writingMode != FastKV.NON_BLOCKING)) {
+                onClose(kv);
+                released = true;
+            }
+            if (released) {
+                count--;
+                totalBytes -= bytes;
+            }
+        }
+    }
+}
@@ -0,0 +1,77 @@
+package io.fastkv;
+
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.FutureTask;
+
+/**
+ * 已打开实例的缓存（按路径和名称），用于 {@link FastKV.Builder#build()} 和 {@link SegmentedKV}。
+ * <p>
+ * 每个 key 对应一个 FutureTask：第一个打开的线程登记并执行创建，同时打开同一实例的其他线程等待其结果，
+ * 不同 key 的创建互不阻塞（不需要全局锁）。创建失败时移除登记，下次打开时重试。
+ */
+final class InstanceRegistry<T> {
+    private final ConcurrentHashMap<String, FutureTask<T>> map = new ConcurrentHashMap<>();
+
+    /**
+     * 获取 key 对应的实例，不存在则用 factory 创建
+     */
+    T get(String key, Callable<T> factory) {
+        FutureTask<T> task = map.get(key);
+        if (task == null) {
+            FutureTask<T> newTask = new FutureTask<>(factory);
+            task = map.putIfAbsent(key, newTask);
+            if (task == null) {
+                task = newTask;
+                newTask.run();
+            }
+        }
+        try {
+            return getUninterruptibly(task);
+        } catch (ExecutionException e) {
+            map.remove(key, task);
+            Throwable cause = e.getCause();
+            if (cause instanceof RuntimeException) {
+                throw (RuntimeException) cause;
+            }
+            if (cause instanceof Error) {
+                throw (Error) cause;
+            }
+            throw new IllegalStateException(cause);
+        }
+    }
+
+    /**
+     * 移除 key 的登记（仅当登记的是 instance 时，避免误删关闭之后重新打开的实例）
+     */
+    void remove(String key, T instance) {
+        FutureTask<T> task = map.get(key);
+        if (task != null && task.isDone()) {
+            try {
+                if (task.get() == instance) {
+                    map.remove(key, task);
+                }
+            } catch (Exception ignore) {
+                // 创建失败的登记已由 get() 移除
+            }
+        }
+    }
+
+    private static <T> T getUninterruptibly(FutureTask<T> task) throws ExecutionException {
+        boolean interrupted = false;
+        try {
+            while (true) {
+                try {
+                    return task.get();
+                } catch (InterruptedException e) {
+                    interrupted = true;
+                }
+            }
+        } finally {
+            if (interrupted) {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+}
@@ -0,0 +1,403 @@
+package io.fastkv;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * 阻塞模式的增量日志，见 {@link FastKV.Builder#journal()}。
+ * <p>
+ * 默认的阻塞模式每次提交都将全部数据写入临时文件，fsync 之后重命名为 .kvc 文件，写入量与数据总量成正比。
+ * 开启日志后，提交时只将脏数据段和数据头追加到日志文件（.kvj）并 fsync；
+ * 日志的长度超过数据长度时做一次检查点：将全部数据写入 .kvc 文件，然后清空日志。
+ * 这样每次提交的写入量与修改量成正比，检查点的开销分摊到每个字节的修改上不超过一次写入。
+ * <p>
+ * 日志文件的格式（小端）：
+ * <pre>
+ * [version(4)|packedSize(4)|checksum(8)]   日志所基于的 .kvc 文件的数据头
+ * [entry]*                                 记录的格式与 {@link RedoLog} 相同
+ * </pre>
+ * 加载 .kvc 文件后，只有日志头部与其数据头一致时才重放日志
+ * （检查点写入 .kvc 之后、清空日志之前中断时，日志中的修改已包含在 .kvc 中，不一致，直接丢弃）。
+ * 重放到第一条不完整的记录为止，最后检查数据的校验和，不一致则忽略整个日志。
+ * <p>
+ * 记录在 FastKV 的对象锁内生成（{@link #add}），写文件（{@link #flush}）按顺序执行：
+ * SYNC_BLOCKING 模式下在提交时直接执行，ASYNC_BLOCKING 模式下在 applyExecutor 中执行。
+ */
+final class Journal {
+    static final String JOURNAL_SUFFIX = ".kvj";
+    private static final int VERSION = 1;
+    private static final int HEAD_SIZE = 16;
+    private static final int ENTRY_HEAD_SIZE = 20;
+    private static final int MIN_ENTRY_SIZE = ENTRY_HEAD_SIZE + 8;
+
+    // 数据较少时，日志达到此长度才做检查点，避免频繁重写 .kvc 文件
+    private static final int MIN_CHECKPOINT_SIZE = 64 * 1024;
+
+    private static final class Item {
+        // 日志记录；检查点时为全部数据（包括数据头）
+        final byte[] bytes;
+        final boolean checkpoint;
+        final List<String> deletedFiles;
+
+        Item(byte[] bytes, boolean checkpoint, List<String> deletedFiles) {
+            this.bytes = bytes;
+            this.checkpoint = checkpoint;
+            this.deletedFiles = deletedFiles;
+        }
+    }
+
+    private final File file;
+
+    // ---- 以下字段在 FastKV 的对象锁内访问 ----
+    // 日志的长度（包括尚未写入文件的记录）
+    private long length;
+    // 最后一条记录的数据头，数据头和数据都没有变化时不生成记录
+    private int lastPackedSize;
+    private long lastChecksum;
+    private boolean replayed;
+
+    // 等待写入的记录，访问需持有 pending 的锁
+    private final ArrayList<Item> pending = new ArrayList<>();
+
+    // ---- 以下字段在 Journal 的对象锁内访问（写文件）----
+    private RandomAccessFile accessFile;
+    // 写入失败后，下次提交时做检查点，使文件重新完整
+    private volatile boolean needCheckpoint;
+    private boolean closed;
+
+    Journal(File file) {
+        this.file = file;
+    }
+
+    /**
+     * 在已加载的数据（kv.fastBuffer, kv.dataEnd, kv.checksum）上重放日志，并打开日志文件以便追加（只读实例不打开）。
+     * 重放成功时更新 kv 的数据。
+     *
+     * @return 重放后的数据头中的 packedSize；没有可重放的记录时返回 -1
+     */
+    int replay(FastKV kv) {
+        replayed = true;
+        int result = -1;
+        byte[] bytes = null;
+        try {
+            bytes = Utils.getBytes(file);
+        } catch (Exception e) {
+            LoggerHelper.warning(kv, e);
+        }
+        int validEnd = 0;
+        if (bytes != null && bytes.length >= HEAD_SIZE) {
+            FastBuffer log = new FastBuffer(bytes);
+            int baseSize = FileHelper.unpackSize(log.getInt(4));
+            if (log.getInt(0) == VERSION
+                    && baseSize == kv.dataEnd - FastKV.DATA_START
+                    && log.getLong(8) == kv.checksum) {
+                validEnd = HEAD_SIZE;
+                FastBuffer data = null;
+                int packedSize = 0;
+                long checksum = 0L;
+                int p = HEAD_SIZE;
+                while (true) {
+                    int end = checkEntry(log, p);
+                    if (end < 0) {
+                        break;
+                    }
+                    if (data == null) {
+                        byte[] hb = kv.fastBuffer.hb;
+                        data = new FastBuffer(Arrays.copyOf(hb, hb.length));
+                    }
+                    packedSize = log.getInt(p + 4);
+                    checksum = log.getLong(p + 8);
+                    apply(log, p, data, FastKV.DATA_START + FileHelper.unpackSize(packedSize));
+                    p = end;
+                }
+                if (data != null) {
+                    int dataSize = FileHelper.unpackSize(packedSize);
+                    if (checksum == ParallelHelper.getChecksum(data, FastKV.DATA_START, dataSize)) {
+                        data.putInt(0, packedSize);
+                        data.putLong(4, checksum);
+                        kv.fastBuffer = data;
+                        kv.dataEnd = FastKV.DATA_START + dataSize;
+                        kv.checksum = checksum;
+                        validEnd = p;
+                        result = packedSize;
+                    } else {
+                        LoggerHelper.error(kv, new Exception("journal checksum error"));
+                        validEnd = 0;
+                    }
+                }
+            }
+        }
+        if (kv.readOnly) {
+            // 只读实例不修改日志文件
+            return result;
+        }
+        try {
+            openFile(kv, validEnd);
+        } catch (IOException e) {
+            LoggerHelper.error(kv, e);
+        }
+        return result;
+    }
+
+    boolean isReplayed() {
+        return replayed;
+    }
+
+    synchronized boolean isOpened() {
+        return accessFile != null;
+    }
+
+    /**
+     * 检查 p 处的记录是否完整有效
+     *
+     * @return 记录的结束位置，无效时返回 -1
+     */
+    private static int checkEntry(FastBuffer log, int p) {
+        byte[] bytes = log.hb;
+        if (p + MIN_ENTRY_SIZE > bytes.length) {
+            return -1;
+        }
+        int entrySize = log.getInt(p);
+        if (entrySize < MIN_ENTRY_SIZE || entrySize > bytes.length - p) {
+            return -1;
+        }
+        int end = p + entrySize;
+        // 记录的校验和是在记录起始于位置 0 时计算的，按记录在文件中的位置旋转后再比较
+        if (FileHelper.shiftCheckSum(log.getLong(end - 8), p) != log.getChecksum(p + 4, entrySize - 12)) {
+            return -1;
+        }
+        int dataSize = FileHelper.unpackSize(log.getInt(p + 4));
+        if (dataSize < 0 || dataSize >= FileHelper.DATA_SIZE_LIMIT) {
+            return -1;
+        }
+        int count = log.getInt(p + 16);
+        int q = p + ENTRY_HEAD_SIZE;
+        for (int i = 0; i < count; i++) {
+            if (q + 8 > end - 8) {
+                return -1;
+            }
+            int start = log.getInt(q);
+            int size = log.getInt(q + 4);
+            q += 8;
+            if (start < FastKV.DATA_START || size <= 0 || size > end - 8 - q
+                    || start - FastKV.DATA_START > dataSize - size) {
+                return -1;
+            }
+            q += size;
+        }
+        return q == end - 8 ? end : -1;
+    }
+
+    private static void apply(FastBuffer log, int p, FastBuffer data, int dataEnd) {
+        if (data.hb.length < dataEnd) {
+            int capacity = FileHelper.getNewCapacity(data.hb.length, dataEnd);
+            data.hb = Arrays.copyOf(data.hb, capacity);
+        }
+        int count = log.getInt(p + 16);
+        int q = p + ENTRY_HEAD_SIZE;
+        for (int i = 0; i < count; i++) {
+            int start = log.getInt(q);
+            int size = log.getInt(q + 4);
+            q += 8;
+            System.arraycopy(log.hb, q, data.hb, start, size);
+            q += size;
+        }
+    }
+
+    private void openFile(FastKV kv, int validEnd) throws IOException {
+        int packedSize = FileHelper.packSize(kv.dataEnd - FastKV.DATA_START, kv.cipher != null);
+        lastPackedSize = packedSize;
+        lastChecksum = kv.checksum;
+        synchronized (this) {
+            if (!Utils.makeFileIfNotExist(file)) {
+                throw new IOException("open journal failed");
+            }
+            accessFile = new RandomAccessFile(file, "rw");
+            if (validEnd > 0) {
+                // 截掉不完整的记录
+                accessFile.setLength(validEnd);
+                accessFile.seek(validEnd);
+                length = validEnd;
+            } else {
+                resetFile(packedSize, kv.checksum);
+                length = HEAD_SIZE;
+            }
+        }
+    }
+
+    private void resetFile(int packedSize, long checksum) throws IOException {
+        FastBuffer head = new FastBuffer(HEAD_SIZE);
+        head.putInt(VERSION);
+        head.putInt(packedSize);
+        head.putLong(checksum);
+        accessFile.setLength(0);
+        accessFile.seek(0);
+        accessFile.write(head.hb);
+        accessFile.getFD().sync();
+    }
+
+    /**
+     * 生成一条记录（脏数据段和当前的数据头），需要时再生成检查点，然后清空脏数据段。
+     * 需持有 FastKV 的对象锁，生成的记录由 {@link #flush} 写入文件。
+     *
+     * @param checkpoint 是否强制做检查点（数据被整体替换时）
+     */
+    void add(FastKV kv, boolean checkpoint) {
+        ArrayList<Segment> segments = kv.dirtySegments;
+        FileHelper.mergeDirty(segments);
+        int dataEnd = kv.dataEnd;
+        byte[] hb = kv.fastBuffer.hb;
+        int packedSize = FileHelper.packSize(dataEnd - FastKV.DATA_START, kv.cipher != null);
+
+        // GC 之后数据可能变短，超出数据长度的脏数据段不需要写入
+        int entrySize = MIN_ENTRY_SIZE;
+        int count = 0;
+        for (Segment s : segments) {
+            int end = Math.min(s.end, dataEnd);
+            if (s.start < end) {
+                entrySize += 8 + (end - s.start);
+                count++;
+            }
+        }
+        Item entry = null;
+        if (count != 0 || packedSize != lastPackedSize || kv.checksum != lastChecksum) {
+            FastBuffer e = new FastBuffer(entrySize);
+            e.putInt(entrySize);
+            e.putInt(packedSize);
+            e.putLong(kv.checksum);
+            e.putInt(count);
+            for (Segment s : segments) {
+                int end = Math.min(s.end, dataEnd);
+                if (s.start < end) {
+                    int size = end - s.start;
+                    e.putInt(s.start);
+                    e.putInt(size);
+                    System.arraycopy(hb, s.start, e.hb, e.position, size);
+                    e.position += size;
+                }
+            }
+            e.putLong(e.getChecksum(4, entrySize - 12));
+            entry = new Item(e.hb, false, null);
+            length += entrySize;
+            lastPackedSize = packedSize;
+            lastChecksum = kv.checksum;
+        }
+        segments.clear();
+
+        Item snapshot = null;
+        if (checkpoint || needCheckpoint
+                || length - HEAD_SIZE > Math.max(dataEnd, MIN_CHECKPOINT_SIZE)) {
+            needCheckpoint = false;
+            byte[] bytes = Arrays.copyOf(hb, dataEnd);
+            FastBuffer head = new FastBuffer(bytes);
+            head.putInt(packedSize);
+            head.putLong(kv.checksum);
+            snapshot = new Item(bytes, true, null);
+            length = HEAD_SIZE;
+        }
+
+        List<String> deletedFiles = null;
+        if (!kv.deletedFiles.isEmpty()) {
+            deletedFiles = new ArrayList<>(kv.deletedFiles);
+            kv.deletedFiles.clear();
+        }
+        synchronized (pending) {
+            // 先写记录再做检查点：检查点失败时，日志仍然是完整的
+            if (entry != null) {
+                pending.add(entry);
+            }
+            if (snapshot != null) {
+                pending.add(snapshot);
+            }
+            if (deletedFiles != null) {
+                pending.add(new Item(null, false, deletedFiles));
+            }
+        }
+    }
+
+    /**
+     * 按顺序写入等待中的记录和检查点，追加的记录只 fsync 一次
+     *
+     * @return 是否全部写入成功
+     */
+    synchronized boolean flush(FastKV kv) {
+        List<Item> items;
+        synchronized (pending) {
+            if (pending.isEmpty()) {
+                return true;
+            }
+            items = new ArrayList<>(pending);
+            pending.clear();
+        }
+        if (closed || accessFile == null) {
+            return false;
+        }
+        boolean success = true;
+        boolean appended = false;
+        for (Item item : items) {
+            try {
+                if (item.deletedFiles != null) {
+                    if (appended) {
+                        accessFile.getFD().sync();
+                        appended = false;
+                    }
+                    for (String name : item.deletedFiles) {
+                        FileHelper.deleteExternalFile(kv, name);
+                    }
+                } else if (item.checkpoint) {
+                    if (appended) {
+                        accessFile.getFD().sync();
+                        appended = false;
+                    }
+                    if (FileHelper.writeToCFile(kv, item.bytes, item.bytes.length)) {
+                        FastBuffer head = new FastBuffer(item.bytes);
+                        resetFile(head.getInt(0), head.getLong(4));
+                    } else {
+                        // 日志仍然是完整的，下次提交时重试
+                        needCheckpoint = true;
+                        success = false;
+                    }
+                } else {
+                    append(item.bytes);
+                    appended = true;
+                }
+            } catch (Exception e) {
+                LoggerHelper.error(kv, e);
+                needCheckpoint = true;
+                success = false;
+            }
+        }
+        if (appended) {
+            try {
+                accessFile.getFD().sync();
+            } catch (IOException e) {
+                LoggerHelper.error(kv, e);
+                needCheckpoint = true;
+                success = false;
+            }
+        }
+        return success;
+    }
+
+    private void append(byte[] bytes) throws IOException {
+        long position = accessFile.getFilePointer();
+        try {
+            accessFile.write(bytes);
+        } catch (IOException e) {
+            // 去掉写了一部分的记录，否则之后追加的记录在重放时会被忽略
+            accessFile.setLength(position);
+            accessFile.seek(position);
+            throw e;
+        }
+    }
+
+    synchronized void close() {
+        closed = true;
+        Utils.closeQuietly(accessFile);
+        accessFile = null;
+    }
+}
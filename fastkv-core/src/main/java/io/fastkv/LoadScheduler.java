@@ -0,0 +1,86 @@
+package io.fastkv;
+
+import java.util.PriorityQueue;
+
+/**
+ * 加载调度器（见 {@link FastKVConfig#setLoadConcurrency(int)}）。
+ * <p>
+ * 开启后，实例的加载任务按优先级（{@link FastKV.Builder#loadPriority(int)}）排队，
+ * 同一时间最多 sLoadConcurrency 个加载任务在执行器中执行，优先级相同的按提交顺序执行。
+ * 启动时打开大量实例时，关键路径上的实例不必与预加载的实例争抢线程和 I/O。
+ * <p>
+ * 读取或写入尚未开始加载的实例时，不等待排队，直接在当前线程中加载（见 FastKV.load()），
+ * 之后轮到该任务时会直接跳过。
+ */
+final class LoadScheduler {
+    private static final PriorityQueue<Task> sQueue = new PriorityQueue<>();
+    private static int sRunning = 0;
+    private static long sSequence = 0;
+
+    private LoadScheduler() {
+    }
+
+    private static final class Task implements Comparable<Task> {
+        final FastKV kv;
+        final int priority;
+        final long sequence;
+
+        Task(FastKV kv, int priority, long sequence) {
+            this.kv = kv;
+            this.priority = priority;
+            this.sequence = sequence;
+        }
+
+        @Override
+        public int compareTo(Task o) {
+            if (priority != o.priority) {
+                return priority < o.priority ? -1 : 1;
+            }
+            return Long.compare(sequence, o.sequence);
+        }
+    }
+
+    static void submit(FastKV kv, int priority) {
+        synchronized (sQueue) {
+            sQueue.add(new Task(kv, priority, sSequence++));
+        }
+        schedule();
+    }
+
+    private static void schedule() {
+        synchronized (sQueue) {
+            while (sRunning < FastKVConfig.sLoadConcurrency) {
+                Task task = sQueue.poll();
+                if (task == null) {
+                    break;
+                }
+                // 已在读写线程中加载
+                if (task.kv.startLoading) {
+                    continue;
+                }
+                sRunning++;
+                try {
+                    FastKVConfig.getExecutor().execute(() -> run(task));
+                } catch (RuntimeException e) {
+                    // 执行器拒绝任务：放回队列，等下一次提交或加载结束时再尝试；
+                    // 在此之前访问实例时仍会在访问的线程中加载
+                    sRunning--;
+                    sQueue.add(task);
+                    LoggerHelper.error(task.kv, e);
+                    break;
+                }
+            }
+        }
+    }
+
+    private static void run(Task task) {
+        try {
+            task.kv.load();
+        } finally {
+            synchronized (sQueue) {
+                sRunning--;
+            }
+            schedule();
+        }
+    }
+}
@@ -1,13 +1,16 @@
 package io.fastkv;
 
-import android.util.Log;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
 import io.fastkv.interfaces.FastLogger;
 
 /**
  * 日志辅助类 - 统一管理FastKV的日志输出
+ * 未设置 FastLogger 时使用 java.util.logging 输出（Android 上会转发到 logcat）。
  */
 class LoggerHelper {
-    private static final String TAG = "FastKV";
+    private static final Logger LOG = Logger.getLogger("FastKV");
 
     /**
      * 记录错误信息
@@ -17,7 +20,7 @@ class LoggerHelper {
         if (logger != null) {
             logger.e(kv.name, new Exception(message));
         } else {
-            Log.e(TAG, kv.name + " " + message);
+            LOG.severe(kv.name + " " + message);
         }
     }
     
@@ -29,7 +32,7 @@ class LoggerHelper {
         if (logger != null) {
             logger.e(kv.name, e);
         } else {
-            Log.e(TAG, kv.name, e);
+            LOG.log(Level.SEVERE, kv.name, e);
         }
     }
     
@@ -41,7 +44,7 @@ class LoggerHelper {
         if (logger != null) {
             logger.w(kv.name, e);
         } else {
-            Log.w(TAG, kv.name, e);
+            LOG.log(Level.WARNING, kv.name, e);
         }
     }
     
@@ -53,7 +56,7 @@ class LoggerHelper {
         if (logger != null) {
             logger.i(kv.name, message);
         } else {
-            Log.i(TAG, kv.name + " " + message);
+            LOG.info(kv.name + " " + message);
         }
     }
 }
@@ -0,0 +1,244 @@
+package io.fastkv;
+
+import java.io.File;
+import java.util.Map;
+
+import io.fastkv.Container.BaseContainer;
+import io.fastkv.interfaces.FastEncoder;
+
+/**
+ * 多进程模式（见 {@link FastKV.Builder#multiProcess()}）中实例与其他进程之间的同步状态。
+ * <p>
+ * 只读实例在读取之前比较修改序号（见 {@link ChangeSequence}），有更新则重新加载；
+ * 可写实例（NON_BLOCKING）在修改之前获取写入锁，若其他进程修改过数据先从A/B文件同步，修改之后递增序号。
+ * 除 {@link #checkChange()} 外，方法都在持有实例的对象锁时调用。
+ */
+final class MultiProcessSync {
+    // 其他进程持有写入锁时重试加锁的间隔（毫秒）
+    private static final long LOCK_RETRY_MILLIS = 5L;
+    private static final long OPEN_RETRY_NANOS = 1000000000L;
+
+    private final FastKV kv;
+
+    // 修改序号：可写实例每次修改后递增，其他实例据此判断数据是否有更新；未打开时为 null
+    volatile ChangeSequence sequence;
+    // 实例的容器（读取看到的数据）对应的序号
+    private volatile long loadedSequence;
+    // 可写实例的数据副本和索引对应的序号，读取时重新加载只更新容器，修改之前需要从A/B文件同步
+    private long syncedSequence;
+    // 只读实例下次尝试打开序号文件的时间（System.nanoTime）
+    private volatile long nextOpenTime;
+
+    MultiProcessSync(FastKV kv) {
+        this.kv = kv;
+    }
+
+    private ChangeSequence openSequence(boolean writable) {
+        try {
+            return ChangeSequence.open(new File(kv.path, kv.name + ChangeSequence.SEQUENCE_SUFFIX), writable);
+        } catch (Exception e) {
+            LoggerHelper.warning(kv, e);
+            return null;
+        }
+    }
+
+    /**
+     * 加载之前调用。只读实例先读取序号再加载，加载期间的修改会使序号变化，下次读取时再刷新；
+     * 可写实例加载时可能修复或转换文件，需要持有写入锁。
+     * 加载期间其他线程都要等待加载结束，所以在对象锁内阻塞等待（不能像 {@link #lock()} 那样 wait）。
+     */
+    void beforeLoad() {
+        if (kv.readOnly) {
+            sequence = openSequence(false);
+            loadedSequence = sequence != null ? sequence.get() : -1L;
+        } else if (kv.writingMode == FastKV.NON_BLOCKING) {
+            sequence = openSequence(true);
+            if (sequence != null) {
+                try {
+                    sequence.lock();
+                } catch (Exception e) {
+                    LoggerHelper.error(kv, e);
+                }
+            }
+        }
+    }
+
+    /**
+     * 加载之后调用（加载期间的文件修改已完成）
+     */
+    void afterLoad() {
+        ChangeSequence s = sequence;
+        if (kv.readOnly) {
+            if (kv.incomplete) {
+                loadedSequence = -1L;
+            }
+            return;
+        }
+        if (s == null) {
+            return;
+        }
+        if (!s.isLocked()) {
+            // 没有写入锁就修改A/B文件可能与其他进程的修改交错，降级为阻塞模式
+            FileHelper.toBlockingMode(kv);
+        } else if (kv.writingMode == FastKV.NON_BLOCKING) {
+            // 加载时可能修复或转换了文件，通知其他实例重新加载
+            onChanged();
+        }
+        s.unlock();
+    }
+
+    /**
+     * 读取之前检查序号（映射的内存，不需要系统调用），与实例的不同则重新加载（不加对象锁）。
+     * 只读实例的序号文件不存在（可写实例尚未打开）时，每秒最多尝试打开一次。
+     */
+    void checkChange() {
+        ChangeSequence s = sequence;
+        if (s == null) {
+            if (!kv.readOnly) {
+                return;
+            }
+            long now = System.nanoTime();
+            if (now - nextOpenTime < 0) {
+                return;
+            }
+            nextOpenTime = now + OPEN_RETRY_NANOS;
+            s = openSequence(false);
+            if (s == null) {
+                return;
+            }
+            synchronized (kv) {
+                if (sequence != null || kv.closed) {
+                    s.close();
+                    return;
+                }
+                sequence = s;
+                loadedSequence = -1L;
+            }
+        }
+        if (s.get() != loadedSequence) {
+            reload();
+        }
+    }
+
+    /**
+     * 修改操作是否需要写入锁：可写实例打开了序号文件，且未降级为阻塞模式
+     */
+    boolean needLock() {
+        return sequence != null && kv.writingMode == FastKV.NON_BLOCKING;
+    }
+
+    /**
+     * 修改数据之前获取写入锁。
+     * <p>
+     * 其他进程持有锁时，不在持有对象锁的情况下阻塞：加锁失败则 wait() 一段时间后重试，
+     * 等待期间对象锁被释放，读取和后台任务（同步、提交、释放文件资源等）不受影响。
+     * 加锁出错时（例如文件系统不支持文件锁）降级为阻塞模式，不会在没有锁的情况下修改A/B文件。
+     *
+     * @return 等待期间实例被关闭时返回 false
+     */
+    boolean lock() {
+        boolean interrupted = false;
+        try {
+            while (!sequence.tryLock()) {
+                try {
+                    kv.wait(LOCK_RETRY_MILLIS);
+                } catch (InterruptedException e) {
+                    // 修改不能中途放弃，记录中断状态，加锁之后恢复
+                    interrupted = true;
+                }
+                if (kv.closed) {
+                    return false;
+                }
+                if (kv.writingMode != FastKV.NON_BLOCKING) {
+                    // 等待期间其他线程的修改已将实例降级为阻塞模式，不再需要写入锁
+                    return true;
+                }
+            }
+        } catch (Exception e) {
+            LoggerHelper.error(kv, e);
+            FileHelper.toBlockingMode(kv);
+        } finally {
+            if (interrupted) {
+                Thread.currentThread().interrupt();
+            }
+        }
+        return true;
+    }
+
+    /**
+     * 获得写入锁之后调用：若序号与实例的数据副本对应的不同，说明其他进程修改过数据，先从A/B文件重新同步数据和索引
+     */
+    void syncFromFile() {
+        long seq = sequence.get();
+        if (seq != syncedSequence) {
+            FileHelper.resyncFromABFile(kv);
+            syncedSequence = seq;
+            loadedSequence = seq;
+        }
+    }
+
+    void unlock() {
+        ChangeSequence s = sequence;
+        if (s != null) {
+            s.unlock();
+        }
+    }
+
+    /**
+     * 修改已写入A/B文件之后调用：递增序号，通知其他实例
+     */
+    void onChanged() {
+        ChangeSequence s = sequence;
+        if (s != null) {
+            s.increment();
+            syncedSequence = s.get();
+            loadedSequence = syncedSequence;
+        }
+    }
+
+    /**
+     * 读取时发现其他进程修改过数据，重新加载（不获取写入锁）。
+     * 先加载到临时实例，再逐个替换容器，读取线程不会看到数据为空的中间状态（但可能看到部分 key 已更新）；
+     * 文件不完整时（其他进程正在写入）保留原有数据，下次读取时重试。
+     * <p>
+     * 可写实例只替换容器，数据副本和索引仍是旧的（syncedSequence 不变），下次修改获得写入锁之后再从A/B文件同步
+     * （见 {@link #syncFromFile()}）；此前读取只访问容器中已解码的值。
+     */
+    private void reload() {
+        synchronized (kv) {
+            long seq = sequence.get();
+            if (kv.closed || seq == loadedSequence) {
+                return;
+            }
+            //noinspection rawtypes
+            FastEncoder[] encoders = kv.encoderMap.values().toArray(new FastEncoder[0]);
+            FastKV latest = new FastKV(kv.path, kv.name, encoders, kv.cipher, kv.writingMode, FastKV.OPTION_READ_ONLY);
+            latest.load();
+            if (latest.incomplete) {
+                return;
+            }
+            Map<String, BaseContainer> data = kv.data;
+            for (Map.Entry<String, BaseContainer> entry : latest.data.entrySet()) {
+                data.put(entry.getKey(), entry.getValue());
+            }
+            for (String key : data.keySet()) {
+                if (!latest.data.containsKey(key)) {
+                    data.remove(key);
+                }
+            }
+            if (kv.readOnly) {
+                kv.dataEnd = latest.dataEnd;
+                kv.checksum = latest.checksum;
+            }
+            loadedSequence = seq;
+            LoggerHelper.info(kv, "reload data");
+        }
+    }
+
+    void close() {
+        ChangeSequence s = sequence;
+        if (s != null) {
+            s.close();
+        }
+    }
+}
@@ -0,0 +1,139 @@
+package io.fastkv;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * 加载大文件时的并行计算（校验和、记录解析）。
+ * <p>
+ * 任务被分成若干块，调用线程和 {@link FastKVConfig#getExecutor()} 中的线程一起领取并执行。
+ * 调用线程本身也参与执行，领取完所有的块之后只等待已被其他线程领取的块，
+ * 所以即使执行器繁忙（或者调用方本身就运行在执行器中），也不会因为等待未执行的任务而阻塞。
+ */
+class ParallelHelper {
+    // 数据量达到此阈值时才并行处理，数据量小时线程调度的开销大于收益（非 final，便于测试）
+    static int sThreshold = 1 << 20;
+
+    // 并行度（包括调用线程）
+    static int sParallelism = Math.min(Runtime.getRuntime().availableProcessors(), 4);
+
+    interface Task {
+        void run(int index) throws Exception;
+    }
+
+    static boolean shouldParallel(int size) {
+        return sParallelism > 1 && size >= sThreshold;
+    }
+
+    /**
+     * 执行 task(0) ... task(count - 1)，全部完成后返回；任一块失败则抛出其异常
+     */
+    static void run(final int count, final Task task) throws Exception {
+        run(count, sParallelism, task);
+    }
+
+    /**
+     * 同 {@link #run(int, Task)}，最多 parallelism 个线程（包括调用线程）同时执行
+     */
+    static void run(final int count, int parallelism, final Task task) throws Exception {
+        final AtomicInteger next = new AtomicInteger();
+        final CountDownLatch latch = new CountDownLatch(count);
+        final Exception[] error = new Exception[1];
+        Runnable worker = () -> {
+            int i;
+            while ((i = next.getAndIncrement()) < count) {
+                try {
+                    task.run(i);
+                } catch (Exception e) {
+                    synchronized (error) {
+                        if (error[0] == null) {
+                            error[0] = e;
+                        }
+                    }
+                } finally {
+                    latch.countDown();
+                }
+            }
+        };
+        int helpers = Math.min(parallelism, count) - 1;
+        for (int i = 0; i < helpers; i++) {
+            try {
+                FastKVConfig.getExecutor().execute(worker);
+            } catch (RejectedExecutionException e) {
+                // 执行器拒绝时不再添加帮手，剩余的块由调用线程执行
+                break;
+            }
+        }
+        worker.run();
+        latch.await();
+        synchronized (error) {
+            if (error[0] != null) {
+                throw error[0];
+            }
+        }
+    }
+
+    /**
+     * 比较两个数组的前 size 个字节是否相同
+     */
+    static boolean equals(final byte[] a, final byte[] b, final int size) {
+        if (!shouldParallel(size)) {
+            return rangeEquals(a, b, 0, size);
+        }
+        final int count = sParallelism;
+        final int chunk = size / count;
+        final boolean[] result = new boolean[count];
+        try {
+            run(count, index -> {
+                int from = index * chunk;
+                int to = index == count - 1 ? size : from + chunk;
+                result[index] = rangeEquals(a, b, from, to);
+            });
+        } catch (Exception e) {
+            return false;
+        }
+        for (boolean r : result) {
+            if (!r) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static boolean rangeEquals(byte[] a, byte[] b, int from, int to) {
+        for (int i = from; i < to; i++) {
+            if (a[i] != b[i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * 与 {@link FastBuffer#getChecksum(int, int)} 的结果相同。
+     * 校验和是按 8 字节异或的，只要每块的起点与 start 对齐到相同的 8 字节边界，各块的校验和异或起来就是整体的校验和。
+     */
+    static long getChecksum(final FastBuffer buffer, final int start, final int size) {
+        if (!shouldParallel(size)) {
+            return buffer.getChecksum(start, size);
+        }
+        final int count = sParallelism;
+        final int chunk = (size / count) & ~7;
+        final long[] sums = new long[count];
+        try {
+            run(count, index -> {
+                int from = start + index * chunk;
+                int len = index == count - 1 ? size - index * chunk : chunk;
+                sums[index] = buffer.getChecksum(from, len);
+            });
+        } catch (Exception e) {
+            return buffer.getChecksum(start, size);
+        }
+        long sum = 0L;
+        for (long s : sums) {
+            sum ^= s;
+        }
+        return sum;
+    }
+}
@@ -0,0 +1,215 @@
+package io.fastkv;
+
+import java.util.Arrays;
+
+import io.fastkv.interfaces.FastCipher;
+
+/**
+ * 基本类型（boolean/int/float/long/double）的紧凑索引。
+ * <p>
+ * 默认情况下，每个 key 需要一个 Map 节点和一个 Container 对象。key 的数量很多时（例如几十万个），
+ * 这些对象会占用大量堆内存并加重 GC 负担。
+ * 开启紧凑索引后，基本类型不再创建 Container，只在两个 int 数组中记录 key 的哈希值和记录的起始位置，
+ * 类型、key 和值都直接从 {@link FastBuffer#hb} 中读取。
+ * <p>
+ * 采用开放寻址（线性探测），删除时将后续元素前移，不使用墓碑标记。
+ * 有效记录的起始位置不小于 {@link FastKV#DATA_START}，所以用 0 表示空槽。
+ * <p>
+ * 此类不是线程安全的，所有访问都需要持有 FastKV 的对象锁。
+ */
+final class PrimitiveIndex {
+    private static final int MIN_CAPACITY = 16;
+
+    private int[] hashes;
+    private int[] starts;
+    private int mask;
+    private int size;
+
+    PrimitiveIndex() {
+        init(MIN_CAPACITY);
+    }
+
+    private void init(int capacity) {
+        hashes = new int[capacity];
+        starts = new int[capacity];
+        mask = capacity - 1;
+        size = 0;
+    }
+
+    static int hash(String key) {
+        int h = key.hashCode() * 0x9E3779B9;
+        return h ^ (h >>> 16);
+    }
+
+    int size() {
+        return size;
+    }
+
+    int capacity() {
+        return starts.length;
+    }
+
+    /**
+     * 返回槽位上记录的起始位置，0 表示空槽
+     */
+    int startAt(int slot) {
+        return starts[slot];
+    }
+
+    int hashAt(int slot) {
+        return hashes[slot];
+    }
+
+    /**
+     * 从持久化的索引恢复（见 IndexHelper），capacity 必须是 2 的幂
+     */
+    void restore(int[] hashes, int[] starts, int size) {
+        this.hashes = hashes;
+        this.starts = starts;
+        this.mask = starts.length - 1;
+        this.size = size;
+    }
+
+    /**
+     * 查找 key 对应的记录起始位置，找不到返回 0
+     */
+    int find(String key, byte[] hb, FastCipher cipher) {
+        int slot = findSlot(key, hb, cipher);
+        return slot < 0 ? 0 : starts[slot];
+    }
+
+    private int findSlot(String key, byte[] hb, FastCipher cipher) {
+        int h = hash(key);
+        for (int i = h & mask; ; i = (i + 1) & mask) {
+            int s = starts[i];
+            if (s == 0) {
+                return -1;
+            }
+            if (hashes[i] == h && keyEquals(hb, s, key, cipher)) {
+                return i;
+            }
+        }
+    }
+
+    /**
+     * 添加或替换 key 对应的记录位置
+     */
+    void put(String key, int start, byte[] hb, FastCipher cipher) {
+        int slot = findSlot(key, hb, cipher);
+        if (slot >= 0) {
+            starts[slot] = start;
+            return;
+        }
+        if ((size + 1) * 4 > capacity() * 3) {
+            resize(capacity() << 1);
+        }
+        insert(hash(key), start);
+        size++;
+    }
+
+    private void insert(int h, int start) {
+        int i = h & mask;
+        while (starts[i] != 0) {
+            i = (i + 1) & mask;
+        }
+        hashes[i] = h;
+        starts[i] = start;
+    }
+
+    private void resize(int capacity) {
+        int[] oldHashes = hashes;
+        int[] oldStarts = starts;
+        int oldSize = size;
+        init(capacity);
+        for (int i = 0; i < oldStarts.length; i++) {
+            if (oldStarts[i] != 0) {
+                insert(oldHashes[i], oldStarts[i]);
+            }
+        }
+        size = oldSize;
+    }
+
+    void remove(String key, byte[] hb, FastCipher cipher) {
+        int slot = findSlot(key, hb, cipher);
+        if (slot < 0) {
+            return;
+        }
+        // 将后面探测链上的元素前移，填补删除后的空位
+        int i = slot;
+        int j = slot;
+        while (true) {
+            j = (j + 1) & mask;
+            int s = starts[j];
+            if (s == 0) {
+                break;
+            }
+            int home = hashes[j] & mask;
+            // home 不在 (i, j] 区间内，说明 j 上的元素可以移动到 i
+            if (i <= j ? (home <= i || home > j) : (home <= i && home > j)) {
+                hashes[i] = hashes[j];
+                starts[i] = s;
+                i = j;
+            }
+        }
+        starts[i] = 0;
+        size--;
+    }
+
+    /**
+     * 记录从 oldStart 移动到了 newStart（增量整理时使用）。
+     * 此时缓冲区中原位置的数据已被覆盖，所以按哈希值和原位置匹配，而不比较 key。
+     */
+    void relocate(int h, int oldStart, int newStart) {
+        for (int i = h & mask; starts[i] != 0; i = (i + 1) & mask) {
+            if (starts[i] == oldStart) {
+                starts[i] = newStart;
+                return;
+            }
+        }
+    }
+
+    /**
+     * GC 之后更新记录位置，参数含义同 GCHelper.updateOffset
+     */
+    void shift(int gcStart, int[] srcArray, int[] shiftArray) {
+        for (int i = 0; i < starts.length; i++) {
+            int s = starts[i];
+            if (s > gcStart) {
+                int index = Utils.binarySearch(srcArray, s);
+                starts[i] = s - shiftArray[index];
+            }
+        }
+    }
+
+    void clear() {
+        if (capacity() > MIN_CAPACITY) {
+            init(MIN_CAPACITY);
+        } else {
+            Arrays.fill(starts, 0);
+            size = 0;
+        }
+    }
+
+    private static boolean keyEquals(byte[] hb, int start, String key, FastCipher cipher) {
+        int keySize = hb[start + 1] & 0xFF;
+        int p = start + 2;
+        if (cipher == null && key.length() == keySize) {
+            // 常见情况：key 全部为 ASCII 字符，直接逐字节比较
+            int i = 0;
+            while (i < keySize) {
+                char ch = key.charAt(i);
+                if (ch >= 0x80) {
+                    break;
+                }
+                if (hb[p + i] != (byte) ch) {
+                    return false;
+                }
+                i++;
+            }
+            if (i == keySize) {
+                return true;
+            }
+        }
+        return key.equals(new FastBuffer(hb, p).getString(cipher, keySize));
+    }
+}
@@ -0,0 +1,238 @@
+package io.fastkv;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+
+/**
+ * 单文件模式（见 {@link FastKV.Builder#singleFile()}）的重做日志。
+ * <p>
+ * 默认的 NON_BLOCKING 模式中，每次修改都要分别写入A/B两个文件，以保证任一时刻至少有一个文件是完整的。
+ * 单文件模式只保留A文件，用一个很小的重做日志文件（.kvr）防止写入中断：
+ * <ol>
+ * <li>A文件头部记录的数据长度之后的区域不在校验范围内（例如追加的新记录），直接写入A文件</li>
+ * <li>数据长度之内的修改（删除标记、原地更新、整理移动的记录）和新的数据头先写入重做日志</li>
+ * <li>再将这些修改写入A文件，写入期间A文件的 dataLen 标记为 -1</li>
+ * </ol>
+ * 加载时如果A文件无效（写入中断），则重放日志中的最后一条记录；
+ * 记录不完整则说明A文件尚未被修改，丢弃即可（已追加但未提交的数据在数据长度之外，会被忽略）。
+ * <p>
+ * 日志记录的格式（小端）：
+ * <pre>
+ * [length(4)|packedSize(4)|checksum(8)|count(4)|(offset(4)|size(4)|bytes)*count|entryChecksum(8)]
+ * </pre>
+ * length 在记录的其他部分写完之后才写入，length 为 0 表示没有有效记录。
+ * <p>
+ * 此类不是线程安全的，所有访问都需要持有 FastKV 的对象锁。
+ */
+final class RedoLog {
+    static final String REDO_SUFFIX = ".kvr";
+    private static final String REDO_FAILED = "write redo log failed";
+    private static final int HEAD_SIZE = 20;
+
+    private final FileChannel channel;
+    private MappedByteBuffer buffer;
+    private final FastBuffer entry = new FastBuffer(FastKV.PAGE_SIZE);
+
+    // 待提交的区间 [start, end)，对应 fastBuffer 中的数据
+    private int[] ranges = new int[8];
+    private int rangeCount;
+
+    private RedoLog(FileChannel channel, MappedByteBuffer buffer) {
+        this.channel = channel;
+        this.buffer = buffer;
+    }
+
+    @SuppressWarnings("resource")
+    static RedoLog open(File file) throws IOException {
+        if (!Utils.makeFileIfNotExist(file)) {
+            throw new IOException("open redo file failed");
+        }
+        RandomAccessFile accessFile = new RandomAccessFile(file, "rw");
+        try {
+            long len = accessFile.length();
+            FileChannel channel = accessFile.getChannel();
+            MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0,
+                    len >= FastKV.PAGE_SIZE ? len : FastKV.PAGE_SIZE);
+            buffer.order(ByteOrder.LITTLE_ENDIAN);
+            return new RedoLog(channel, buffer);
+        } catch (IOException e) {
+            Utils.closeQuietly(accessFile);
+            throw e;
+        }
+    }
+
+    /**
+     * 添加待提交的区间
+     */
+    void add(int start, int end) {
+        if (start >= end) {
+            return;
+        }
+        int n = rangeCount << 1;
+        if (n == ranges.length) {
+            int[] newRanges = new int[n << 1];
+            System.arraycopy(ranges, 0, newRanges, 0, n);
+            ranges = newRanges;
+        }
+        ranges[n] = start;
+        ranges[n + 1] = end;
+        rangeCount++;
+    }
+
+    /**
+     * 将待提交的区间和数据头（kv.dataEnd, kv.checksum）写入A文件。
+     * 写入日志失败时退回阻塞模式，由阻塞模式写入全部数据。
+     */
+    void commit(FastKV kv) {
+        try {
+            write(kv);
+        } catch (Exception e) {
+            LoggerHelper.error(kv, new Exception(REDO_FAILED, e));
+            kv.fastBuffer.putInt(0, FileHelper.packSize(kv.dataEnd - FastKV.DATA_START, kv.cipher != null));
+            kv.fastBuffer.putLong(4, kv.checksum);
+            FileHelper.toBlockingMode(kv);
+        } finally {
+            rangeCount = 0;
+        }
+    }
+
+    private void write(FastKV kv) throws IOException {
+        ChunkedMapping target = kv.aBuffer;
+        byte[] hb = kv.fastBuffer.hb;
+        int committedSize = target.getInt(0);
+        int committedEnd = committedSize < 0 ? FastKV.DATA_START
+                : FastKV.DATA_START + FileHelper.unpackSize(committedSize);
+
+        int n = rangeCount << 1;
+        int entrySize = HEAD_SIZE + 8;
+        int count = 0;
+        for (int i = 0; i < n; i += 2) {
+            int start = ranges[i];
+            int end = ranges[i + 1];
+            if (end > committedEnd) {
+                int p = Math.max(start, committedEnd);
+                target.position(p);
+                target.put(hb, p, end - p);
+                ranges[i + 1] = end = p;
+            }
+            if (start < end) {
+                entrySize += 8 + (end - start);
+                count++;
+            }
+        }
+
+        int packedSize = FileHelper.packSize(kv.dataEnd - FastKV.DATA_START, kv.cipher != null);
+        // 通常只有几十字节，复用缓冲区；整理数据时可能较大，临时分配，避免长期占用内存
+        FastBuffer e = entrySize <= entry.hb.length ? entry : new FastBuffer(entrySize);
+        e.position = 4;
+        e.putInt(packedSize);
+        e.putLong(kv.checksum);
+        e.putInt(count);
+        for (int i = 0; i < n; i += 2) {
+            int start = ranges[i];
+            int size = ranges[i + 1] - start;
+            if (size > 0) {
+                e.putInt(start);
+                e.putInt(size);
+                System.arraycopy(hb, start, e.hb, e.position, size);
+                e.position += size;
+            }
+        }
+        e.putLong(e.getChecksum(4, entrySize - 12));
+
+        if (buffer.capacity() < entrySize) {
+            MappedByteBuffer newBuffer = FileHelper.remapBuffer(channel,
+                    FileHelper.getNewCapacity(buffer.capacity(), entrySize));
+            if (newBuffer == null) {
+                throw new IOException(FileHelper.MAP_FAILED);
+            }
+            buffer = newBuffer;
+        }
+        buffer.putInt(0, 0);
+        buffer.position(4);
+        buffer.put(e.hb, 4, entrySize - 4);
+        buffer.putInt(0, entrySize);
+
+        target.putInt(0, -1);
+        for (int i = 0; i < n; i += 2) {
+            int start = ranges[i];
+            int size = ranges[i + 1] - start;
+            if (size > 0) {
+                target.position(start);
+                target.put(hb, start, size);
+            }
+        }
+        target.putLong(4, kv.checksum);
+        target.putInt(0, packedSize);
+    }
+
+    /**
+     * 重放日志中的最后一条记录（加载时A文件无效时调用）
+     *
+     * @return 是否有可重放的记录
+     */
+    boolean replay(ChunkedMapping target) {
+        int entrySize = buffer.getInt(0);
+        if (entrySize < HEAD_SIZE + 8 || entrySize > buffer.capacity()) {
+            return false;
+        }
+        FastBuffer e = new FastBuffer(entrySize);
+        buffer.position(0);
+        buffer.get(e.hb, 0, entrySize);
+        if (e.getLong(entrySize - 8) != e.getChecksum(4, entrySize - 12)) {
+            return false;
+        }
+        e.position = 4;
+        int packedSize = e.getInt();
+        long checksum = e.getLong();
+        int count = e.getInt();
+        int end = entrySize - 8;
+        // 先检查所有区间，确认可用后再写入
+        for (int i = 0; i < count; i++) {
+            if (e.position + 8 > end) {
+                return false;
+            }
+            int start = e.getInt();
+            int size = e.getInt();
+            if (start < FastKV.DATA_START || size <= 0 || size > end - e.position
+                    || start + size > target.capacity()) {
+                return false;
+            }
+            e.position += size;
+        }
+        if (e.position != end) {
+            return false;
+        }
+        target.putInt(0, -1);
+        e.position = HEAD_SIZE;
+        for (int i = 0; i < count; i++) {
+            int start = e.getInt();
+            int size = e.getInt();
+            target.position(start);
+            target.put(e.hb, e.position, size);
+            e.position += size;
+        }
+        target.putLong(4, checksum);
+        target.putInt(0, packedSize);
+        return true;
+    }
+
+    /**
+     * 丢弃日志中的记录（A文件被整体重写或清空时调用）
+     */
+    void reset() {
+        buffer.putInt(0, 0);
+    }
+
+    void force() {
+        buffer.force();
+    }
+
+    void close() {
+        Utils.closeQuietly(channel);
+    }
+}
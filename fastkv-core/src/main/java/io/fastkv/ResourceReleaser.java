@@ -0,0 +1,134 @@
+package io.fastkv;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * NON_BLOCKING 实例在空闲时释放内存和文件资源的状态：
+ * heapFree 模式下释放堆内的数据副本（见 {@link FastKV.Builder#heapFree()}），
+ * 开启实例缓存时由 {@link InstanceCache} 释放A/B文件的通道和映射。
+ * <p>
+ * 值都已解码到容器中，释放后读取不受影响；下次写入时（见 {@link #reopenIfEvicted()} 和 FileHelper.restoreBuffer()）恢复。
+ * 除 {@link #residentBytes()} 和 {@link #lastAccessTime} 外，访问都需持有实例的对象锁。
+ */
+final class ResourceReleaser {
+    // heapFree 模式下，最后一次写入之后空闲多久释放堆内的数据副本（非 final，便于测试）
+    static long sReleaseDelay = 5000L;
+
+    private final FastKV kv;
+
+    private boolean releaseScheduled;
+    private long lastWriteTime;
+
+    // 是否已被实例缓存释放了A/B文件的通道和映射，下次写入时重新打开
+    boolean evicted;
+    // 打开或最后一次写入的时间（System.nanoTime），仅在开启实例缓存时更新，用于实例缓存的排序
+    volatile long lastAccessTime;
+
+    ResourceReleaser(FastKV kv) {
+        this.kv = kv;
+    }
+
+    /**
+     * 加载完成之后调用：heapFree 模式下即释放数据副本，持有A/B文件时登记到实例缓存
+     */
+    void onLoaded() {
+        if (kv.heapFree) {
+            releaseBuffer();
+        }
+        if (kv.aChannel != null && InstanceCache.isEnabled()) {
+            lastAccessTime = System.nanoTime();
+            InstanceCache.onOpen(kv);
+        }
+    }
+
+    /**
+     * 修改之前调用：A/B文件已被实例缓存释放时重新打开
+     */
+    void reopenIfEvicted() {
+        // 先更新时间再登记：登记可能触发整理，不能把刚打开的实例当作最早写入的实例
+        if (InstanceCache.isEnabled()) {
+            lastAccessTime = System.nanoTime();
+        }
+        if (evicted) {
+            FileHelper.reopenABFile(kv);
+            if (kv.aChannel != null) {
+                InstanceCache.onOpen(kv);
+            }
+        }
+    }
+
+    /**
+     * 修改时调用：heapFree 模式下安排空闲检查
+     */
+    void onWrite() {
+        if (kv.heapFree) {
+            lastWriteTime = System.nanoTime();
+            if (!releaseScheduled) {
+                releaseScheduled = true;
+                FastKVConfig.getScheduler().schedule(this::checkRelease, sReleaseDelay, TimeUnit.MILLISECONDS);
+            }
+        }
+    }
+
+    void checkRelease() {
+        synchronized (kv) {
+            releaseScheduled = false;
+            long remain = sReleaseDelay - (System.nanoTime() - lastWriteTime) / 1000000L;
+            if (remain > 0) {
+                releaseScheduled = true;
+                FastKVConfig.getScheduler().schedule(this::checkRelease, remain, TimeUnit.MILLISECONDS);
+            } else {
+                releaseBuffer();
+            }
+        }
+    }
+
+    /**
+     * 释放堆内的数据副本。
+     * NON_BLOCKING 模式下每次写入都已同步到A文件，且值都已解码到容器中，读取不需要数据副本；
+     * 批量写入期间（有未同步的脏数据）或降级为阻塞模式之后不能释放。
+     */
+    private void releaseBuffer() {
+        if (kv.canRelease() && kv.aBuffer != null) {
+            kv.fastBuffer = null;
+        }
+    }
+
+    /**
+     * 释放A/B文件的通道和映射（由实例缓存调用），释放前同步到磁盘。
+     * 紧凑索引和延迟解码在读取时需要数据副本，此时保留数据副本。
+     *
+     * @param accessTime 整理排序时读取的最后一次写入的时间，之后又有写入时不释放
+     * @return 是否已释放；之后又有写入、修改进行中、批量写入期间（有未同步的脏数据）、降级为阻塞模式之后或已关闭时返回 false
+     */
+    boolean evict(long accessTime) {
+        synchronized (kv) {
+            if (!kv.loaded || evicted || !kv.canRelease() || kv.aChannel == null || lastAccessTime != accessTime) {
+                return false;
+            }
+            if (kv.persistIndex) {
+                IndexHelper.save(kv);
+            }
+            FileHelper.releaseABFile(kv);
+            if (kv.primitiveIndex == null && !kv.lazyDecode) {
+                kv.fastBuffer = null;
+            }
+            kv.pendingBytes = 0;
+            evicted = true;
+            InstanceCache.onClose(kv);
+            LoggerHelper.info(kv, "evict");
+            return true;
+        }
+    }
+
+    /**
+     * 映射和数据副本占用的字节数（估算值，不加锁）
+     */
+    long residentBytes() {
+        ChunkedMapping a = kv.aBuffer;
+        ChunkedMapping b = kv.bBuffer;
+        FastBuffer buffer = kv.fastBuffer;
+        return (a != null ? a.capacity() : 0L) + (b != null ? b.capacity() : 0L)
+                + (buffer != null ? buffer.hb.length : 0L);
+    }
+}
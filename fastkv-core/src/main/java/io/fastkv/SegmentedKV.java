@@ -0,0 +1,363 @@
+package io.fastkv;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+import java.io.File;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Set;
+
+import io.fastkv.interfaces.FastEncoder;
+import io.fastkv.interfaces.FastListener;
+
+/**
+ * 分段存储：一个逻辑上的 KV 由多个段组成，每个段是一个独立的 {@link FastKV}（各自的文件、索引和 GC）。
+ * <p>
+ * 单个 FastKV 的数据上限为 256MB（偏移量为 int），分段后总容量为 段数 × 256MB。
+ * key 按哈希值分配到固定的段，每个段只在自身碎片达到阈值时整理，不会因为其他段的更新而重写。
+ * <p>
+ * 段数在首次创建时写入 .kvs 文件，之后再打开时以文件中的段数为准（段数改变会导致 key 的分布改变）。
+ * 通过 {@link FastKV.Builder#buildSegmented(int)} 创建，各段使用 Builder 中的全部配置。
+ * <p>
+ * 注意：跨段的操作（{@link #getAll()}、{@link #putAll(Map)}、{@link #clear()}、{@link #commit()}）
+ * 在各段上分别执行，不是原子的；监听器收到的是 key 所在的段。
+ */
+public final class SegmentedKV {
+    static final String SEGMENT_SUFFIX = ".kvs";
+    private static final String SEGMENT_INFIX = "_seg";
+    static final int MAX_SEGMENTS = 256;
+    private static final InstanceRegistry<SegmentedKV> INSTANCES = new InstanceRegistry<>();
+
+    private final String key;
+    private final FastKV[] segments;
+
+    private SegmentedKV(String key, FastKV[] segments) {
+        this.key = key;
+        this.segments = segments;
+    }
+
+    static SegmentedKV open(FastKV.Builder builder, String path, String name, int count) {
+        String key = path + name;
+        return INSTANCES.get(key, () -> {
+            int n = loadSegmentCount(path, name, count);
+            FastKV[] segments = new FastKV[n];
+            for (int i = 0; i < n; i++) {
+                segments[i] = builder.buildSegment(getSegmentName(name, i));
+            }
+            return new SegmentedKV(key, segments);
+        });
+    }
+
+    static String getSegmentName(String name, int index) {
+        return name + SEGMENT_INFIX + index;
+    }
+
+    /**
+     * 读取已保存的段数，没有则保存 count。
+     * <p>
+     * .kvs 文件缺失或损坏时，以已有的段文件推断：段数不同会导致 key 的分布不同，
+     * 若已有段号超出了 count（说明之前使用了更多的段），不能静默地以 count 打开，直接抛出异常。
+     */
+    private static int loadSegmentCount(String path, String name, int count) {
+        File file = new File(path, name + SEGMENT_SUFFIX);
+        try {
+            byte[] bytes = Utils.getBytes(file);
+            if (bytes != null) {
+                if (bytes.length == 4) {
+                    int saved = new FastBuffer(bytes).getInt(0);
+                    if (saved > 0 && saved <= MAX_SEGMENTS) {
+                        return saved;
+                    }
+                }
+                Utils.logError(new Exception("invalid segment file: " + file.getPath()));
+            }
+        } catch (Exception e) {
+            Utils.logError(e);
+        }
+        int existing = findSegmentCount(path, name);
+        if (existing > count) {
+            throw new IllegalStateException("segment file of " + name + " is missing or corrupted, and "
+                    + existing + " segments exist, but open with " + count);
+        }
+        FastBuffer buffer = new FastBuffer(4);
+        buffer.putInt(count);
+        Utils.saveBytes(file, buffer.hb);
+        return count;
+    }
+
+    /**
+     * 已有的段文件（以及外部文件目录）中最大的段号加一，没有则返回 0
+     */
+    private static int findSegmentCount(String path, String name) {
+        String[] fileNames = new File(path).list();
+        if (fileNames == null) {
+            return 0;
+        }
+        String prefix = name + SEGMENT_INFIX;
+        int max = -1;
+        for (String fileName : fileNames) {
+            if (fileName.startsWith(prefix)) {
+                int end = fileName.indexOf('.', prefix.length());
+                String digits = fileName.substring(prefix.length(), end < 0 ? fileName.length() : end);
+                try {
+                    int index = Integer.parseInt(digits);
+                    if (index >= 0 && index < MAX_SEGMENTS) {
+                        max = Math.max(max, index);
+                    }
+                } catch (NumberFormatException ignore) {
+                }
+            }
+        }
+        return max + 1;
+    }
+
+    int getSegmentCount() {
+        return segments.length;
+    }
+
+    FastKV getSegment(String key) {
+        // 与 HashMap 相同的扰动，避免低位相同的 key 集中在同一段
+        int h = key.hashCode();
+        h ^= (h >>> 16);
+        return segments[(h & 0x7fffffff) % segments.length];
+    }
+
+    public boolean contains(String key) {
+        return key != null && getSegment(key).contains(key);
+    }
+
+    public boolean getBoolean(String key) {
+        return getBoolean(key, false);
+    }
+
+    public boolean getBoolean(String key, boolean defValue) {
+        return key == null ? defValue : getSegment(key).getBoolean(key, defValue);
+    }
+
+    public int getInt(String key) {
+        return getInt(key, 0);
+    }
+
+    public int getInt(String key, int defValue) {
+        return key == null ? defValue : getSegment(key).getInt(key, defValue);
+    }
+
+    public float getFloat(String key) {
+        return getFloat(key, 0f);
+    }
+
+    public float getFloat(String key, float defValue) {
+        return key == null ? defValue : getSegment(key).getFloat(key, defValue);
+    }
+
+    public long getLong(String key) {
+        return getLong(key, 0L);
+    }
+
+    public long getLong(String key, long defValue) {
+        return key == null ? defValue : getSegment(key).getLong(key, defValue);
+    }
+
+    public double getDouble(String key) {
+        return getDouble(key, 0D);
+    }
+
+    public double getDouble(String key, double defValue) {
+        return key == null ? defValue : getSegment(key).getDouble(key, defValue);
+    }
+
+    public String getString(String key) {
+        return getString(key, "");
+    }
+
+    public String getString(String key, String defValue) {
+        return key == null ? defValue : getSegment(key).getString(key, defValue);
+    }
+
+    public byte[] getArray(String key) {
+        return getArray(key, FastKV.EMPTY_ARRAY);
+    }
+
+    public byte[] getArray(String key, byte[] defValue) {
+        return key == null ? defValue : getSegment(key).getArray(key, defValue);
+    }
+
+    public <T> T getObject(String key) {
+        return key == null ? null : getSegment(key).getObject(key);
+    }
+
+    public Set<String> getStringSet(String key) {
+        return getObject(key);
+    }
+
+    @Nullable
+    public Set<String> getStringSet(String key, @Nullable Set<String> defValues) {
+        Set<String> set = getStringSet(key);
+        return set != null ? set : defValues;
+    }
+
+    public Map<String, Object> getAll() {
+        Map<String, Object> result = new HashMap<>();
+        for (FastKV segment : segments) {
+            result.putAll(segment.getAll());
+        }
+        return result;
+    }
+
+    public SegmentedKV putBoolean(String key, boolean value) {
+        if (key != null) {
+            getSegment(key).putBoolean(key, value);
+        }
+        return this;
+    }
+
+    public SegmentedKV putInt(String key, int value) {
+        if (key != null) {
+            getSegment(key).putInt(key, value);
+        }
+        return this;
+    }
+
+    public SegmentedKV putFloat(String key, float value) {
+        if (key != null) {
+            getSegment(key).putFloat(key, value);
+        }
+        return this;
+    }
+
+    public SegmentedKV putLong(String key, long value) {
+        if (key != null) {
+            getSegment(key).putLong(key, value);
+        }
+        return this;
+    }
+
+    public SegmentedKV putDouble(String key, double value) {
+        if (key != null) {
+            getSegment(key).putDouble(key, value);
+        }
+        return this;
+    }
+
+    public SegmentedKV putString(String key, String value) {
+        if (key != null) {
+            getSegment(key).putString(key, value);
+        }
+        return this;
+    }
+
+    public SegmentedKV putArray(String key, byte[] value) {
+        if (key != null) {
+            getSegment(key).putArray(key, value);
+        }
+        return this;
+    }
+
+    public <T> SegmentedKV putObject(String key, T value, FastEncoder<T> encoder) {
+        if (key != null) {
+            getSegment(key).putObject(key, value, encoder);
+        }
+        return this;
+    }
+
+    public SegmentedKV putStringSet(String key, Set<String> set) {
+        if (key != null) {
+            getSegment(key).putStringSet(key, set);
+        }
+        return this;
+    }
+
+    public SegmentedKV remove(String key) {
+        if (key != null) {
+            getSegment(key).remove(key);
+        }
+        return this;
+    }
+
+    /**
+     * 按段分组后，在每个段上分别批量保存（encoders 的类型与 {@link FastKV#putAll(Map, Map)} 保持一致）
+     */
+    @SuppressWarnings("rawtypes")
+    public void putAll(Map<String, Object> values, Map<Class, FastEncoder> encoders) {
+        Map<FastKV, Map<String, Object>> groups = new HashMap<>();
+        for (Map.Entry<String, Object> entry : values.entrySet()) {
+            String key = entry.getKey();
+            if (key == null) {
+                continue;
+            }
+            FastKV segment = getSegment(key);
+            Map<String, Object> group = groups.get(segment);
+            if (group == null) {
+                group = new HashMap<>();
+                groups.put(segment, group);
+            }
+            group.put(key, entry.getValue());
+        }
+        for (Map.Entry<FastKV, Map<String, Object>> entry : groups.entrySet()) {
+            entry.getKey().putAll(entry.getValue(), encoders);
+        }
+    }
+
+    public void putAll(Map<String, Object> values) {
+        putAll(values, null);
+    }
+
+    public SegmentedKV clear() {
+        for (FastKV segment : segments) {
+            segment.clear();
+        }
+        return this;
+    }
+
+    public void disableAutoCommit() {
+        for (FastKV segment : segments) {
+            segment.disableAutoCommit();
+        }
+    }
+
+    public boolean commit() {
+        boolean result = true;
+        for (FastKV segment : segments) {
+            result &= segment.commit();
+        }
+        return result;
+    }
+
+    public void apply() {
+        for (FastKV segment : segments) {
+            segment.apply();
+        }
+    }
+
+    public void force() {
+        for (FastKV segment : segments) {
+            segment.force();
+        }
+    }
+
+    public void registerListener(FastListener listener) {
+        for (FastKV segment : segments) {
+            segment.registerListener(listener);
+        }
+    }
+
+    public void unregisterListener(FastListener listener) {
+        for (FastKV segment : segments) {
+            segment.unregisterListener(listener);
+        }
+    }
+
+    public void close() {
+        INSTANCES.remove(key, this);
+        for (FastKV segment : segments) {
+            segment.close();
+        }
+    }
+
+    @NonNull
+    @Override
+    public String toString() {
+        return "SegmentedKV: " + key + " segments:" + segments.length;
+    }
+}
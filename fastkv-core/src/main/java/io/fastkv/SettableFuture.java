@@ -0,0 +1,79 @@
+package io.fastkv;
+
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+/**
+ * 由结果的生产方直接设置结果或异常的 Future（见 {@link FastKV.Builder#buildAsync()}）。
+ * <p>
+ * minSdk 较低的 Android 上没有 CompletableFuture，所以单独实现；只允许设置一次，之后的设置被忽略。
+ * 不支持取消：加载一旦开始就会执行完成，{@link #cancel(boolean)} 总是返回 false。
+ */
+final class SettableFuture<V> implements Future<V> {
+    private boolean done;
+    private V value;
+    private Throwable error;
+
+    synchronized void set(V value) {
+        if (!done) {
+            this.value = value;
+            done = true;
+            notifyAll();
+        }
+    }
+
+    synchronized void setException(Throwable error) {
+        if (!done) {
+            this.error = error;
+            done = true;
+            notifyAll();
+        }
+    }
+
+    @Override
+    public boolean cancel(boolean mayInterruptIfRunning) {
+        return false;
+    }
+
+    @Override
+    public boolean isCancelled() {
+        return false;
+    }
+
+    @Override
+    public synchronized boolean isDone() {
+        return done;
+    }
+
+    @Override
+    public synchronized V get() throws InterruptedException, ExecutionException {
+        while (!done) {
+            wait();
+        }
+        return getResult();
+    }
+
+    @Override
+    public synchronized V get(long timeout, TimeUnit unit)
+            throws InterruptedException, ExecutionException, TimeoutException {
+        long remain = unit.toNanos(timeout);
+        long deadline = System.nanoTime() + remain;
+        while (!done) {
+            if (remain <= 0) {
+                throw new TimeoutException();
+            }
+            TimeUnit.NANOSECONDS.timedWait(this, remain);
+            remain = deadline - System.nanoTime();
+        }
+        return getResult();
+    }
+
+    private V getResult() throws ExecutionException {
+        if (error != null) {
+            throw new ExecutionException(error);
+        }
+        return value;
+    }
+}
@@ -0,0 +1,108 @@
+package io.fastkv;
+
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * NON_BLOCKING 模式的后台同步（见 {@link SyncPolicy}）。
+ * <p>
+ * 写入线程只在修改之后（持有对象锁）登记，定时器线程只负责判断时机，msync 在 {@link FastKVConfig#getExecutor()} 中执行。
+ * 同步时调用 {@link ChunkedMapping#force()}：系统只会写回映射区域中的脏页，
+ * 所以开销与上次同步以来修改过的页面数量成正比，而不是与文件大小成正比。
+ */
+class SyncHelper {
+    /**
+     * 数据修改之后调用（持有 kv 的对象锁）
+     */
+    static void onChange(FastKV kv) {
+        SyncPolicy policy = kv.syncPolicy;
+        switch (policy.type) {
+            case SyncPolicy.TYPE_INTERVAL:
+                if (!kv.syncScheduled) {
+                    kv.syncScheduled = true;
+                    schedule(kv, policy.value);
+                }
+                break;
+            case SyncPolicy.TYPE_BYTES:
+                if (!kv.syncScheduled && kv.pendingBytes >= policy.value) {
+                    kv.syncScheduled = true;
+                    submit(kv);
+                }
+                break;
+            case SyncPolicy.TYPE_IDLE:
+                kv.lastChangeTime = System.nanoTime();
+                if (!kv.syncScheduled) {
+                    kv.syncScheduled = true;
+                    schedule(kv, policy.value);
+                }
+                break;
+            default:
+                break;
+        }
+    }
+
+    private static void schedule(FastKV kv, long delay) {
+        FastKVConfig.getScheduler().schedule(() -> onTimer(kv), delay, TimeUnit.MILLISECONDS);
+    }
+
+    private static void submit(FastKV kv) {
+        try {
+            FastKVConfig.getExecutor().execute(() -> sync(kv));
+        } catch (RejectedExecutionException e) {
+            synchronized (kv) {
+                kv.syncScheduled = false;
+            }
+            LoggerHelper.error(kv, e);
+        }
+    }
+
+    static void onTimer(FastKV kv) {
+        synchronized (kv) {
+            SyncPolicy policy = kv.syncPolicy;
+            // 等待期间策略被改为 NEVER 或实例已关闭：不再同步，复位标记以便重新设置策略后能再次安排
+            if (policy == null || kv.closed) {
+                kv.syncScheduled = false;
+                return;
+            }
+            if (policy.type == SyncPolicy.TYPE_IDLE) {
+                long remain = policy.value - (System.nanoTime() - kv.lastChangeTime) / 1000000L;
+                // 期间又有修改，顺延到最后一次修改之后
+                if (remain > 0) {
+                    schedule(kv, remain);
+                    return;
+                }
+            }
+        }
+        submit(kv);
+    }
+
+    static void sync(FastKV kv) {
+        ChunkedMapping aBuffer;
+        ChunkedMapping bBuffer;
+        RedoLog redoLog;
+        synchronized (kv) {
+            kv.syncScheduled = false;
+            if (kv.closed || kv.writingMode != FastKV.NON_BLOCKING || kv.pendingBytes == 0) {
+                return;
+            }
+            kv.pendingBytes = 0;
+            aBuffer = kv.aBuffer;
+            bBuffer = kv.bBuffer;
+            redoLog = kv.redoLog;
+        }
+        // 在锁外同步，期间的写入不受影响；扩容或降级后旧的映射仍然有效，同步旧映射也能写回其中的脏页
+        try {
+            if (redoLog != null) {
+                redoLog.force();
+            }
+            if (aBuffer != null) {
+                aBuffer.force();
+            }
+            if (bBuffer != null) {
+                bBuffer.force();
+            }
+        } catch (Exception e) {
+            LoggerHelper.error(kv, e);
+        }
+    }
+}
@@ -0,0 +1,66 @@
+package io.fastkv;
+
+import androidx.annotation.NonNull;
+
+/**
+ * NON_BLOCKING 模式的后台同步策略（见 {@link FastKV.Builder#syncPolicy(SyncPolicy)}）。
+ * <p>
+ * NON_BLOCKING 模式通过 mmap 写入数据，何时写回磁盘由系统决定，系统崩溃或断电时可能丢失最近的更新。
+ * 设置同步策略后，FastKV 在后台线程中将修改过的页面同步到磁盘（msync），以限制可能丢失的数据范围，
+ * 且不占用调用线程。
+ */
+public final class SyncPolicy {
+    static final int TYPE_NEVER = 0;
+    static final int TYPE_INTERVAL = 1;
+    static final int TYPE_BYTES = 2;
+    static final int TYPE_IDLE = 3;
+
+    /**
+     * 不主动同步（默认），完全由系统写回
+     */
+    public static final SyncPolicy NEVER = new SyncPolicy(TYPE_NEVER, 0);
+
+    final int type;
+    final long value;
+
+    private SyncPolicy(int type, long value) {
+        this.type = type;
+        this.value = value;
+    }
+
+    /**
+     * 有修改后最多 millis 毫秒内同步一次
+     */
+    public static SyncPolicy interval(long millis) {
+        if (millis <= 0) {
+            throw new IllegalArgumentException("millis must be positive");
+        }
+        return new SyncPolicy(TYPE_INTERVAL, millis);
+    }
+
+    /**
+     * 自上次同步以来修改的数据达到 bytes 字节时同步
+     */
+    public static SyncPolicy bytes(int bytes) {
+        if (bytes <= 0) {
+            throw new IllegalArgumentException("bytes must be positive");
+        }
+        return new SyncPolicy(TYPE_BYTES, bytes);
+    }
+
+    /**
+     * 连续 millis 毫秒没有修改时同步
+     */
+    public static SyncPolicy idle(long millis) {
+        if (millis <= 0) {
+            throw new IllegalArgumentException("millis must be positive");
+        }
+        return new SyncPolicy(TYPE_IDLE, millis);
+    }
+
+    @NonNull
+    @Override
+    public String toString() {
+        return "SyncPolicy{" + "type=" + type + ", value=" + value + '}';
+    }
+}
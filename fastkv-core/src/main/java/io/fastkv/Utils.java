@@ -1,7 +1,5 @@
 package io.fastkv;
 
-import android.annotation.SuppressLint;
-
 import java.io.*;
 import java.lang.reflect.Field;
 import java.lang.reflect.Method;
@@ -16,7 +14,6 @@ class Utils {
      * 获取当前系统的内存页大小
      */
     @SuppressWarnings({"rawtypes", "unchecked", "ConstantConditions"})
-    @SuppressLint("DiscouragedPrivateApi")
     static int getPageSize() {
         try {
             Class unsafeClass = Class.forName("sun.misc.Unsafe");
@@ -167,7 +164,7 @@ class Utils {
     }
 
 
-    private static void logError(Exception e) {
+    static void logError(Exception e) {
         FastLogger logger = FastKVConfig.sLogger;
         if (logger != null) {
             logger.e("FastKV", e);
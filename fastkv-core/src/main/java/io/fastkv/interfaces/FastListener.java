@@ -0,0 +1,14 @@
+package io.fastkv.interfaces;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+import io.fastkv.FastKV;
+
+public interface FastListener {
+    /**
+     * @param kv  发生变更的实例
+     * @param key 变更的 key，clear() 时为 null
+     */
+    void onChanged(@NonNull FastKV kv, @Nullable String key);
+}
@@ -0,0 +1,131 @@
+package io.fastkv;
+
+import org.junit.Assert;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.RandomAccessFile;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * ASYNC_BLOCKING 模式基于快照写入C文件的测试。
+ */
+public class AsyncSnapshotTest {
+    static String DIR;
+
+    @BeforeClass
+    public static void init() throws Exception {
+        DIR = TestUtil.makeTempDir("fastkv_snapshot_test");
+    }
+
+    @Test
+    public void testAsyncSnapshot() throws Exception {
+        String name = "test_async_snapshot";
+        File cFile = new File(DIR, name + FileHelper.C_SUFFIX);
+        final FastKV kv = new FastKV(DIR, name, null, null, FastKV.ASYNC_BLOCKING);
+        kv.clear();
+        // 关闭自动提交，只由下面的线程写入C文件
+        kv.disableAutoCommit();
+        final AtomicBoolean done = new AtomicBoolean(false);
+        final AtomicInteger writes = new AtomicInteger();
+        final AtomicInteger errors = new AtomicInteger();
+        Thread writer = new Thread(() -> {
+            while (!done.get()) {
+                try {
+                    if (FileHelper.writeSnapshotToCFile(kv)) {
+                        writes.incrementAndGet();
+                        // 写入的必须是某一时刻的完整数据
+                        FastBuffer buffer = new FastBuffer(Utils.getBytes(cFile));
+                        int dataSize = FileHelper.unpackSize(buffer.getInt(0));
+                        if (buffer.hb.length != FastKV.DATA_START + dataSize
+                                || buffer.getLong(4) != buffer.getChecksum(FastKV.DATA_START, dataSize)) {
+                            errors.incrementAndGet();
+                        }
+                    }
+                } catch (Exception e) {
+                    errors.incrementAndGet();
+                }
+            }
+        });
+        writer.start();
+        String value = TestUtil.makeString(200);
+        for (int i = 0; i < 20000; i++) {
+            kv.putString("key_" + (i % 300), value + i);
+            if (i % 3 == 0) {
+                kv.remove("key_" + ((i * 7) % 300));
+            }
+            kv.putInt("int_" + (i % 50), i);
+        }
+        done.set(true);
+        writer.join();
+        Assert.assertTrue(writes.get() > 0);
+        Assert.assertEquals(0, errors.get());
+
+        Assert.assertTrue(FileHelper.writeSnapshotToCFile(kv));
+        FastKV kv2 = new FastKV(DIR, name, null, null, FastKV.SYNC_BLOCKING);
+        Assert.assertEquals(kv.getAll(), kv2.getAll());
+    }
+
+    @Test
+    public void testClearDuringSnapshot() throws Exception {
+        String name = "test_clear_during_snapshot";
+        File cFile = new File(DIR, name + FileHelper.C_SUFFIX);
+        final FastKV kv = new FastKV(DIR, name, null, null, FastKV.ASYNC_BLOCKING);
+        kv.clear();
+        kv.disableAutoCommit();
+        kv.putString("a", "a");
+        Assert.assertTrue(FileHelper.writeSnapshotToCFile(kv));
+
+        // 复制快照之后、重命名之前执行 clear()，快照需要被丢弃
+        kv.putString("b", "b");
+        List<String> deletedFiles = new ArrayList<>();
+        int size = FileHelper.takeSnapshot(kv, deletedFiles);
+        kv.clear();
+        Assert.assertFalse(cFile.exists());
+        File tmpFile = new File(DIR, name + FileHelper.TEMP_SUFFIX);
+        try (RandomAccessFile accessFile = new RandomAccessFile(tmpFile, "rw")) {
+            accessFile.setLength(size);
+            accessFile.write(kv.snapshot, 0, size);
+        }
+        Assert.assertTrue(FileHelper.renameSnapshot(kv, tmpFile));
+        FileHelper.finishSnapshot(kv, true, deletedFiles);
+        Assert.assertFalse(cFile.exists());
+        Assert.assertFalse(tmpFile.exists());
+        Assert.assertTrue(new FastKV(DIR, name, null, null, FastKV.SYNC_BLOCKING).getAll().isEmpty());
+
+        // 之后的快照正常写入
+        kv.putString("c", "c");
+        Assert.assertTrue(FileHelper.writeSnapshotToCFile(kv));
+        Assert.assertEquals(kv.getAll(), new FastKV(DIR, name, null, null, FastKV.SYNC_BLOCKING).getAll());
+    }
+
+    @Test
+    public void testConcurrentClearAndSnapshot() throws Exception {
+        String name = "test_concurrent_clear";
+        final FastKV kv = new FastKV(DIR, name, null, null, FastKV.ASYNC_BLOCKING);
+        kv.clear();
+        kv.disableAutoCommit();
+        final AtomicBoolean done = new AtomicBoolean(false);
+        Thread writer = new Thread(() -> {
+            while (!done.get()) {
+                FileHelper.writeSnapshotToCFile(kv);
+            }
+        });
+        writer.start();
+        for (int i = 0; i < 2000; i++) {
+            kv.putInt("key_" + (i % 20), i);
+            if (i % 10 == 9) {
+                kv.clear();
+            }
+        }
+        done.set(true);
+        writer.join();
+        // 最后一次操作是 clear()，之后不再写入快照，重新加载必须为空
+        Assert.assertTrue(kv.getAll().isEmpty());
+        Assert.assertTrue(new FastKV(DIR, name, null, null, FastKV.SYNC_BLOCKING).getAll().isEmpty());
+    }
+}
@@ -0,0 +1,53 @@
+package io.fastkv;
+
+import org.junit.Assert;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+
+/**
+ * NON_BLOCKING 模式的批量写入（关闭自动提交）测试。
+ */
+public class BatchCommitTest {
+    static String DIR;
+
+    @BeforeClass
+    public static void init() throws Exception {
+        DIR = TestUtil.makeTempDir("fastkv_batch_test");
+    }
+
+    @Test
+    public void testBatchCommit() {
+        String name = "test_batch";
+        FastKV kv1 = new FastKV(DIR, name, null, null, FastKV.NON_BLOCKING);
+        kv1.clear();
+        kv1.putInt("init", 1);
+        String value = TestUtil.makeString(100);
+
+        kv1.disableAutoCommit();
+        for (int i = 0; i < 200; i++) {
+            kv1.putString("key_" + i, value);
+            kv1.putInt("int_" + i, i);
+        }
+        kv1.putInt("init", 2);
+        // 删除部分数据，使批量写入期间触发 GC
+        for (int i = 0; i < 200; i += 2) {
+            kv1.remove("key_" + i);
+        }
+        Assert.assertEquals(2, kv1.getInt("init"));
+
+        // 提交之前，文件中只有批量写入之前的数据
+        FastKV kv2 = new FastKV(DIR, name, null, null, FastKV.NON_BLOCKING);
+        Assert.assertEquals(1, kv2.getInt("init"));
+        Assert.assertFalse(kv2.contains("int_0"));
+
+        Assert.assertTrue(kv1.commit());
+        FastKV kv3 = new FastKV(DIR, name, null, null, FastKV.NON_BLOCKING);
+        Assert.assertEquals(2, kv3.getInt("init"));
+        for (int i = 0; i < 200; i++) {
+            Assert.assertEquals(i, kv3.getInt("int_" + i));
+            Assert.assertEquals((i & 1) == 0 ? "" : value, kv3.getString("key_" + i));
+        }
+        Assert.assertEquals(kv1.getAll(), kv3.getAll());
+    }
+}
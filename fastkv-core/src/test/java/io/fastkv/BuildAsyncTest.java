@@ -0,0 +1,124 @@
+package io.fastkv;
+
+import org.junit.Assert;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * 异步打开（Builder.buildAsync()）的测试。
+ */
+public class BuildAsyncTest {
+    static String DIR;
+
+    @BeforeClass
+    public static void init() throws Exception {
+        DIR = TestUtil.makeTempDir("fastkv_build_async_test");
+    }
+
+    @Test
+    public void testBuildAsync() throws Exception {
+        int n = 5;
+        for (int i = 0; i < n; i++) {
+            FastKV kv = new FastKV(DIR, "test_build_async_" + i, null, null, FastKV.NON_BLOCKING);
+            kv.putInt("index", i);
+            kv.close();
+        }
+        List<Future<FastKV>> futures = new ArrayList<>();
+        for (int i = 0; i < n; i++) {
+            futures.add(new FastKV.Builder(DIR, "test_build_async_" + i).buildAsync());
+        }
+        for (int i = 0; i < n; i++) {
+            FastKV kv = futures.get(i).get();
+            Assert.assertTrue(kv.isLoaded());
+            Assert.assertEquals(i, kv.getInt("index"));
+            Assert.assertSame(kv, new FastKV.Builder(DIR, "test_build_async_" + i).build());
+
+            // 已加载时立即执行
+            AtomicBoolean called = new AtomicBoolean(false);
+            kv.onLoaded(() -> called.set(true));
+            Assert.assertTrue(called.get());
+            kv.close();
+        }
+    }
+
+    /**
+     * 只有一个线程的执行器：打开任务不能再等待另一个提交到同一执行器的加载任务
+     */
+    @Test
+    public void testBoundedExecutor() throws Exception {
+        Executor oldExecutor = FastKVConfig.sExecutor;
+        ExecutorService executor = Executors.newFixedThreadPool(1);
+        FastKVConfig.sExecutor = executor;
+        try {
+            List<Future<FastKV>> futures = new ArrayList<>();
+            for (int i = 0; i < 3; i++) {
+                futures.add(new FastKV.Builder(DIR, "test_build_bounded_" + i).buildAsync());
+            }
+            for (Future<FastKV> future : futures) {
+                FastKV kv = future.get(10, TimeUnit.SECONDS);
+                Assert.assertTrue(kv.isLoaded());
+                kv.putInt("a", 1);
+                kv.close();
+            }
+        } finally {
+            FastKVConfig.sExecutor = oldExecutor;
+            executor.shutdown();
+        }
+    }
+
+    @Test
+    public void testRejectedExecutor() throws Exception {
+        Executor oldExecutor = FastKVConfig.sExecutor;
+        FastKVConfig.sExecutor = command -> {
+            throw new RejectedExecutionException("rejected");
+        };
+        try {
+            Future<FastKV> future = new FastKV.Builder(DIR, "test_build_rejected").buildAsync();
+            Assert.assertTrue(future.isDone());
+            try {
+                future.get(10, TimeUnit.SECONDS);
+                Assert.fail();
+            } catch (ExecutionException e) {
+                Assert.assertTrue(e.getCause() instanceof RejectedExecutionException);
+            }
+        } finally {
+            FastKVConfig.sExecutor = oldExecutor;
+        }
+    }
+
+    /**
+     * 修改操作触发加载时（持有对象锁），加载完成的回调提交到执行器中执行，执行时不持有对象锁
+     */
+    @Test
+    public void testCallbackOutsideLock() {
+        Executor oldExecutor = FastKVConfig.sExecutor;
+        List<Runnable> tasks = new ArrayList<>();
+        FastKVConfig.sExecutor = tasks::add;
+        try {
+            final FastKV kv = new FastKV(DIR, "test_build_callback", null, null, FastKV.NON_BLOCKING,
+                    0, FastKV.PRIORITY_NORMAL, true);
+            final AtomicBoolean holdsLock = new AtomicBoolean(true);
+            kv.onLoaded(() -> holdsLock.set(Thread.holdsLock(kv)));
+            Assert.assertFalse(kv.isLoaded());
+            kv.putInt("a", 1);
+            Assert.assertTrue(kv.isLoaded());
+            Assert.assertEquals(1, tasks.size());
+            tasks.remove(0).run();
+            Assert.assertFalse(holdsLock.get());
+            kv.close();
+        } finally {
+            FastKVConfig.sExecutor = oldExecutor;
+        }
+    }
+}
@@ -0,0 +1,54 @@
+package io.fastkv;
+
+import org.junit.Assert;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import java.util.Map;
+
+/**
+ * A/B文件分块映射的测试。
+ */
+public class ChunkedMappingTest {
+    static String DIR;
+
+    @BeforeClass
+    public static void init() throws Exception {
+        DIR = TestUtil.makeTempDir("fastkv_chunked_test");
+    }
+
+    @Test
+    public void testChunkedMapping() throws Exception {
+        int oldShift = ChunkedMapping.sChunkShift;
+        // 使用很小的块，使扩容、跨块读写和截断都能被覆盖
+        ChunkedMapping.sChunkShift = 12;
+        try {
+            for (boolean singleFile : new boolean[]{false, true}) {
+                String name = "test_chunked_mapping_" + singleFile;
+                int options = singleFile ? FastKV.OPTION_SINGLE_FILE : 0;
+                FastKV kv = new FastKV(DIR, name, null, null, FastKV.NON_BLOCKING, options);
+                kv.clear();
+                for (int i = 0; i < 3000; i++) {
+                    kv.putString("str_" + (i % 500), TestUtil.makeString(i % 97) + i);
+                    kv.putLong("long_" + (i % 300), i * 31L);
+                    kv.putInt("int_" + (i % 100), i);
+                    if (i % 5 == 0) {
+                        kv.remove("str_" + ((i * 3) % 500));
+                    }
+                }
+                Assert.assertTrue(kv.aBuffer.capacity() > (1 << 12));
+                Map<String, Object> all = kv.getAll();
+                FastKV kv2 = new FastKV(DIR, name, null, null, FastKV.NON_BLOCKING, options);
+                Assert.assertEquals(all, kv2.getAll());
+
+                for (int i = 0; i < 500; i++) {
+                    kv.remove("str_" + i);
+                }
+                FastKV kv3 = new FastKV(DIR, name, null, null, FastKV.NON_BLOCKING, options);
+                Assert.assertEquals(kv.getAll(), kv3.getAll());
+            }
+        } finally {
+            ChunkedMapping.sChunkShift = oldShift;
+        }
+    }
+}
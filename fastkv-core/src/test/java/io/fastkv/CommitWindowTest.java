@@ -0,0 +1,122 @@
+package io.fastkv;
+
+import org.junit.Assert;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Map;
+import java.util.concurrent.Executor;
+
+/**
+ * ASYNC_BLOCKING 模式的提交窗口和背压测试。
+ * <p>
+ * 写入任务在当前线程中执行（替换全局执行器），窗口设置得足够长使定时器不会触发，结果不依赖时序。
+ */
+public class CommitWindowTest {
+    static String DIR;
+
+    @BeforeClass
+    public static void init() throws Exception {
+        DIR = TestUtil.makeTempDir("fastkv_commit_window_test");
+    }
+
+    @Test
+    public void testCommitWindow() {
+        Executor oldExecutor = FastKVConfig.sExecutor;
+        FastKVConfig.sExecutor = Runnable::run;
+        try {
+            String name = "test_commit_window";
+            FastKV kv = new FastKV(DIR, name, null, null, FastKV.ASYNC_BLOCKING);
+            kv.setCommitWindow(60000, 1 << 20);
+            kv.clear();
+            for (int i = 0; i < 1000; i++) {
+                kv.putInt("key_" + (i % 10), i);
+            }
+            // 窗口期内尚未写入
+            FastKV reader = new FastKV(DIR, name, null, null, FastKV.SYNC_BLOCKING);
+            Assert.assertFalse(reader.contains("key_9"));
+            Assert.assertTrue(kv.pendingBytes > 0);
+
+            // force() 立即写入窗口内积压的修改
+            kv.force();
+            reader = new FastKV(DIR, name, null, null, FastKV.SYNC_BLOCKING);
+            Assert.assertEquals(999, reader.getInt("key_9"));
+            Assert.assertEquals(0, kv.pendingBytes);
+
+            // 积压超过上限时不等窗口到期，立即写入
+            kv.setCommitWindow(60000, 4096);
+            String value = TestUtil.makeString(100);
+            for (int i = 0; i < 3000; i++) {
+                kv.putString("str_" + (i % 200), value + i);
+            }
+            Assert.assertTrue(kv.pendingBytes < 4096);
+            kv.force();
+            reader = new FastKV(DIR, name, null, null, FastKV.SYNC_BLOCKING);
+            Assert.assertEquals(kv.getAll(), reader.getAll());
+        } finally {
+            FastKVConfig.sExecutor = oldExecutor;
+        }
+    }
+
+    /**
+     * 积压超过上限且上一次写入未完成时，写入线程在修改之前等待；
+     * 两个线程交替改变同一批键的类型，等待不能发生在修改的中途。
+     */
+    @Test
+    public void testBackpressure() throws Exception {
+        Executor oldExecutor = FastKVConfig.sExecutor;
+        FastKVConfig.sExecutor = Runnable::run;
+        try {
+            String name = "test_commit_backpressure";
+            final FastKV kv = new FastKV(DIR, name, null, null, FastKV.ASYNC_BLOCKING);
+            kv.setCommitWindow(60000, 256);
+            kv.clear();
+            kv.putInt("base", 1);
+
+            // 模拟一次未完成的写入，且积压已超过上限
+            synchronized (kv) {
+                kv.flushScheduler.flushing = true;
+                kv.pendingBytes = 256;
+            }
+            Thread[] threads = new Thread[2];
+            for (int t = 0; t < threads.length; t++) {
+                final int id = t;
+                threads[t] = new Thread(() -> {
+                    for (int i = 0; i < 2000; i++) {
+                        String key = "key_" + (i % 16);
+                        if ((i + id) % 2 == 0) {
+                            kv.putInt(key, i);
+                        } else {
+                            kv.putString(key, "value_" + i);
+                        }
+                        if (i % 7 == 0) {
+                            kv.remove(key);
+                        }
+                    }
+                });
+                threads[t].start();
+            }
+            for (Thread thread : threads) {
+                while (thread.getState() != Thread.State.TIMED_WAITING) {
+                    Assert.assertTrue(thread.isAlive());
+                    Thread.yield();
+                }
+            }
+            // 等待期间没有任何修改
+            Assert.assertEquals(1, kv.getAll().size());
+
+            FileHelper.finishSnapshot(kv, true, new ArrayList<>());
+            for (Thread thread : threads) {
+                thread.join();
+            }
+
+            Map<String, Object> all = kv.getAll();
+            Assert.assertTrue(FileHelper.writeSnapshotToCFile(kv));
+            FastKV reader = new FastKV(DIR, name, null, null, FastKV.SYNC_BLOCKING);
+            Assert.assertEquals(all, reader.getAll());
+        } finally {
+            FastKVConfig.sExecutor = oldExecutor;
+        }
+    }
+}
@@ -0,0 +1,58 @@
+package io.fastkv;
+
+import org.junit.Assert;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+
+/**
+ * 基本类型紧凑索引（OPTION_COMPACT_INDEX）的测试。
+ */
+public class CompactIndexTest {
+    static String DIR;
+
+    @BeforeClass
+    public static void init() throws Exception {
+        DIR = TestUtil.makeTempDir("fastkv_index_test");
+    }
+
+    @Test
+    public void testCompactIndex() {
+        CompactionTest.checkIncrementalCompaction(DIR, "test_index", null, FastKV.OPTION_COMPACT_INDEX);
+        CompactionTest.checkIncrementalCompaction(DIR, "test_index_cipher", new XorCipher(), FastKV.OPTION_COMPACT_INDEX);
+
+        String name = "test_index_types";
+        FastKV kv1 = new FastKV(DIR, name, null, null, FastKV.SYNC_BLOCKING, FastKV.OPTION_COMPACT_INDEX);
+        kv1.clear();
+        kv1.putBoolean("bool", true);
+        kv1.putInt("int", 100);
+        kv1.putFloat("float", 1.5f);
+        kv1.putLong("long", Long.MIN_VALUE);
+        kv1.putDouble("double", 2.5);
+        kv1.putInt("中文", 1);
+        kv1.putInt("int", 101);
+        Assert.assertNull(kv1.data.get("int"));
+        Assert.assertEquals(6, kv1.primitiveIndex.size());
+        Assert.assertEquals(101L, kv1.getLong("int"));
+        Assert.assertEquals("1.5", kv1.getString("float"));
+        Assert.assertEquals(1, kv1.getInt("中文"));
+
+        // 类型变更：基本类型与变长类型之间互相转换
+        kv1.putString("bool", "str");
+        kv1.putLong("str_to_long", 1L);
+        kv1.putString("str_to_long", "a");
+        kv1.putLong("str_to_long", 2L);
+        Assert.assertEquals("str", kv1.getString("bool"));
+        Assert.assertEquals(2L, kv1.getLong("str_to_long"));
+        kv1.remove("double");
+        Assert.assertFalse(kv1.contains("double"));
+
+        // 未加密的数据以加密方式打开时会重写数据，重写之后基本类型仍登记在索引中
+        FastKV kv2 = new FastKV(DIR, name, null, new XorCipher(), FastKV.SYNC_BLOCKING, FastKV.OPTION_COMPACT_INDEX);
+        Assert.assertEquals(kv1.getAll(), kv2.getAll());
+        Assert.assertEquals(5, kv2.primitiveIndex.size());
+        Assert.assertEquals(Long.MIN_VALUE, kv2.getLong("long"));
+        FastKV kv3 = new FastKV(DIR, name, null, new XorCipher(), FastKV.SYNC_BLOCKING, 0);
+        Assert.assertEquals(kv1.getAll(), kv3.getAll());
+    }
+}
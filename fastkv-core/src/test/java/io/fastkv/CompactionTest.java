@@ -0,0 +1,66 @@
+package io.fastkv;
+
+import org.junit.Assert;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Random;
+
+import io.fastkv.interfaces.FastCipher;
+
+/**
+ * NON_BLOCKING 模式的增量整理测试。
+ * <p>
+ * checkIncrementalCompaction 也用于验证其他选项（紧凑索引、延迟解码、单文件模式）下的整理过程。
+ */
+public class CompactionTest {
+    static String DIR;
+
+    @BeforeClass
+    public static void init() throws Exception {
+        DIR = TestUtil.makeTempDir("fastkv_compact_test");
+    }
+
+    @Test
+    public void testIncrementalCompaction() {
+        checkIncrementalCompaction(DIR, "test_compact", null, 0);
+        checkIncrementalCompaction(DIR, "test_compact_cipher", new XorCipher(), 0);
+    }
+
+    static void checkIncrementalCompaction(String dir, String name, FastCipher cipher, int options) {
+        FastKV kv1 = new FastKV(dir, name, null, cipher, FastKV.NON_BLOCKING, options);
+        kv1.clear();
+        Map<String, Object> expected = new HashMap<>();
+        Random random = new Random(1);
+        for (int round = 0; round < 3; round++) {
+            for (int i = 0; i < 3000; i++) {
+                String key = "key_" + random.nextInt(500);
+                int op = random.nextInt(10);
+                if (op < 3) {
+                    kv1.remove(key);
+                    expected.remove(key);
+                } else if (op < 5) {
+                    kv1.putInt(key, i);
+                    expected.put(key, i);
+                } else {
+                    // 偶尔写入超过 64K 的字符串，使空洞需要用 ARRAY_LARGE 填充
+                    int len = random.nextInt(50) == 0 ? 70000 : random.nextInt(300);
+                    String value = TestUtil.makeString(len) + i;
+                    kv1.putString(key, value);
+                    expected.put(key, value);
+                }
+                // 在整理过程中重新加载，验证每一步之后文件都是完整的
+                if (kv1.compacting && random.nextInt(100) == 0) {
+                    FastKV kv2 = new FastKV(dir, name, null, cipher, FastKV.NON_BLOCKING, options);
+                    Assert.assertEquals(expected, kv2.getAll());
+                }
+            }
+            Assert.assertEquals(expected, kv1.getAll());
+            FastKV kv3 = new FastKV(dir, name, null, cipher, FastKV.NON_BLOCKING, options);
+            Assert.assertEquals(expected, kv3.getAll());
+        }
+        Assert.assertTrue(kv1.invalidBytes < kv1.dataEnd);
+    }
+}
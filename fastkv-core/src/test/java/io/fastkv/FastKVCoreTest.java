@@ -0,0 +1,101 @@
+package io.fastkv;
+
+import org.junit.Assert;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.LinkedHashSet;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * 不依赖 Android 的存储引擎测试，可以直接在 JVM 上运行。
+ * <p>
+ * 测试与 FastKV 位于同一包名下，以便通过构造函数重新打开文件，验证"重新加载"的情况。
+ */
+public class FastKVCoreTest {
+    static String DIR;
+
+    @BeforeClass
+    public static void init() throws Exception {
+        DIR = TestUtil.makeTempDir("fastkv_test");
+    }
+
+    @Test
+    public void testPutAndReload() {
+        checkPutAndReload("test_reload", FastKV.NON_BLOCKING);
+        checkPutAndReload("test_reload_blocking", FastKV.SYNC_BLOCKING);
+    }
+
+    private void checkPutAndReload(String name, int mode) {
+        FastKV kv1 = new FastKV(DIR, name, null, null, mode);
+        Set<String> set = new LinkedHashSet<>(Arrays.asList("a", "b", ""));
+        byte[] array = {1, 2, 3};
+        String longStr = TestUtil.makeString(70000);
+        kv1.putBoolean("bool", true);
+        kv1.putInt("int", 100);
+        kv1.putFloat("float", 1.5f);
+        kv1.putLong("long", Long.MAX_VALUE);
+        kv1.putDouble("double", 3.14);
+        kv1.putString("str", "hello");
+        kv1.putString("long_str", longStr);
+        kv1.putArray("array", array);
+        kv1.putStringSet("set", set);
+        kv1.putInt("int", 200);
+        kv1.putString("str", "world");
+
+        FastKV kv2 = new FastKV(DIR, name, null, null, mode);
+        Assert.assertTrue(kv2.getBoolean("bool"));
+        Assert.assertEquals(200, kv2.getInt("int"));
+        Assert.assertEquals(1.5f, kv2.getFloat("float"), 0f);
+        Assert.assertEquals(Long.MAX_VALUE, kv2.getLong("long"));
+        Assert.assertEquals(3.14, kv2.getDouble("double"), 0);
+        Assert.assertEquals("world", kv2.getString("str"));
+        Assert.assertEquals(longStr, kv2.getString("long_str"));
+        Assert.assertArrayEquals(array, kv2.getArray("array"));
+        Assert.assertEquals(set, kv2.getStringSet("set"));
+        Assert.assertEquals(kv1.getAll().size(), kv2.getAll().size());
+    }
+
+    @Test
+    public void testRemoveAndGC() {
+        String name = "test_gc";
+        FastKV kv1 = new FastKV(DIR, name, null, null, FastKV.NON_BLOCKING);
+        String value = TestUtil.makeString(200);
+        for (int i = 0; i < 300; i++) {
+            kv1.putString("key_" + i, value);
+        }
+        for (int i = 0; i < 300; i += 2) {
+            kv1.remove("key_" + i);
+        }
+        for (int i = 1; i < 300; i += 2) {
+            kv1.putString("key_" + i, value + i);
+        }
+
+        FastKV kv2 = new FastKV(DIR, name, null, null, FastKV.NON_BLOCKING);
+        for (int i = 0; i < 300; i++) {
+            if ((i & 1) == 0) {
+                Assert.assertFalse(kv2.contains("key_" + i));
+            } else {
+                Assert.assertEquals(value + i, kv2.getString("key_" + i));
+            }
+        }
+    }
+
+    @Test
+    public void testListener() {
+        FastKV kv = new FastKV.Builder(DIR, "test_listener").build();
+        AtomicInteger count = new AtomicInteger();
+        kv.registerListener((fastKV, key) -> {
+            if ("a".equals(key)) {
+                count.incrementAndGet();
+            }
+        });
+        kv.putInt("a", 1);
+        kv.putInt("a", 1);
+        kv.putInt("a", 2);
+        Assert.assertEquals(2, count.get());
+    }
+
+}
@@ -0,0 +1,131 @@
+package io.fastkv;
+
+import org.junit.Assert;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * ASYNC_BLOCKING 模式跨实例组提交的测试。
+ */
+public class GroupCommitTest {
+    static String DIR;
+
+    @BeforeClass
+    public static void init() throws Exception {
+        DIR = TestUtil.makeTempDir("fastkv_group_commit_test");
+    }
+
+    private static void awaitIdle() throws InterruptedException {
+        long deadline = System.currentTimeMillis() + 10000;
+        while (!GroupCommitter.isIdle()) {
+            Assert.assertTrue(System.currentTimeMillis() < deadline);
+            Thread.sleep(1);
+        }
+    }
+
+    @Test
+    public void testGroupCommit() throws Exception {
+        FastKVConfig.setGroupCommit(4);
+        try {
+            int n = 10;
+            FastKV[] kvs = new FastKV[n];
+            for (int i = 0; i < n; i++) {
+                kvs[i] = new FastKV(DIR, "test_group_commit_" + i, null, null, FastKV.ASYNC_BLOCKING);
+                kvs[i].clear();
+            }
+            for (int j = 0; j < 200; j++) {
+                for (int i = 0; i < n; i++) {
+                    kvs[i].putString("key_" + (j % 20), "value_" + i + "_" + j);
+                    kvs[i].putInt("int_" + (j % 7), j);
+                }
+            }
+            for (int i = 0; i < n; i++) {
+                kvs[i].remove("int_0");
+            }
+            awaitIdle();
+            for (int i = 0; i < n; i++) {
+                FastKV reader = new FastKV(DIR, "test_group_commit_" + i, null, null, FastKV.SYNC_BLOCKING);
+                Assert.assertEquals(kvs[i].getAll(), reader.getAll());
+                Assert.assertEquals("value_" + i + "_199", reader.getString("key_19"));
+            }
+        } finally {
+            FastKVConfig.setGroupCommit(0);
+        }
+    }
+
+    /**
+     * 多个线程同时写入多个实例（部分实例被多个线程共享），批次之间互相重叠
+     */
+    @Test
+    public void testConcurrentGroupCommit() throws Exception {
+        FastKVConfig.setGroupCommit(3);
+        try {
+            final int n = 6;
+            final FastKV[] kvs = new FastKV[n];
+            for (int i = 0; i < n; i++) {
+                kvs[i] = new FastKV(DIR, "test_concurrent_group_" + i, null, null, FastKV.ASYNC_BLOCKING);
+                kvs[i].clear();
+            }
+            Thread[] threads = new Thread[4];
+            for (int t = 0; t < threads.length; t++) {
+                final int id = t;
+                threads[t] = new Thread(() -> {
+                    for (int j = 0; j < 500; j++) {
+                        FastKV kv = kvs[(id + j) % n];
+                        kv.putString("t" + id + "_" + (j % 10), "value_" + j);
+                        if (j % 5 == 0) {
+                            kv.putInt("shared_" + (j % 3), j);
+                        } else if (j % 5 == 1) {
+                            kv.putString("shared_" + (j % 3), "s" + j);
+                        }
+                    }
+                });
+                threads[t].start();
+            }
+            for (Thread thread : threads) {
+                thread.join();
+            }
+            awaitIdle();
+            for (int i = 0; i < n; i++) {
+                Assert.assertFalse(kvs[i].flushScheduler.flushing);
+                FastKV reader = new FastKV(DIR, "test_concurrent_group_" + i, null, null, FastKV.SYNC_BLOCKING);
+                Assert.assertEquals(kvs[i].getAll(), reader.getAll());
+            }
+        } finally {
+            FastKVConfig.setGroupCommit(0);
+        }
+    }
+
+    /**
+     * 写入失败的实例也要结束快照（复位 flushing），不影响同批次的其他实例
+     */
+    @Test
+    public void testFailedCommit() throws Exception {
+        FastKV good = new FastKV(DIR, "test_group_good", null, null, FastKV.ASYNC_BLOCKING);
+        good.clear();
+        good.disableAutoCommit();
+        good.putInt("a", 1);
+
+        String badDir = DIR + "bad_dir";
+        FastKV bad = new FastKV(badDir, "test_group_bad", null, null, FastKV.ASYNC_BLOCKING);
+        bad.disableAutoCommit();
+        bad.putInt("a", 1);
+        // 目录被替换成同名文件，临时文件无法创建
+        Utils.deleteFile(new File(badDir));
+        Assert.assertTrue(new File(badDir).createNewFile());
+
+        List<FastKV> batch = new ArrayList<>();
+        Collections.addAll(batch, bad, good);
+        GroupCommitter.commit(batch);
+        Assert.assertFalse(bad.flushScheduler.flushing);
+        Assert.assertFalse(good.flushScheduler.flushing);
+        Map<String, Object> all = new FastKV(DIR, "test_group_good", null, null, FastKV.SYNC_BLOCKING).getAll();
+        Assert.assertEquals(good.getAll(), all);
+    }
+}
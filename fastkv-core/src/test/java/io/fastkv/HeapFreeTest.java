@@ -0,0 +1,64 @@
+package io.fastkv;
+
+import org.junit.Assert;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import java.util.Map;
+
+/**
+ * 空闲时释放堆内数据副本（OPTION_HEAP_FREE）的测试。
+ * <p>
+ * 空闲时间设置得足够长使定时器不会触发，到期由测试直接调用 {@link ResourceReleaser#checkRelease()} 模拟，结果不依赖时序。
+ */
+public class HeapFreeTest {
+    static String DIR;
+
+    @BeforeClass
+    public static void init() throws Exception {
+        DIR = TestUtil.makeTempDir("fastkv_heap_free_test");
+    }
+
+    @Test
+    public void testHeapFree() {
+        long oldDelay = ResourceReleaser.sReleaseDelay;
+        try {
+            for (boolean singleFile : new boolean[]{false, true}) {
+                String name = "test_heap_free_" + singleFile;
+                int options = FastKV.OPTION_HEAP_FREE | (singleFile ? FastKV.OPTION_SINGLE_FILE : 0);
+                ResourceReleaser.sReleaseDelay = 60000L;
+                FastKV kv = new FastKV(DIR, name, null, null, FastKV.NON_BLOCKING, options);
+                kv.clear();
+                for (int i = 0; i < 500; i++) {
+                    kv.putString("str_" + i, TestUtil.makeString(i % 50));
+                    kv.putLong("long_" + i, i);
+                }
+                Assert.assertNotNull(kv.fastBuffer);
+                // 未到空闲时间，不释放
+                kv.releaser.checkRelease();
+                Assert.assertNotNull(kv.fastBuffer);
+                ResourceReleaser.sReleaseDelay = 0L;
+                kv.releaser.checkRelease();
+                Assert.assertNull(kv.fastBuffer);
+                ResourceReleaser.sReleaseDelay = 60000L;
+                Map<String, Object> all = kv.getAll();
+                Assert.assertEquals(TestUtil.makeString(7), kv.getString("str_7"));
+
+                // 写入时从A文件恢复
+                kv.putLong("long_1", 100L);
+                kv.remove("str_2");
+                Assert.assertNotNull(kv.fastBuffer);
+                all.put("long_1", 100L);
+                all.remove("str_2");
+                Assert.assertEquals(all, kv.getAll());
+
+                FastKV kv2 = new FastKV(DIR, name, null, null, FastKV.NON_BLOCKING, options);
+                Assert.assertEquals(all, kv2.getAll());
+                // 加载完成后即释放
+                Assert.assertNull(kv2.fastBuffer);
+            }
+        } finally {
+            ResourceReleaser.sReleaseDelay = oldDelay;
+        }
+    }
+}
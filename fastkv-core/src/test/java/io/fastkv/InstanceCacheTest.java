@@ -0,0 +1,131 @@
+package io.fastkv;
+
+import org.junit.Assert;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import java.util.Map;
+import java.util.concurrent.Executor;
+
+/**
+ * 实例文件资源缓存（FastKVConfig.setInstanceCache）的测试。
+ */
+public class InstanceCacheTest {
+    static String DIR;
+
+    @BeforeClass
+    public static void init() throws Exception {
+        DIR = TestUtil.makeTempDir("fastkv_instance_cache_test");
+    }
+
+    @Test
+    public void testInstanceCache() throws Exception {
+        // 后台任务（包括打开实例时安排的整理）在当前线程中执行，不与写入交错
+        Executor oldExecutor = FastKVConfig.sExecutor;
+        FastKVConfig.sExecutor = Runnable::run;
+        FastKVConfig.setInstanceCache(2, 0L, 0L);
+        FastKV[] kvs = new FastKV[4];
+        try {
+            for (int i = 0; i < kvs.length; i++) {
+                kvs[i] = new FastKV(DIR, "test_instance_cache_" + i, null, null, FastKV.NON_BLOCKING);
+                kvs[i].putString("name", "kv" + i);
+                kvs[i].putInt("index", i);
+                Thread.sleep(2);
+            }
+            InstanceCache.trim();
+            // 最早写入的两个实例被释放
+            Assert.assertTrue(kvs[0].releaser.evicted);
+            Assert.assertTrue(kvs[1].releaser.evicted);
+            Assert.assertNull(kvs[0].aChannel);
+            Assert.assertFalse(kvs[2].releaser.evicted);
+            Assert.assertFalse(kvs[3].releaser.evicted);
+
+            // 释放后仍可读取，写入时重新打开文件
+            Assert.assertEquals("kv0", kvs[0].getString("name"));
+            kvs[0].putInt("index", 100);
+            Assert.assertFalse(kvs[0].releaser.evicted);
+            Assert.assertNotNull(kvs[0].aChannel);
+            Assert.assertEquals(FastKV.NON_BLOCKING, kvs[0].writingMode);
+            Assert.assertEquals(100, kvs[0].getInt("index"));
+
+            FastKV reopened = new FastKV(DIR, "test_instance_cache_0", null, null, FastKV.NON_BLOCKING);
+            Assert.assertEquals("kv0", reopened.getString("name"));
+            Assert.assertEquals(100, reopened.getInt("index"));
+            reopened.close();
+            FastKV reopened1 = new FastKV(DIR, "test_instance_cache_1", null, null, FastKV.NON_BLOCKING);
+            Assert.assertEquals(1, reopened1.getInt("index"));
+            reopened1.close();
+        } finally {
+            FastKVConfig.sExecutor = oldExecutor;
+            FastKVConfig.setInstanceCache(0, 0L, 0L);
+            for (FastKV kv : kvs) {
+                if (kv != null) {
+                    kv.close();
+                }
+            }
+        }
+    }
+
+    /**
+     * 多个线程写入的同时反复整理：释放与重新打开交错，数据不丢失，持有文件的实例都在登记中
+     */
+    @Test
+    public void testEvictUnderWrites() throws Exception {
+        FastKVConfig.setInstanceCache(2, 0L, 0L);
+        final int n = 5;
+        final FastKV[] kvs = new FastKV[n];
+        try {
+            for (int i = 0; i < n; i++) {
+                kvs[i] = new FastKV(DIR, "test_evict_writes_" + i, null, null, FastKV.NON_BLOCKING);
+                kvs[i].clear();
+            }
+            Thread[] threads = new Thread[3];
+            for (int t = 0; t < threads.length; t++) {
+                final int id = t;
+                threads[t] = new Thread(() -> {
+                    for (int j = 0; j < 1000; j++) {
+                        FastKV kv = kvs[(id + j) % n];
+                        kv.putInt("t" + id + "_" + (j % 10), j);
+                        kv.putString("s" + (j % 5), "value_" + id + "_" + j);
+                    }
+                });
+                threads[t].start();
+            }
+            Thread trimmer = new Thread(() -> {
+                for (int j = 0; j < 200; j++) {
+                    InstanceCache.trim();
+                    Thread.yield();
+                }
+            });
+            trimmer.start();
+            for (Thread thread : threads) {
+                thread.join();
+            }
+            trimmer.join();
+
+            for (FastKV kv : kvs) {
+                synchronized (kv) {
+                    if (!kv.releaser.evicted) {
+                        Assert.assertNotNull(kv.aChannel);
+                        synchronized (InstanceCache.sOpened) {
+                            Assert.assertTrue(InstanceCache.sOpened.contains(kv));
+                        }
+                    }
+                }
+                Map<String, Object> all = kv.getAll();
+                // 每个线程写入每个实例的两个整数键和一个字符串键
+                Assert.assertEquals(9, all.size());
+                FastKV reader = new FastKV(DIR, kv.name, null, null, FastKV.NON_BLOCKING);
+                Assert.assertEquals(all, reader.getAll());
+                reader.close();
+            }
+        } finally {
+            FastKVConfig.setInstanceCache(0, 0L, 0L);
+            for (FastKV kv : kvs) {
+                if (kv != null) {
+                    kv.close();
+                }
+            }
+        }
+    }
+}
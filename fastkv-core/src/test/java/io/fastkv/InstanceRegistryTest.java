@@ -0,0 +1,121 @@
+package io.fastkv;
+
+import org.junit.Assert;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * 按路径和名称缓存实例（InstanceRegistry）的测试。
+ */
+public class InstanceRegistryTest {
+    static String DIR;
+
+    @BeforeClass
+    public static void init() throws Exception {
+        DIR = TestUtil.makeTempDir("fastkv_registry_test");
+    }
+
+    @Test
+    public void testConcurrentBuild() throws Exception {
+        int threads = 8;
+        FastKV[] same = new FastKV[threads];
+        FastKV[] distinct = new FastKV[threads];
+        Thread[] workers = new Thread[threads];
+        for (int i = 0; i < threads; i++) {
+            final int index = i;
+            workers[i] = new Thread(() -> {
+                same[index] = new FastKV.Builder(DIR, "test_concurrent_build").build();
+                distinct[index] = new FastKV.Builder(DIR, "test_concurrent_build_" + index).build();
+            });
+        }
+        for (Thread t : workers) {
+            t.start();
+        }
+        for (Thread t : workers) {
+            t.join();
+        }
+        for (int i = 0; i < threads; i++) {
+            Assert.assertSame(same[0], same[i]);
+            Assert.assertSame(distinct[i], new FastKV.Builder(DIR, "test_concurrent_build_" + i).build());
+        }
+
+        // 关闭之后重新打开得到新的实例，再次关闭旧实例不影响新实例的登记
+        FastKV old = same[0];
+        old.close();
+        FastKV kv = new FastKV.Builder(DIR, "test_concurrent_build").build();
+        Assert.assertNotSame(old, kv);
+        old.close();
+        Assert.assertSame(kv, new FastKV.Builder(DIR, "test_concurrent_build").build());
+        kv.close();
+    }
+
+    /**
+     * 一个 key 的创建阻塞时，其他 key 的创建不受影响；同一 key 的其他线程等待并得到同一个实例
+     */
+    @Test
+    public void testParallelCreate() throws Exception {
+        final InstanceRegistry<Object> registry = new InstanceRegistry<>();
+        final CountDownLatch creating = new CountDownLatch(1);
+        final CountDownLatch release = new CountDownLatch(1);
+        final AtomicInteger created = new AtomicInteger();
+        final AtomicReference<Object> first = new AtomicReference<>();
+        final AtomicReference<Object> second = new AtomicReference<>();
+        Thread slow = new Thread(() -> first.set(registry.get("slow", () -> {
+            created.incrementAndGet();
+            creating.countDown();
+            release.await();
+            return new Object();
+        })));
+        slow.start();
+        Assert.assertTrue(creating.await(10, TimeUnit.SECONDS));
+
+        Thread waiter = new Thread(() -> second.set(registry.get("slow", () -> {
+            created.incrementAndGet();
+            return new Object();
+        })));
+        waiter.start();
+        while (waiter.getState() != Thread.State.WAITING) {
+            Assert.assertTrue(waiter.isAlive());
+            Thread.yield();
+        }
+        // 创建 "slow" 期间，其他 key 在当前线程中立即创建完成
+        Object fast = registry.get("fast", Object::new);
+        Assert.assertSame(fast, registry.get("fast", Object::new));
+        Assert.assertNull(first.get());
+        Assert.assertNull(second.get());
+
+        release.countDown();
+        slow.join();
+        waiter.join();
+        Assert.assertEquals(1, created.get());
+        Assert.assertNotNull(first.get());
+        Assert.assertSame(first.get(), second.get());
+    }
+
+    /**
+     * 创建失败时抛出原始异常并移除登记，下次获取时重新创建
+     */
+    @Test
+    public void testCreateFailure() {
+        InstanceRegistry<Object> registry = new InstanceRegistry<>();
+        try {
+            registry.get("key", () -> {
+                throw new IllegalStateException("failed");
+            });
+            Assert.fail();
+        } catch (IllegalStateException e) {
+            Assert.assertEquals("failed", e.getMessage());
+        }
+        Object instance = registry.get("key", Object::new);
+        Assert.assertNotNull(instance);
+        registry.remove("key", new Object());
+        Assert.assertSame(instance, registry.get("key", Object::new));
+        registry.remove("key", instance);
+        Assert.assertNotSame(instance, registry.get("key", Object::new));
+    }
+}
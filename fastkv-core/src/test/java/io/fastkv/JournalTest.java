@@ -0,0 +1,73 @@
+package io.fastkv;
+
+import org.junit.Assert;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.RandomAccessFile;
+
+/**
+ * 阻塞模式增量日志（OPTION_JOURNAL）的测试。
+ */
+public class JournalTest {
+    static String DIR;
+
+    @BeforeClass
+    public static void init() throws Exception {
+        DIR = TestUtil.makeTempDir("fastkv_journal_test");
+    }
+
+    @Test
+    public void testJournal() throws Exception {
+        String name = "test_journal";
+        File cFile = new File(DIR, name + FileHelper.C_SUFFIX);
+        File jFile = new File(DIR, name + Journal.JOURNAL_SUFFIX);
+        FastKV kv1 = new FastKV(DIR, name, null, null, FastKV.SYNC_BLOCKING, FastKV.OPTION_JOURNAL);
+        kv1.clear();
+        String value = TestUtil.makeString(100);
+        for (int i = 0; i < 100; i++) {
+            kv1.putInt("int_" + i, i);
+            kv1.putString("str_" + i, value + i);
+        }
+        kv1.putInt("int_1", 100);
+        kv1.remove("str_2");
+        // 只追加日志，不重写C文件
+        Assert.assertEquals(FastKV.DATA_START, cFile.length());
+        Assert.assertTrue(jFile.length() > value.length() * 100);
+        FastKV kv2 = new FastKV(DIR, name, null, null, FastKV.SYNC_BLOCKING, FastKV.OPTION_JOURNAL);
+        Assert.assertEquals(kv1.getAll(), kv2.getAll());
+
+        // 最后一条记录不完整时忽略该记录
+        long jLen = jFile.length();
+        try (RandomAccessFile file = new RandomAccessFile(jFile, "rw")) {
+            file.seek(jLen);
+            file.writeInt(100);
+            file.write(new byte[20]);
+        }
+        FastKV kv3 = new FastKV(DIR, name, null, null, FastKV.SYNC_BLOCKING, FastKV.OPTION_JOURNAL);
+        Assert.assertEquals(kv1.getAll(), kv3.getAll());
+        Assert.assertEquals(jLen, jFile.length());
+
+        // 日志超过数据长度时做检查点，删除较多时触发 GC
+        for (int i = 0; i < 1000; i++) {
+            kv3.putString("str_" + (i % 100), value + i);
+        }
+        for (int i = 0; i < 100; i += 2) {
+            kv3.remove("str_" + i);
+        }
+        Assert.assertTrue(cFile.length() > FastKV.DATA_START);
+        Assert.assertTrue(jFile.length() < value.length() * 1000);
+        FastKV kv4 = new FastKV(DIR, name, null, null, FastKV.SYNC_BLOCKING, FastKV.OPTION_JOURNAL);
+        Assert.assertEquals(kv3.getAll(), kv4.getAll());
+
+        // 不开启日志时也能打开（先写入全部数据）
+        kv4.close();
+        FastKV kv5 = new FastKV(DIR, name, null, null, FastKV.ASYNC_BLOCKING, FastKV.OPTION_JOURNAL);
+        kv5.putInt("async", 1);
+        kv5.close();
+        FastKV kv6 = new FastKV(DIR, name, null, null, FastKV.SYNC_BLOCKING, FastKV.OPTION_JOURNAL);
+        Assert.assertEquals(1, kv6.getInt("async"));
+        Assert.assertEquals(kv3.getAll().size() + 1, kv6.getAll().size());
+    }
+}
@@ -0,0 +1,57 @@
+package io.fastkv;
+
+import org.junit.Assert;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.LinkedHashSet;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * 延迟解码（OPTION_LAZY_DECODE）的测试。
+ */
+public class LazyDecodeTest {
+    static String DIR;
+
+    @BeforeClass
+    public static void init() throws Exception {
+        DIR = TestUtil.makeTempDir("fastkv_lazy_test");
+    }
+
+    @Test
+    public void testLazyDecode() {
+        String name = "test_lazy";
+        FastKV kv1 = new FastKV(DIR, name, null, null, FastKV.NON_BLOCKING);
+        kv1.clear();
+        String longStr = TestUtil.makeString(70000);
+        Set<String> set = new LinkedHashSet<>(Arrays.asList("a", "b"));
+        kv1.putString("str", "hello");
+        kv1.putString("empty", "");
+        kv1.putString("long_str", longStr);
+        kv1.putArray("array", new byte[]{1, 2, 3});
+        kv1.putStringSet("set", set);
+        kv1.putString("num", "12");
+
+        FastKV kv2 = new FastKV(DIR, name, null, null, FastKV.NON_BLOCKING, FastKV.OPTION_LAZY_DECODE);
+        Assert.assertTrue(kv2.contains("str"));
+        Assert.assertTrue(((Container.VarContainer) kv2.data.get("str")).isLazy());
+        Assert.assertTrue(((Container.VarContainer) kv2.data.get("set")).isLazy());
+        Assert.assertEquals("hello", kv2.getString("str"));
+        Assert.assertFalse(((Container.VarContainer) kv2.data.get("str")).isLazy());
+        Assert.assertEquals("", kv2.getString("empty"));
+        Assert.assertEquals(longStr, kv2.getString("long_str"));
+        Assert.assertEquals(12, kv2.getInt("num"));
+        Assert.assertEquals(set, kv2.getStringSet("set"));
+        Assert.assertArrayEquals(new byte[]{1, 2, 3}, kv2.getArray("array"));
+        Map<String, Object> all1 = kv1.getAll();
+        Map<String, Object> all2 = kv2.getAll();
+        Assert.assertArrayEquals((byte[]) all1.remove("array"), (byte[]) all2.remove("array"));
+        Assert.assertEquals(all1, all2);
+
+        // 未解码的值在 GC 移动之后仍然可以正确解码
+        CompactionTest.checkIncrementalCompaction(DIR, "test_lazy_compact", new XorCipher(),
+                FastKV.OPTION_LAZY_DECODE | FastKV.OPTION_COMPACT_INDEX);
+    }
+}
@@ -0,0 +1,98 @@
+package io.fastkv;
+
+import org.junit.Assert;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+
+/**
+ * 加载调度（FastKVConfig.setLoadConcurrency）的测试。
+ */
+public class LoadSchedulerTest {
+    static String DIR;
+
+    @BeforeClass
+    public static void init() throws Exception {
+        DIR = TestUtil.makeTempDir("fastkv_load_scheduler_test");
+    }
+
+    @Test
+    public void testLoadScheduler() {
+        String[] names = {"test_load_a", "test_load_p", "test_load_c", "test_load_b"};
+        for (int i = 0; i < names.length; i++) {
+            FastKV kv = new FastKV(DIR, names[i], null, null, FastKV.NON_BLOCKING);
+            kv.putInt("v", i);
+            kv.close();
+        }
+        Executor oldExecutor = FastKVConfig.sExecutor;
+        int oldConcurrency = FastKVConfig.sLoadConcurrency;
+        // 任务只登记不执行，由测试按顺序执行
+        List<Runnable> tasks = new ArrayList<>();
+        FastKVConfig.sExecutor = tasks::add;
+        FastKVConfig.sLoadConcurrency = 1;
+        try {
+            FastKV a = new FastKV(DIR, names[0], null, null, FastKV.NON_BLOCKING, 0, FastKV.PRIORITY_NORMAL);
+            FastKV p = new FastKV(DIR, names[1], null, null, FastKV.NON_BLOCKING, 0, FastKV.PRIORITY_PREFETCH);
+            FastKV c = new FastKV(DIR, names[2], null, null, FastKV.NON_BLOCKING, 0, FastKV.PRIORITY_CRITICAL);
+            FastKV b = new FastKV(DIR, names[3], null, null, FastKV.NON_BLOCKING, 0, FastKV.PRIORITY_NORMAL);
+            Assert.assertEquals(1, tasks.size());
+            Assert.assertFalse(a.isLoaded());
+
+            // 读取排队中的实例时直接在当前线程中加载
+            Assert.assertEquals(3, b.getInt("v"));
+            Assert.assertTrue(b.isLoaded());
+
+            tasks.remove(0).run();
+            Assert.assertTrue(a.isLoaded());
+            // 优先级高的先加载，已加载的跳过
+            Assert.assertEquals(1, tasks.size());
+            tasks.remove(0).run();
+            Assert.assertTrue(c.isLoaded());
+            Assert.assertFalse(p.isLoaded());
+            Assert.assertEquals(1, tasks.size());
+            tasks.remove(0).run();
+            Assert.assertTrue(p.isLoaded());
+            Assert.assertTrue(tasks.isEmpty());
+            Assert.assertEquals(1, p.getInt("v"));
+            Assert.assertEquals(2, c.getInt("v"));
+        } finally {
+            FastKVConfig.sExecutor = oldExecutor;
+            FastKVConfig.sLoadConcurrency = oldConcurrency;
+        }
+    }
+
+    /**
+     * 执行器拒绝加载任务时不占用并发数，任务留在队列中，下次调度时再执行
+     */
+    @Test
+    public void testRejectedExecutor() {
+        Executor oldExecutor = FastKVConfig.sExecutor;
+        int oldConcurrency = FastKVConfig.sLoadConcurrency;
+        List<Runnable> tasks = new ArrayList<>();
+        FastKVConfig.sExecutor = command -> {
+            throw new RejectedExecutionException("rejected");
+        };
+        FastKVConfig.sLoadConcurrency = 1;
+        try {
+            FastKV a = new FastKV(DIR, "test_load_rejected_a", null, null, FastKV.NON_BLOCKING, 0, FastKV.PRIORITY_NORMAL);
+            Assert.assertFalse(a.isLoaded());
+
+            FastKVConfig.sExecutor = tasks::add;
+            FastKV b = new FastKV(DIR, "test_load_rejected_b", null, null, FastKV.NON_BLOCKING, 0, FastKV.PRIORITY_NORMAL);
+            Assert.assertEquals(1, tasks.size());
+            tasks.remove(0).run();
+            Assert.assertTrue(a.isLoaded());
+            Assert.assertEquals(1, tasks.size());
+            tasks.remove(0).run();
+            Assert.assertTrue(b.isLoaded());
+            Assert.assertTrue(tasks.isEmpty());
+        } finally {
+            FastKVConfig.sExecutor = oldExecutor;
+            FastKVConfig.sLoadConcurrency = oldConcurrency;
+        }
+    }
+}
@@ -0,0 +1,147 @@
+package io.fastkv;
+
+import org.junit.Assert;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * 不加锁的读取与写入（包括 GC）并发执行的测试。
+ */
+public class LockFreeReadTest {
+    static String DIR;
+
+    @BeforeClass
+    public static void init() throws Exception {
+        DIR = TestUtil.makeTempDir("fastkv_lock_free_test");
+    }
+
+    @Test
+    public void testConcurrentRead() throws Exception {
+        FastKV kv = new FastKV(DIR, "test_concurrent_read", null, null, FastKV.NON_BLOCKING);
+        kv.clear();
+        Assert.assertEquals(-1, kv.getInt(null, -1));
+        Assert.assertFalse(kv.contains(null));
+
+        final int n = 20000;
+        AtomicBoolean failed = new AtomicBoolean();
+        Thread[] readers = new Thread[3];
+        for (int i = 0; i < readers.length; i++) {
+            readers[i] = new Thread(() -> {
+                int last = 0;
+                while (last < n && !failed.get()) {
+                    int count = kv.getInt("count");
+                    String str = kv.getString("str", "v0");
+                    if (count < last || !str.startsWith("v")) {
+                        failed.set(true);
+                    }
+                    last = count;
+                }
+            });
+            readers[i].start();
+        }
+        String padding = TestUtil.makeString(100);
+        for (int i = 1; i <= n; i++) {
+            kv.putInt("count", i);
+            // 长度变化的字符串会产生无效数据，从而在读取期间触发 GC
+            kv.putString("str", "v" + i + padding.substring(i % 100));
+        }
+        for (Thread t : readers) {
+            t.join();
+        }
+        Assert.assertFalse(failed.get());
+        Assert.assertEquals(n, kv.getInt("count"));
+    }
+
+    /**
+     * 各种类型的读取与写入、删除、改变类型并发执行：读到的值要么是默认值，要么是某一次写入的完整的值
+     */
+    @Test
+    public void testConcurrentReadAllTypes() throws Exception {
+        final FastKV kv = new FastKV(DIR, "test_concurrent_read_types", null, null, FastKV.NON_BLOCKING);
+        kv.clear();
+        final int n = 5000;
+        final AtomicBoolean done = new AtomicBoolean();
+        final AtomicReference<String> error = new AtomicReference<>();
+        Thread[] readers = new Thread[4];
+        for (int i = 0; i < readers.length; i++) {
+            readers[i] = new Thread(() -> {
+                while (!done.get() && error.get() == null) {
+                    try {
+                        long l = kv.getLong("long");
+                        double d = kv.getDouble("double");
+                        float f = kv.getFloat("float");
+                        if (l < 0 || d < 0 || f < 0) {
+                            error.set("negative: " + l + " " + d + " " + f);
+                        }
+                        byte[] array = kv.getArray("array");
+                        if (array != null) {
+                            for (byte b : array) {
+                                if (b != array[0]) {
+                                    error.set("torn array: " + Arrays.toString(array));
+                                    break;
+                                }
+                            }
+                        }
+                        Set<String> set = kv.getStringSet("set");
+                        if (set != null && !set.isEmpty() && !set.contains("s0")) {
+                            error.set("bad set: " + set);
+                        }
+                        // 类型在 int 和 String 之间切换：按 int 读取时读到字符串返回默认值，按 String 读取整数时返回其文本；
+                        // 改变类型时先删除旧值再写入新值，两步之间的读取得到默认值（空字符串）
+                        kv.getInt("mixed");
+                        String str = kv.getString("mixed");
+                        if (!str.isEmpty() && !str.startsWith("m") && !Character.isDigit(str.charAt(0))) {
+                            error.set("bad string: " + str);
+                        }
+                        Map<String, Object> all = kv.getAll();
+                        Object v = all.get("long");
+                        if (v != null && !(v instanceof Long)) {
+                            error.set("bad type: " + v);
+                        }
+                    } catch (RuntimeException e) {
+                        error.set(e.toString());
+                    }
+                }
+            });
+            readers[i].start();
+        }
+        String padding = TestUtil.makeString(64);
+        for (int i = 1; i <= n && error.get() == null; i++) {
+            kv.putLong("long", i * 1000000007L);
+            kv.putDouble("double", i * 0.5);
+            kv.putFloat("float", i);
+            kv.putBoolean("bool", (i & 1) == 0);
+            byte[] array = new byte[1 + i % 50];
+            Arrays.fill(array, (byte) i);
+            kv.putArray("array", array);
+            kv.putStringSet("set", new HashSet<>(Arrays.asList("s0", "s" + (i % 7))));
+            if (i % 3 == 0) {
+                kv.putInt("mixed", i);
+            } else {
+                kv.putString("mixed", "m" + i + padding.substring(i % 64));
+            }
+            if (i % 11 == 0) {
+                kv.remove("array");
+                kv.remove("long");
+            }
+            if (i % 101 == 0) {
+                kv.putStringSet("set", Collections.emptySet());
+            }
+        }
+        done.set(true);
+        for (Thread t : readers) {
+            t.join();
+        }
+        Assert.assertNull(error.get());
+        Assert.assertEquals(n * 1000000007L, kv.getLong("long"));
+        Assert.assertEquals(n * 0.5, kv.getDouble("double"), 0);
+    }
+}
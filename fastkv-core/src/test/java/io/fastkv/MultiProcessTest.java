@@ -0,0 +1,168 @@
+package io.fastkv;
+
+import org.junit.Assert;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * 多进程模式（OPTION_MULTI_PROCESS）的测试，同一进程中的多个实例模拟不同进程。
+ */
+public class MultiProcessTest {
+    static String DIR;
+
+    @BeforeClass
+    public static void init() throws Exception {
+        DIR = TestUtil.makeTempDir("fastkv_multi_process_test");
+    }
+
+    @Test
+    public void testMultiProcessReader() {
+        String name = "test_multi_process_reader";
+        FastKV writer = new FastKV(DIR, name, null, null, FastKV.NON_BLOCKING, FastKV.OPTION_MULTI_PROCESS);
+        writer.clear();
+        writer.putInt("int", 1);
+        writer.putString("str", "a");
+
+        // 模拟另一个进程中的只读实例
+        FastKV reader = new FastKV(DIR, name, null, null, FastKV.NON_BLOCKING,
+                FastKV.OPTION_READ_ONLY | FastKV.OPTION_MULTI_PROCESS);
+        Assert.assertEquals(1, reader.getInt("int"));
+        Assert.assertEquals("a", reader.getString("str"));
+
+        writer.putInt("int", 2);
+        writer.putString("str", TestUtil.makeString(200));
+        writer.putLong("long", 3L);
+        Assert.assertEquals(2, reader.getInt("int"));
+        Assert.assertEquals(TestUtil.makeString(200), reader.getString("str"));
+        Assert.assertEquals(3L, reader.getLong("long"));
+
+        writer.remove("int");
+        Assert.assertFalse(reader.contains("int"));
+
+        writer.disableAutoCommit();
+        writer.putInt("batch", 1);
+        Assert.assertFalse(reader.contains("batch"));
+        writer.commit();
+        Assert.assertEquals(writer.getAll(), reader.getAll());
+
+        writer.clear();
+        Assert.assertTrue(reader.getAll().isEmpty());
+        reader.close();
+        writer.close();
+    }
+    @Test
+    public void testMultiProcessWriters() throws Exception {
+        String name = "test_multi_process_writers";
+        int options = FastKV.OPTION_MULTI_PROCESS;
+        // 模拟两个进程中的可写实例
+        FastKV kv1 = new FastKV(DIR, name, null, null, FastKV.NON_BLOCKING, options);
+        kv1.clear();
+        FastKV kv2 = new FastKV(DIR, name, null, null, FastKV.NON_BLOCKING, options);
+
+        Map<String, Object> expected = new HashMap<>();
+        Random random = new Random(1);
+        for (int i = 0; i < 300; i++) {
+            FastKV kv = (i & 1) == 0 ? kv1 : kv2;
+            String key = "key_" + random.nextInt(50);
+            if (random.nextInt(5) == 0) {
+                kv.remove(key);
+                expected.remove(key);
+            } else if (random.nextBoolean()) {
+                String value = TestUtil.makeString(random.nextInt(2000));
+                kv.putString(key, value);
+                expected.put(key, value);
+            } else {
+                kv.putLong(key, i);
+                expected.put(key, (long) i);
+            }
+        }
+        Assert.assertEquals(expected, kv1.getAll());
+        Assert.assertEquals(expected, kv2.getAll());
+
+        // 批量写入期间持有写入锁，提交后另一实例可见
+        kv1.disableAutoCommit();
+        kv1.putInt("batch", 1);
+        AtomicBoolean written = new AtomicBoolean(false);
+        Thread thread = new Thread(() -> {
+            kv2.putInt("other", 2);
+            written.set(true);
+        });
+        thread.start();
+        // 等到写入线程在重试加锁（wait 中），此时它不持有 kv2 的对象锁
+        while (thread.getState() != Thread.State.TIMED_WAITING) {
+            Assert.assertTrue(thread.isAlive());
+            Thread.yield();
+        }
+        Assert.assertFalse(written.get());
+        synchronized (kv2) {
+            Assert.assertFalse(written.get());
+        }
+        // 读取不获取写入锁，不会被阻塞，也看不到未提交的修改
+        Assert.assertEquals(expected, kv2.getAll());
+        Assert.assertFalse(kv2.contains("batch"));
+        kv1.commit();
+        thread.join();
+        Assert.assertTrue(written.get());
+        Assert.assertEquals(1, kv2.getInt("batch"));
+        Assert.assertEquals(2, kv1.getInt("other"));
+
+        kv1.close();
+        kv2.close();
+        expected.put("batch", 1);
+        expected.put("other", 2);
+        FastKV kv3 = new FastKV(DIR, name, null, null, FastKV.NON_BLOCKING);
+        Assert.assertEquals(expected, kv3.getAll());
+        kv3.close();
+    }
+
+    /**
+     * 可写实例读取时发现其他实例修改过数据，只重新加载容器；之后修改时再从A/B文件同步
+     */
+    @Test
+    public void testWriterReloadOnRead() {
+        String name = "test_multi_process_writer_read";
+        int options = FastKV.OPTION_MULTI_PROCESS;
+        FastKV kv1 = new FastKV(DIR, name, null, null, FastKV.NON_BLOCKING, options);
+        kv1.clear();
+        FastKV kv2 = new FastKV(DIR, name, null, null, FastKV.NON_BLOCKING, options);
+        kv1.putString("a", "a1");
+        kv1.putInt("b", 1);
+        Assert.assertEquals("a1", kv2.getString("a"));
+        Assert.assertEquals(1, kv2.getInt("b"));
+        Assert.assertFalse(kv2.processSync.sequence.isLocked());
+
+        kv2.putInt("b", 2);
+        kv2.remove("a");
+        kv1.putString("c", "c1");
+        Assert.assertFalse(kv1.contains("a"));
+        Assert.assertEquals(2, kv1.getInt("b"));
+        Assert.assertEquals(kv1.getAll(), kv2.getAll());
+        Assert.assertFalse(kv1.processSync.sequence.isLocked());
+        Assert.assertFalse(kv2.processSync.sequence.isLocked());
+        kv1.close();
+        kv2.close();
+    }
+
+    /**
+     * 获取写入锁出错时降级为阻塞模式，而不是在没有锁的情况下修改A/B文件
+     */
+    @Test
+    public void testLockFailure() {
+        String name = "test_multi_process_lock_failure";
+        FastKV kv = new FastKV(DIR, name, null, null, FastKV.NON_BLOCKING, FastKV.OPTION_MULTI_PROCESS);
+        kv.clear();
+        kv.putInt("a", 1);
+        // 关闭序号文件的通道，加锁时抛出异常
+        kv.processSync.sequence.close();
+        kv.putInt("b", 2);
+        Assert.assertEquals(FastKV.ASYNC_BLOCKING, kv.writingMode);
+        Assert.assertEquals(2, kv.getInt("b"));
+        kv.force();
+        kv.close();
+    }
+}
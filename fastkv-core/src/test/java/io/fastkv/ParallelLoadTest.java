@@ -0,0 +1,90 @@
+package io.fastkv;
+
+import org.junit.Assert;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.LinkedHashSet;
+import java.util.Map;
+
+/**
+ * 并行校验和解析的加载测试。
+ */
+public class ParallelLoadTest {
+    static String DIR;
+
+    @BeforeClass
+    public static void init() throws Exception {
+        DIR = TestUtil.makeTempDir("fastkv_parallel_test");
+    }
+
+    @Test
+    public void testParallelLoad() {
+        int parallelism = ParallelHelper.sParallelism;
+        int threshold = ParallelHelper.sThreshold;
+        try {
+            FastBuffer buffer = new FastBuffer(TestUtil.makeString(10001).getBytes());
+            long expected = buffer.getChecksum(3, 9997);
+            ParallelHelper.sParallelism = 4;
+            ParallelHelper.sThreshold = 1024;
+            Assert.assertEquals(expected, ParallelHelper.getChecksum(buffer, 3, 9997));
+
+            String name = "test_parallel";
+            FastKV kv1 = new FastKV(DIR, name, null, null, FastKV.NON_BLOCKING);
+            kv1.clear();
+            String value = TestUtil.makeString(100);
+            for (int i = 0; i < 2000; i++) {
+                kv1.putInt("int_" + i, i);
+                kv1.putString("str_" + i, value + i);
+                kv1.putStringSet("set_" + i, new LinkedHashSet<>(Arrays.asList("a", "b" + i)));
+            }
+            for (int i = 0; i < 2000; i += 3) {
+                kv1.remove("str_" + i);
+            }
+            Map<String, Object> all = kv1.getAll();
+            for (int options : new int[]{0, FastKV.OPTION_COMPACT_INDEX, FastKV.OPTION_LAZY_DECODE}) {
+                FastKV kv2 = new FastKV(DIR, name, null, null, FastKV.NON_BLOCKING, options);
+                Assert.assertEquals(all, kv2.getAll());
+                Assert.assertEquals(kv1.invalidBytes, kv2.invalidBytes);
+            }
+        } finally {
+            ParallelHelper.sParallelism = parallelism;
+            ParallelHelper.sThreshold = threshold;
+        }
+    }
+
+    @Test
+    public void testParallelLoadWithCipherMigration() {
+        int parallelism = ParallelHelper.sParallelism;
+        int threshold = ParallelHelper.sThreshold;
+        try {
+            ParallelHelper.sParallelism = 4;
+            ParallelHelper.sThreshold = 1024;
+            for (int options : new int[]{FastKV.OPTION_COMPACT_INDEX,
+                    FastKV.OPTION_COMPACT_INDEX | FastKV.OPTION_LAZY_DECODE}) {
+                String name = "test_parallel_migration_" + options;
+                FastKV kv1 = new FastKV(DIR, name, null, null, FastKV.NON_BLOCKING);
+                kv1.clear();
+                for (int i = 0; i < 200; i++) {
+                    kv1.putInt("i" + i, i);
+                    kv1.putString("s" + i, "value" + i);
+                }
+                Map<String, Object> all = kv1.getAll();
+                kv1.close();
+
+                // 未加密的数据以加密方式打开：并行解析后重写，基本类型不能丢失
+                FastKV kv2 = new FastKV(DIR, name, null, new XorCipher(), FastKV.NON_BLOCKING, options);
+                Assert.assertEquals(all, kv2.getAll());
+                Assert.assertEquals(5, kv2.getInt("i5"));
+                kv2.close();
+                FastKV kv3 = new FastKV(DIR, name, null, new XorCipher(), FastKV.NON_BLOCKING, options);
+                Assert.assertEquals(all, kv3.getAll());
+                kv3.close();
+            }
+        } finally {
+            ParallelHelper.sParallelism = parallelism;
+            ParallelHelper.sThreshold = threshold;
+        }
+    }
+}
@@ -0,0 +1,62 @@
+package io.fastkv;
+
+import org.junit.Assert;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import java.io.File;
+import java.util.Arrays;
+import java.util.LinkedHashSet;
+import java.util.Map;
+
+import io.fastkv.interfaces.FastCipher;
+
+/**
+ * 持久化索引（OPTION_PERSIST_INDEX）的测试。
+ */
+public class PersistIndexTest {
+    static String DIR;
+
+    @BeforeClass
+    public static void init() throws Exception {
+        DIR = TestUtil.makeTempDir("fastkv_persist_index_test");
+    }
+
+    @Test
+    public void testPersistIndex() {
+        checkPersistIndex("test_persist_index", null);
+        checkPersistIndex("test_persist_index_cipher", new XorCipher());
+    }
+
+    private void checkPersistIndex(String name, FastCipher cipher) {
+        int options = FastKV.OPTION_COMPACT_INDEX | FastKV.OPTION_PERSIST_INDEX | FastKV.OPTION_LAZY_DECODE;
+        FastKV kv1 = new FastKV(DIR, name, null, cipher, FastKV.NON_BLOCKING, options);
+        kv1.clear();
+        for (int i = 0; i < 1000; i++) {
+            kv1.putInt("int_" + i, i);
+            kv1.putString("str_" + i, "s" + i);
+        }
+        for (int i = 10; i < 1000; i++) {
+            kv1.remove("int_" + i);
+        }
+        kv1.putStringSet("set", new LinkedHashSet<>(Arrays.asList("a", "b")));
+        kv1.putLong("long", 1L);
+        int capacity = kv1.primitiveIndex.capacity();
+        Map<String, Object> expected = kv1.getAll();
+        kv1.close();
+        Assert.assertTrue(new File(DIR, name + IndexHelper.INDEX_SUFFIX).exists());
+
+        // 索引有效：直接恢复，紧凑索引的容量与保存时一致（逐条解析时会按 key 的数量重新扩容）
+        FastKV kv2 = new FastKV(DIR, name, null, cipher, FastKV.NON_BLOCKING, options);
+        Assert.assertEquals(expected, kv2.getAll());
+        Assert.assertEquals(capacity, kv2.primitiveIndex.capacity());
+        Assert.assertEquals(kv1.invalidBytes, kv2.invalidBytes);
+
+        // 数据更新之后索引失效，按常规流程解析
+        kv2.putInt("int_0", -1);
+        expected.put("int_0", -1);
+        FastKV kv3 = new FastKV(DIR, name, null, cipher, FastKV.NON_BLOCKING, options);
+        Assert.assertEquals(expected, kv3.getAll());
+        Assert.assertTrue(kv3.primitiveIndex.capacity() < capacity);
+    }
+}
@@ -0,0 +1,77 @@
+package io.fastkv;
+
+import org.junit.Assert;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.RandomAccessFile;
+import java.nio.file.Files;
+import java.util.Map;
+
+/**
+ * 只读实例（OPTION_READ_ONLY）的测试。
+ */
+public class ReadOnlyTest {
+    static String DIR;
+
+    @BeforeClass
+    public static void init() throws Exception {
+        DIR = TestUtil.makeTempDir("fastkv_read_only_test");
+    }
+
+    @Test
+    public void testReadOnly() throws Exception {
+        String name = "test_read_only";
+        FastKV kv = new FastKV(DIR, name, null, null, FastKV.NON_BLOCKING);
+        kv.clear();
+        for (int i = 0; i < 100; i++) {
+            kv.putString("str_" + i, TestUtil.makeString(i));
+            kv.putInt("int_" + i, i);
+        }
+        Map<String, Object> all = kv.getAll();
+        kv.close();
+
+        // A文件写入中断时使用B文件，且不修复A文件
+        File aFile = new File(DIR, name + FileHelper.A_SUFFIX);
+        try (RandomAccessFile file = new RandomAccessFile(aFile, "rw")) {
+            file.writeInt(-1);
+        }
+        byte[] aBytes = Files.readAllBytes(aFile.toPath());
+
+        FastKV reader = new FastKV.Builder(DIR, name).readOnly().build();
+        Assert.assertSame(reader, new FastKV.Builder(DIR, name).readOnly().build());
+        Assert.assertEquals(all, reader.getAll());
+        Assert.assertEquals(TestUtil.makeString(9), reader.getString("str_9"));
+        Assert.assertNull(reader.fastBuffer);
+        Assert.assertNull(reader.aBuffer);
+        Assert.assertArrayEquals(aBytes, Files.readAllBytes(aFile.toPath()));
+        try {
+            reader.putInt("int_1", 100);
+            Assert.fail();
+        } catch (UnsupportedOperationException expected) {
+        }
+        Assert.assertEquals(1, reader.getInt("int_1"));
+
+        // 只读实例与可写实例相互独立
+        FastKV writer = new FastKV.Builder(DIR, name).build();
+        Assert.assertNotSame(reader, writer);
+        writer.close();
+        reader.close();
+
+        // 增量日志只在内存中重放
+        String jName = "test_read_only_journal";
+        FastKV jkv = new FastKV(DIR, jName, null, null, FastKV.SYNC_BLOCKING, FastKV.OPTION_JOURNAL);
+        jkv.clear();
+        for (int i = 0; i < 10; i++) {
+            jkv.putLong("long_" + i, i);
+        }
+        jkv.close();
+        File jFile = new File(DIR, jName + Journal.JOURNAL_SUFFIX);
+        long jLength = jFile.length();
+        FastKV jReader = new FastKV.Builder(DIR, jName).readOnly().build();
+        Assert.assertEquals(9L, jReader.getLong("long_9"));
+        Assert.assertEquals(jLength, jFile.length());
+        jReader.close();
+    }
+}
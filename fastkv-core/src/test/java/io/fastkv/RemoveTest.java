@@ -0,0 +1,101 @@
+package io.fastkv;
+
+import org.junit.Assert;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import io.fastkv.interfaces.FastCipher;
+
+/**
+ * 删除记录之后重新加载，验证删除标记写在了记录的类型字节上。
+ */
+public class RemoveTest {
+    static String DIR;
+
+    @BeforeClass
+    public static void init() throws Exception {
+        DIR = TestUtil.makeTempDir("fastkv_remove_test");
+    }
+
+    @Test
+    public void testRemoveLargeValue() {
+        String name = "test_remove_large";
+        FastKV kv1 = new FastKV(DIR, name, null, null, FastKV.NON_BLOCKING);
+        // 超过 64K 的值使用 STRING_LARGE/ARRAY_LARGE 类型，删除后加载时需要按 4 字节的长度跳过
+        kv1.putString("large", TestUtil.makeString(70000));
+        kv1.putArray("large_array", new byte[70000]);
+        kv1.putInt("a", 1);
+        kv1.remove("large");
+        kv1.remove("large_array");
+        kv1.putInt("b", 2);
+
+        FastKV kv2 = new FastKV(DIR, name, null, null, FastKV.NON_BLOCKING);
+        Assert.assertFalse(kv2.contains("large"));
+        Assert.assertFalse(kv2.contains("large_array"));
+        Assert.assertEquals(1, kv2.getInt("a"));
+        Assert.assertEquals(2, kv2.getInt("b"));
+    }
+
+    @Test
+    public void testRemoveWithCipher() {
+        String name = "test_remove_cipher";
+        FastKV kv1 = new FastKV(DIR, name, null, new PaddingCipher(), FastKV.NON_BLOCKING);
+        kv1.putInt("a", 1);
+        kv1.putLong("b", 2L);
+        kv1.putBoolean("c", true);
+        kv1.remove("b");
+        kv1.remove("a");
+
+        FastKV kv2 = new FastKV(DIR, name, null, new PaddingCipher(), FastKV.NON_BLOCKING);
+        Assert.assertFalse(kv2.contains("a"));
+        Assert.assertFalse(kv2.contains("b"));
+        Assert.assertTrue(kv2.getBoolean("c"));
+    }
+
+    /**
+     * 加密后的长度与原文不同（在前面补一个字节），用于验证按加密后的 key 长度定位记录
+     */
+    private static class PaddingCipher implements FastCipher {
+        @Override
+        public byte[] encrypt(byte[] src) {
+            byte[] dst = new byte[src.length + 1];
+            dst[0] = 0x3C;
+            for (int i = 0; i < src.length; i++) {
+                dst[i + 1] = (byte) (src[i] ^ 0x5A);
+            }
+            return dst;
+        }
+
+        @Override
+        public byte[] decrypt(byte[] dst) {
+            if (dst == null || dst.length == 0 || dst[0] != 0x3C) {
+                return null;
+            }
+            byte[] src = new byte[dst.length - 1];
+            for (int i = 0; i < src.length; i++) {
+                src[i] = (byte) (dst[i + 1] ^ 0x5A);
+            }
+            return src;
+        }
+
+        @Override
+        public int encrypt(int src) {
+            return src ^ 0x5A5A5A5A;
+        }
+
+        @Override
+        public int decrypt(int dst) {
+            return dst ^ 0x5A5A5A5A;
+        }
+
+        @Override
+        public long encrypt(long src) {
+            return src ^ 0x5A5A5A5A5A5A5A5AL;
+        }
+
+        @Override
+        public long decrypt(long dst) {
+            return dst ^ 0x5A5A5A5A5A5A5A5AL;
+        }
+    }
+}
@@ -0,0 +1,91 @@
+package io.fastkv;
+
+import org.junit.Assert;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * 分段存储（SegmentedKV）的测试。
+ */
+public class SegmentedKVTest {
+    static String DIR;
+
+    @BeforeClass
+    public static void init() throws Exception {
+        DIR = TestUtil.makeTempDir("fastkv_segmented_test");
+    }
+
+    @Test
+    public void testSegmentedKV() {
+        String name = "test_segmented";
+        SegmentedKV kv = new FastKV.Builder(DIR, name).buildSegmented(4);
+        kv.clear();
+        Map<String, Object> expected = new HashMap<>();
+        for (int i = 0; i < 400; i++) {
+            kv.putInt("int_" + i, i);
+            kv.putString("str_" + i, "value_" + i);
+            expected.put("int_" + i, i);
+            expected.put("str_" + i, "value_" + i);
+        }
+        kv.remove("int_7");
+        expected.remove("int_7");
+        Map<String, Object> batch = new HashMap<>();
+        batch.put("batch_a", 1L);
+        batch.put("batch_b", true);
+        kv.putAll(batch);
+        expected.putAll(batch);
+        Assert.assertEquals(expected, kv.getAll());
+        Assert.assertEquals("value_9", kv.getString("str_9"));
+        Assert.assertFalse(kv.contains("int_7"));
+
+        // 每个段都分到了数据
+        for (int i = 0; i < 4; i++) {
+            FastKV segment = new FastKV.Builder(DIR, SegmentedKV.getSegmentName(name, i)).build();
+            Assert.assertTrue(segment.getAll().size() > 0);
+        }
+
+        // 重新打开时以保存的段数为准
+        kv.close();
+        SegmentedKV kv2 = new FastKV.Builder(DIR, name).buildSegmented(8);
+        Assert.assertEquals(4, kv2.getSegmentCount());
+        Assert.assertEquals(expected, kv2.getAll());
+        kv2.close();
+    }
+
+    @Test
+    public void testCorruptedSegmentFile() throws Exception {
+        String name = "test_segmented_corrupted";
+        SegmentedKV kv = new FastKV.Builder(DIR, name).buildSegmented(4);
+        for (int i = 0; i < 100; i++) {
+            kv.putInt("int_" + i, i).putObject("set_" + i, Collections.singleton("s" + i), StringSetEncoder.INSTANCE);
+        }
+        Map<String, Object> expected = kv.getAll();
+        kv.close();
+
+        File file = new File(DIR, name + SegmentedKV.SEGMENT_SUFFIX);
+        try (FileOutputStream out = new FileOutputStream(file)) {
+            out.write(new byte[]{1, 2});
+        }
+        // 以更少的段数打开会打乱 key 的分布，必须失败
+        try {
+            new FastKV.Builder(DIR, name).buildSegmented(2);
+            Assert.fail();
+        } catch (IllegalStateException expectedException) {
+            // 预期
+        }
+        // 以原来的段数打开时恢复 .kvs 文件
+        SegmentedKV kv2 = new FastKV.Builder(DIR, name).buildSegmented(4);
+        Assert.assertEquals(4, kv2.getSegmentCount());
+        Assert.assertEquals(expected, kv2.getAll());
+        kv2.close();
+        SegmentedKV kv3 = new FastKV.Builder(DIR, name).buildSegmented(8);
+        Assert.assertEquals(4, kv3.getSegmentCount());
+        kv3.close();
+    }
+}
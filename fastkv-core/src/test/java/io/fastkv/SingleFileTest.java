@@ -0,0 +1,73 @@
+package io.fastkv;
+
+import org.junit.Assert;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.RandomAccessFile;
+import java.util.Map;
+
+/**
+ * 单文件模式（OPTION_SINGLE_FILE）的测试。
+ */
+public class SingleFileTest {
+    static String DIR;
+
+    @BeforeClass
+    public static void init() throws Exception {
+        DIR = TestUtil.makeTempDir("fastkv_single_file_test");
+    }
+
+    @Test
+    public void testSingleFile() throws Exception {
+        CompactionTest.checkIncrementalCompaction(DIR, "test_single_compact", null, FastKV.OPTION_SINGLE_FILE);
+
+        String name = "test_single";
+        File aFile = new File(DIR, name + FileHelper.A_SUFFIX);
+        File bFile = new File(DIR, name + FileHelper.B_SUFFIX);
+        FastKV kv1 = new FastKV(DIR, name, null, null, FastKV.NON_BLOCKING);
+        kv1.clear();
+        String value = TestUtil.makeString(100);
+        for (int i = 0; i < 100; i++) {
+            kv1.putInt("int_" + i, i);
+            kv1.putString("str_" + i, value + i);
+        }
+        Map<String, Object> all = kv1.getAll();
+
+        // 以单文件模式打开A/B文件保存的数据，删除B文件
+        FastKV kv2 = new FastKV(DIR, name, null, null, FastKV.NON_BLOCKING, FastKV.OPTION_SINGLE_FILE);
+        Assert.assertEquals(all, kv2.getAll());
+        Assert.assertFalse(bFile.exists());
+        kv2.putInt("int_1", 100);
+        kv2.remove("str_2");
+        kv2.putString("str_3", "abc");
+        kv2.putLong("long", 1L);
+        kv2.disableAutoCommit();
+        for (int i = 0; i < 50; i++) {
+            kv2.putBoolean("bool_" + i, true);
+            kv2.remove("str_" + (i + 10));
+        }
+        Assert.assertTrue(kv2.commit());
+        Assert.assertEquals(kv2.getAll(), new FastKV(DIR, name, null, null, FastKV.NON_BLOCKING,
+                FastKV.OPTION_SINGLE_FILE).getAll());
+
+        // 模拟写入A文件时中断：数据头标记为 -1，最后一次修改的值未写入，加载时重放重做日志
+        kv2.putInt("int_5", 12345);
+        Map<String, Object> expected = kv2.getAll();
+        int offset = kv2.data.get("int_5").offset;
+        try (RandomAccessFile file = new RandomAccessFile(aFile, "rw")) {
+            file.seek(0);
+            file.writeInt(-1);
+            file.seek(offset);
+            file.writeInt(0);
+        }
+        FastKV kv3 = new FastKV(DIR, name, null, null, FastKV.NON_BLOCKING, FastKV.OPTION_SINGLE_FILE);
+        Assert.assertEquals(expected, kv3.getAll());
+
+        // 以默认模式打开时重新生成B文件
+        FastKV kv4 = new FastKV(DIR, name, null, null, FastKV.NON_BLOCKING);
+        Assert.assertEquals(expected, kv4.getAll());
+        Assert.assertTrue(bFile.exists());
+    }
+}
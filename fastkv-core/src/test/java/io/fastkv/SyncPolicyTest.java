@@ -0,0 +1,107 @@
+package io.fastkv;
+
+import org.junit.Assert;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import java.util.concurrent.Executor;
+
+/**
+ * NON_BLOCKING 模式后台同步策略的测试。
+ * <p>
+ * 同步任务在当前线程中执行（替换全局执行器），定时器的延迟设置得足够长使其不会触发，
+ * 到期由测试直接调用 {@link SyncHelper#onTimer(FastKV)} 模拟，结果不依赖时序。
+ */
+public class SyncPolicyTest {
+    static String DIR;
+
+    @BeforeClass
+    public static void init() throws Exception {
+        DIR = TestUtil.makeTempDir("fastkv_sync_policy_test");
+    }
+
+    @Test
+    public void testSyncPolicy() {
+        Executor oldExecutor = FastKVConfig.sExecutor;
+        FastKVConfig.sExecutor = Runnable::run;
+        try {
+            FastKV kv = new FastKV(DIR, "test_sync_policy", null, null, FastKV.NON_BLOCKING);
+            kv.clear();
+            kv.putInt("warm_up", 1);
+            SyncHelper.sync(kv);
+
+            kv.setSyncPolicy(SyncPolicy.bytes(64));
+            kv.putInt("a", 1);
+            // 未达到阈值，不同步
+            Assert.assertTrue(kv.pendingBytes > 0);
+            kv.putString("b", TestUtil.makeString(100));
+            Assert.assertEquals(0, kv.pendingBytes);
+
+            kv.setSyncPolicy(SyncPolicy.interval(60000));
+            kv.putInt("a", 2);
+            Assert.assertTrue(kv.syncScheduled);
+            Assert.assertTrue(kv.pendingBytes > 0);
+            SyncHelper.onTimer(kv);
+            Assert.assertFalse(kv.syncScheduled);
+            Assert.assertEquals(0, kv.pendingBytes);
+
+            kv.setSyncPolicy(SyncPolicy.idle(60000));
+            kv.putInt("a", 3);
+            // 一直有修改（距离最后一次修改未超过空闲时间），顺延，尚未同步
+            SyncHelper.onTimer(kv);
+            Assert.assertTrue(kv.syncScheduled);
+            Assert.assertTrue(kv.pendingBytes > 0);
+            synchronized (kv) {
+                kv.lastChangeTime = System.nanoTime() - 61000L * 1000000L;
+            }
+            SyncHelper.onTimer(kv);
+            Assert.assertFalse(kv.syncScheduled);
+            Assert.assertEquals(0, kv.pendingBytes);
+
+            kv.setSyncPolicy(SyncPolicy.NEVER);
+            kv.putInt("a", 100);
+            Assert.assertTrue(kv.pendingBytes > 0);
+        } finally {
+            FastKVConfig.sExecutor = oldExecutor;
+        }
+    }
+
+    /**
+     * 已安排的定时器到期之前策略被改为 NEVER
+     */
+    @Test
+    public void testTimerAfterPolicyCleared() {
+        Executor oldExecutor = FastKVConfig.sExecutor;
+        FastKVConfig.sExecutor = Runnable::run;
+        try {
+            FastKV kv = new FastKV(DIR, "test_sync_policy_cleared", null, null, FastKV.NON_BLOCKING);
+            kv.setSyncPolicy(SyncPolicy.interval(60000));
+            kv.putInt("a", 1);
+            Assert.assertTrue(kv.syncScheduled);
+            kv.setSyncPolicy(SyncPolicy.NEVER);
+            SyncHelper.onTimer(kv);
+            Assert.assertFalse(kv.syncScheduled);
+            Assert.assertTrue(kv.pendingBytes > 0);
+
+            // 重新设置策略后能再次安排同步
+            kv.setSyncPolicy(SyncPolicy.interval(60000));
+            kv.putInt("a", 2);
+            Assert.assertTrue(kv.syncScheduled);
+            SyncHelper.onTimer(kv);
+            Assert.assertEquals(0, kv.pendingBytes);
+        } finally {
+            FastKVConfig.sExecutor = oldExecutor;
+        }
+    }
+
+    @Test
+    public void testPendingBytesSaturate() {
+        FastKV kv = new FastKV(DIR, "test_pending_saturate", null, null, FastKV.NON_BLOCKING);
+        synchronized (kv) {
+            kv.pendingBytes = Integer.MAX_VALUE - 2;
+        }
+        kv.putLong("a", 1L);
+        kv.putString("b", TestUtil.makeString(100));
+        Assert.assertEquals(Integer.MAX_VALUE, kv.pendingBytes);
+    }
+}
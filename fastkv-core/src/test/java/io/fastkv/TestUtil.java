@@ -0,0 +1,24 @@
+package io.fastkv;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+
+class TestUtil {
+    static String makeString(int size) {
+        char[] a = new char[size];
+        for (int i = 0; i < size; i++) {
+            a[i] = (char) ('a' + i % 26);
+        }
+        return new String(a);
+    }
+
+    /**
+     * 创建临时目录，返回以 "/" 结尾的路径
+     */
+    static String makeTempDir(String prefix) throws IOException {
+        File dir = Files.createTempDirectory(prefix).toFile();
+        dir.deleteOnExit();
+        return dir.getAbsolutePath() + "/";
+    }
+}
@@ -0,0 +1,42 @@
+package io.fastkv;
+
+import io.fastkv.interfaces.FastCipher;
+
+/**
+ * 测试用的加密：按字节异或，加密后的长度不变
+ */
+class XorCipher implements FastCipher {
+    @Override
+    public byte[] encrypt(byte[] src) {
+        byte[] dst = new byte[src.length];
+        for (int i = 0; i < src.length; i++) {
+            dst[i] = (byte) (src[i] ^ 0x5A);
+        }
+        return dst;
+    }
+
+    @Override
+    public byte[] decrypt(byte[] dst) {
+        return encrypt(dst);
+    }
+
+    @Override
+    public int encrypt(int src) {
+        return src ^ 0x5A5A5A5A;
+    }
+
+    @Override
+    public int decrypt(int dst) {
+        return dst ^ 0x5A5A5A5A;
+    }
+
+    @Override
+    public long encrypt(long src) {
+        return src ^ 0x5A5A5A5A5A5A5A5AL;
+    }
+
+    @Override
+    public long decrypt(long dst) {
+        return dst ^ 0x5A5A5A5A5A5A5A5AL;
+    }
+}
@@ -0,0 +1,216 @@
+package io.fastkv;
+
+import android.content.Context;
+import android.content.SharedPreferences;
+import android.os.Handler;
+import android.os.Looper;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Set;
+
+import io.fastkv.interfaces.FastListener;
+
+/**
+ * FastKV 的 Android 适配层。
+ * <p>
+ * 存储引擎（FastKV 及其辅助类）位于纯 Java 的 fastkv-core 模块，
+ * 此类将其包装为 {@link SharedPreferences}，并将变更回调切换到主线程，
+ * 同时提供基于 Context 的默认路径和旧 SharedPreferences 的数据迁移。
+ */
+public final class FastPreferences implements SharedPreferences, SharedPreferences.Editor {
+    private final FastKV kv;
+    private final Handler mainHandler = new Handler(Looper.getMainLooper());
+    private final Map<OnSharedPreferenceChangeListener, FastListener> listeners = new HashMap<>();
+
+    public FastPreferences(@NonNull FastKV kv) {
+        this.kv = kv;
+    }
+
+    /**
+     * 以 Context 的 files 目录作为存储路径创建 Builder。
+     *
+     * @param context Context
+     * @param name    文件名
+     * @return FastKV 的构建器
+     */
+    public static FastKV.Builder builder(Context context, String name) {
+        if (context == null) {
+            throw new IllegalArgumentException("context is null");
+        }
+        return new FastKV.Builder(getDefaultPath(context), name);
+    }
+
+    private static String getDefaultPath(Context context) {
+        return context.getFilesDir().getAbsolutePath() + "/fastkv/";
+    }
+
+    /**
+     * 适配旧的 SharePreferences，
+     * 返回一个使用 FastKV 存储策略的新 SharedPreferences。
+     * <p>
+     * 注意：旧的 SharePreferences 必须实现 getAll() 方法，
+     * 否则无法将旧数据导入新文件。
+     *
+     * @param context Context
+     * @param name    SharePreferences 的名称
+     * @return FastKV 的包装器，实现了 SharePreferences。
+     */
+    public static SharedPreferences adapt(Context context, String name) {
+        FastKV kv = builder(context, name).build();
+        final String flag = "kv_import_flag";
+        if (!kv.contains(flag)) {
+            SharedPreferences oldPreferences = context.getSharedPreferences(name, Context.MODE_PRIVATE);
+            //noinspection unchecked
+            Map<String, Object> allData = (Map<String, Object>) oldPreferences.getAll();
+            kv.putAll(allData);
+            kv.putBoolean(flag, true);
+        }
+        return new FastPreferences(kv);
+    }
+
+    @NonNull
+    public FastKV getKV() {
+        return kv;
+    }
+
+    @Override
+    public Map<String, ?> getAll() {
+        return kv.getAll();
+    }
+
+    @Nullable
+    @Override
+    public String getString(String key, @Nullable String defValue) {
+        return kv.getString(key, defValue);
+    }
+
+    @Nullable
+    @Override
+    public Set<String> getStringSet(String key, @Nullable Set<String> defValues) {
+        return kv.getStringSet(key, defValues);
+    }
+
+    @Override
+    public int getInt(String key, int defValue) {
+        return kv.getInt(key, defValue);
+    }
+
+    @Override
+    public long getLong(String key, long defValue) {
+        return kv.getLong(key, defValue);
+    }
+
+    @Override
+    public float getFloat(String key, float defValue) {
+        return kv.getFloat(key, defValue);
+    }
+
+    @Override
+    public boolean getBoolean(String key, boolean defValue) {
+        return kv.getBoolean(key, defValue);
+    }
+
+    @Override
+    public boolean contains(String key) {
+        return kv.contains(key);
+    }
+
+    @Override
+    public Editor edit() {
+        return this;
+    }
+
+    @Override
+    public Editor putString(String key, @Nullable String value) {
+        kv.putString(key, value);
+        return this;
+    }
+
+    @Override
+    public Editor putStringSet(String key, @Nullable Set<String> values) {
+        kv.putStringSet(key, values);
+        return this;
+    }
+
+    @Override
+    public Editor putInt(String key, int value) {
+        kv.putInt(key, value);
+        return this;
+    }
+
+    @Override
+    public Editor putLong(String key, long value) {
+        kv.putLong(key, value);
+        return this;
+    }
+
+    @Override
+    public Editor putFloat(String key, float value) {
+        kv.putFloat(key, value);
+        return this;
+    }
+
+    @Override
+    public Editor putBoolean(String key, boolean value) {
+        kv.putBoolean(key, value);
+        return this;
+    }
+
+    @Override
+    public Editor remove(String key) {
+        kv.remove(key);
+        return this;
+    }
+
+    @Override
+    public Editor clear() {
+        kv.clear();
+        return this;
+    }
+
+    @Override
+    public boolean commit() {
+        return kv.commit();
+    }
+
+    @Override
+    public void apply() {
+        kv.apply();
+    }
+
+    @Override
+    public void registerOnSharedPreferenceChangeListener(OnSharedPreferenceChangeListener listener) {
+        if (listener == null) {
+            return;
+        }
+        synchronized (listeners) {
+            if (listeners.containsKey(listener)) {
+                return;
+            }
+            FastListener wrapper = (fastKV, key) ->
+                    mainHandler.post(() -> listener.onSharedPreferenceChanged(this, key));
+            listeners.put(listener, wrapper);
+            kv.registerListener(wrapper);
+        }
+    }
+
+    @Override
+    public void unregisterOnSharedPreferenceChangeListener(OnSharedPreferenceChangeListener listener) {
+        synchronized (listeners) {
+            FastListener wrapper = listeners.remove(listener);
+            if (wrapper != null) {
+                kv.unregisterListener(wrapper);
+            }
+        }
+    }
+
+    @NonNull
+    @Override
+    public String toString() {
+        return "FastPreferences: " + kv;
+    }
+}